@@ -0,0 +1,257 @@
+package com.jgitfx.bench;
+
+import com.jgitfx.jgitfx.ModifiedPath;
+import com.jgitfx.jgitfx.fileviewers.FilteredFileList;
+import com.jgitfx.jgitfx.fileviewers.GitFileStatusTreeCell;
+import com.jgitfx.jgitfx.fileviewers.SelectableFileViewer;
+import com.sun.javafx.application.PlatformImpl;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBoxTreeItem;
+import javafx.scene.control.TreeView;
+import javafx.scene.control.cell.CheckBoxTreeCell;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link SelectableFileViewer} and {@link FilteredFileList} displaying the changes of a
+ * {@link GeneratedRepository generated repository} in which all {@code fileCount} files are changed. Since only the
+ * viewers are measured, the {@link Status} they display is built directly from the generated paths rather than by
+ * scanning a repository.
+ *
+ * <p>The viewer's controls need the JavaFX toolkit to be running. On a machine without a display, run the
+ * benchmarks with the Monocle headless platform ({@code -Dglass.platform=Monocle -Dmonocle.platform=Headless
+ * -Dprism.order=sw}).</p>
+ *
+ * <p>{@link #scrollTree} measures the time of one frame of scrolling through an expanded tree: the view is
+ * scrolled down by a few rows, then CSS and layout are applied, which is what a pulse does. The view is placed in
+ * a {@link Scene} that is never shown, so no rendering is measured. The {@code gc} profiler reports what a
+ * frame allocates.</p>
+ */
+public class FileViewerBenchmark {
+
+    @State(Scope.Thread)
+    public static class ViewerState {
+
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int fileCount;
+
+        /** The percentage of files that are added or removed between the two statuses {@link #refreshTree} swaps */
+        @Param({"1"})
+        public int churnPercent;
+
+        /** Whether the viewer only creates the items of directories that were expanded */
+        @Param({"false", "true"})
+        public boolean lazy;
+
+        Status status;
+        Status churnedStatus;
+        SelectableFileViewer viewer;
+        private boolean churned = false;
+
+        @Setup(Level.Trial)
+        public void createViewer() throws IOException {
+            startToolkit();
+            status = generatedStatus(fileCount, 0);
+            churnedStatus = generatedStatus(fileCount, churnPercent);
+            viewer = new SelectableFileViewer(status, lazy);
+        }
+
+        Status nextStatus() {
+            churned = !churned;
+            return churned ? churnedStatus : status;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ListState {
+
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int fileCount;
+
+        /**
+         * Typed one character at a time, then deleted again. Matches the ten files 120 to 129 (see
+         * {@link GeneratedRepository#pathOf(int)}) with every file count, and more files with each shorter prefix.
+         */
+        private static final String QUERY = "d0/d1/file12";
+
+        Status status;
+        FilteredFileList list;
+        private int keystroke = 0;
+
+        @Setup(Level.Trial)
+        public void createList() throws IOException {
+            startToolkit();
+            status = generatedStatus(fileCount, 0);
+            list = new FilteredFileList(status);
+        }
+
+        String nextFilter() {
+            keystroke = (keystroke + 1) % (2 * QUERY.length());
+            int length = keystroke <= QUERY.length() ? keystroke : 2 * QUERY.length() - keystroke;
+            return QUERY.substring(0, length);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ScrollState {
+
+        @Param({"100000"})
+        public int fileCount;
+
+        /** The cells to scroll through: "lean" for {@link GitFileStatusTreeCell}, "stock" for a CheckBoxTreeCell */
+        @Param({"lean", "stock"})
+        public String cell;
+
+        private static final int ROWS_PER_FRAME = 3;
+
+        SelectableFileViewer viewer;
+        TreeView<ModifiedPath> view;
+        private int topRow = 0;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void createScene() throws IOException {
+            startToolkit();
+            viewer = new SelectableFileViewer(generatedStatus(fileCount, 0), false);
+            view = (TreeView<ModifiedPath>) viewer.lookup(".selectable-file-tree-view");
+            if (cell.equals("stock")) {
+                view.setCellFactory(treeView -> new CheckBoxTreeCell<>(
+                        item -> ((CheckBoxTreeItem<ModifiedPath>) item).selectedProperty(),
+                        GitFileStatusTreeCell.CONVERTER));
+            }
+            view.setPrefSize(800, 600);
+            new Scene(viewer, 800, 600);
+            layout();
+        }
+
+        void scrollFrame() {
+            topRow += ROWS_PER_FRAME;
+            if (topRow >= view.getExpandedItemCount()) {
+                topRow = 0;
+            }
+            view.scrollTo(topRow);
+            layout();
+        }
+
+        private void layout() {
+            viewer.applyCss();
+            viewer.layout();
+        }
+    }
+
+    @Benchmark
+    public SelectableFileViewer construct(ViewerState state) {
+        return new SelectableFileViewer(state.status, state.lazy);
+    }
+
+    @Benchmark
+    public SelectableFileViewer refreshTree(ViewerState state) {
+        state.viewer.refreshTree(state.nextStatus());
+        return state.viewer;
+    }
+
+    @Benchmark
+    public List<String> getSelectedFiles(ViewerState state) {
+        return state.viewer.getSelectedFiles();
+    }
+
+    @Benchmark
+    public void iterateSelectedFiles(ViewerState state, Blackhole blackhole) {
+        for (String path : state.viewer.selectedFiles()) {
+            blackhole.consume(path);
+        }
+    }
+
+    @Benchmark
+    public boolean hasSelectedFiles(ViewerState state) {
+        return state.viewer.hasSelectedFiles();
+    }
+
+    @Benchmark
+    public TreeView<ModifiedPath> scrollTree(ScrollState state) {
+        state.scrollFrame();
+        return state.view;
+    }
+
+    @Benchmark
+    public FilteredFileList constructList(ListState state) {
+        return new FilteredFileList(state.status);
+    }
+
+    @Benchmark
+    public FilteredFileList filterList(ListState state) {
+        state.list.setFilter(state.nextFilter());
+        return state.list;
+    }
+
+    /**
+     * Every third file is added, changed, and missing, respectively. With a non-zero {@code churnPercent}, that
+     * percentage of the files is no longer listed and as many new files are listed instead.
+     */
+    private static Status generatedStatus(int fileCount, int churnPercent) throws IOException {
+        Set<String> added = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<String> missing = new HashSet<>();
+        int churnEvery = churnPercent == 0 ? 0 : 100 / churnPercent;
+        for (int i = 0; i < fileCount; i++) {
+            int index = churnEvery != 0 && i % churnEvery == 0 ? fileCount + i : i;
+            String path = GeneratedRepository.pathOf(index);
+            switch (i % 3) {
+                case 0:  added.add(path);   break;
+                case 1:  changed.add(path); break;
+                default: missing.add(path); break;
+            }
+        }
+        return new Status(new GeneratedIndexDiff(added, changed, missing));
+    }
+
+    private static void startToolkit() {
+        try {
+            // Java 8 has no public API to start the toolkit outside of an Application
+            PlatformImpl.startup(() -> {});
+        } catch (IllegalStateException e) {
+            // already started
+        }
+    }
+
+    /** Hands out the given paths without walking anything */
+    private static final class GeneratedIndexDiff extends IndexDiff {
+
+        private final Set<String> added;
+        private final Set<String> changed;
+        private final Set<String> missing;
+
+        GeneratedIndexDiff(Set<String> added, Set<String> changed, Set<String> missing) throws IOException {
+            // a null tree id means no repository is accessed
+            super(null, (ObjectId) null, null);
+            this.added = added;
+            this.changed = changed;
+            this.missing = missing;
+        }
+
+        @Override public Set<String> getAdded() { return added; }
+        @Override public Set<String> getChanged() { return changed; }
+        @Override public Set<String> getMissing() { return missing; }
+        @Override public Set<String> getRemoved() { return Collections.emptySet(); }
+        @Override public Set<String> getModified() { return Collections.emptySet(); }
+        @Override public Set<String> getUntracked() { return Collections.emptySet(); }
+        @Override public Set<String> getUntrackedFolders() { return Collections.emptySet(); }
+        @Override public Set<String> getConflicting() { return Collections.emptySet(); }
+        @Override public Set<String> getIgnoredNotInIndex() { return Collections.emptySet(); }
+        @Override public Map<String, StageState> getConflictingStageStates() { return Collections.emptyMap(); }
+    }
+}
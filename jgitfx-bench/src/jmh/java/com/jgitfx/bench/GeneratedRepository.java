@@ -0,0 +1,138 @@
+package com.jgitfx.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Generates the repositories the benchmarks run on. A repository with {@code n} files has one commit containing
+ * the files {@code d<i / 10000>/d<i / 100 % 100>/file<i>.txt}, so that no directory holds more than 100 entries.
+ *
+ * <p>Generating a repository with a million files takes minutes, so each repository is only generated once and
+ * kept in the directory given by the {@code jgitfx.bench.dir} system property (defaults to
+ * {@code <tmpdir>/jgitfx-bench}). {@link #open(int)} resets it back to its generated state before every trial.</p>
+ */
+public final class GeneratedRepository {
+
+    private static final Path BENCH_DIR = Paths.get(System.getProperty(
+            "jgitfx.bench.dir", System.getProperty("java.io.tmpdir") + File.separator + "jgitfx-bench"));
+
+    /** How many files are added to the index at a time while generating a repository */
+    private static final int ADD_BATCH_SIZE = 10_000;
+
+    private GeneratedRepository() {}
+
+    /**
+     * @return the repository-relative path of the {@code index}th file of a generated repository
+     */
+    public static String pathOf(int index) {
+        return "d" + index / 10_000 + "/d" + index / 100 % 100 + "/file" + index + ".txt";
+    }
+
+    /**
+     * @return the paths of {@code count} files that are evenly spread over a repository with {@code fileCount} files
+     */
+    public static List<String> spreadPaths(int fileCount, int count) {
+        int n = Math.min(fileCount, count);
+        List<String> paths = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            paths.add(pathOf((int) ((long) i * fileCount / n)));
+        }
+        return paths;
+    }
+
+    /**
+     * Opens the generated repository with the given number of files, generating it if it does not exist yet,
+     * and discards whatever changes a previous trial made to it.
+     */
+    public static Git open(int fileCount) throws IOException, GitAPIException {
+        Path dir = BENCH_DIR.resolve("files-" + fileCount);
+        Path marker = BENCH_DIR.resolve("files-" + fileCount + ".base");
+        if (!Files.exists(marker)) {
+            deleteRecursively(dir);
+            RevCommit base = generate(dir, fileCount);
+            Files.write(marker, base.getName().getBytes(StandardCharsets.UTF_8));
+        }
+
+        Git git = Git.open(dir.toFile());
+        String base = new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim();
+        restore(git, base);
+        return git;
+    }
+
+    /**
+     * Overwrites the given files with content that differs from both their committed content and the content
+     * of the previous call.
+     */
+    public static void modify(Git git, List<String> paths, int edit) throws IOException {
+        Path workTree = git.getRepository().getWorkTree().toPath();
+        byte[] content = ("edit " + edit + "\n").getBytes(StandardCharsets.UTF_8);
+        for (String path : paths) {
+            Files.write(workTree.resolve(path), content);
+        }
+    }
+
+    private static RevCommit generate(Path dir, int fileCount) throws IOException, GitAPIException {
+        Files.createDirectories(dir);
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            for (int start = 0; start < fileCount; start += ADD_BATCH_SIZE) {
+                int end = Math.min(fileCount, start + ADD_BATCH_SIZE);
+                AddCommand add = git.add();
+                for (int i = start; i < end; i++) {
+                    String path = pathOf(i);
+                    Path file = dir.resolve(path);
+                    Files.createDirectories(file.getParent());
+                    Files.write(file, ("file " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                    add.addFilepattern(path);
+                }
+                add.call();
+            }
+            return git.commit().setMessage("Generated " + fileCount + " files").call();
+        }
+    }
+
+    private static void restore(Git git, String base) throws IOException, GitAPIException {
+        git.checkout().setName(Constants.MASTER).setForce(true).call();
+        git.reset().setMode(ResetCommand.ResetType.HARD).setRef(base).call();
+        git.clean().setCleanDirectories(true).call();
+
+        List<String> otherBranches = new ArrayList<>();
+        for (Ref branch : git.branchList().call()) {
+            if (!branch.getName().equals(Constants.R_HEADS + Constants.MASTER)) {
+                otherBranches.add(branch.getName());
+            }
+        }
+        if (!otherBranches.isEmpty()) {
+            git.branchDelete().setForce(true).setBranchNames(otherBranches.toArray(new String[0])).call();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        // children before their parents
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(path)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path p : paths) {
+            Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.jgitfx.bench;
+
+import com.jgitfx.base.GitHelper;
+import com.jgitfx.base.ParallelHashingTreeIterator;
+import java.io.IOException;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the {@link GitHelper} methods the dialogs and menu items rely on, on {@link GeneratedRepository
+ * generated repositories} of 1k to 1M files. Each operation acts on {@code changedFileCount} files spread over
+ * the repository; the state those files need to be in (modified, or modified and staged) is prepared before
+ * every invocation and is not part of the measurement.
+ */
+public class GitHelperBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int fileCount;
+
+        @Param({"100"})
+        public int changedFileCount;
+
+        Git git;
+        List<String> changedPaths;
+        private int edit = 0;
+
+        @Setup(Level.Trial)
+        public void openRepository() throws IOException, GitAPIException {
+            git = GeneratedRepository.open(fileCount);
+            changedPaths = GeneratedRepository.spreadPaths(fileCount, changedFileCount);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeRepository() {
+            git.close();
+        }
+
+        void modifyChangedFiles() throws IOException {
+            GeneratedRepository.modify(git, changedPaths, edit++);
+        }
+    }
+
+    /** The changed files are modified in the working tree */
+    public static class ModifiedState extends RepositoryState {
+
+        @Setup(Level.Invocation)
+        public void modify() throws IOException {
+            modifyChangedFiles();
+        }
+    }
+
+    /** The changed files are modified and added to the index */
+    public static class StagedState extends RepositoryState {
+
+        @Setup(Level.Invocation)
+        public void modifyAndAdd() throws IOException, GitAPIException {
+            modifyChangedFiles();
+            GitHelper.addFiles(git, changedPaths);
+        }
+    }
+
+    /** A history of {@code commitCount} commits with a branch on every 10th one */
+    public static class HistoryState extends RepositoryState {
+
+        @Param({"200"})
+        public int commitCount;
+
+        String baseCommit;
+
+        @Setup(Level.Trial)
+        public void createHistory() throws IOException, GitAPIException {
+            baseCommit = git.getRepository().resolve("HEAD").getName();
+            List<String> firstFile = changedPaths.subList(0, 1);
+            for (int i = 1; i <= commitCount; i++) {
+                modifyChangedFiles();
+                GitHelper.addFiles(git, firstFile);
+                RevCommit commit = GitHelper.commitFiles(git, false, "commit " + i, null);
+                if (i % 10 == 0) {
+                    GitHelper.createNewLocalBranch(git, "branch-" + i, commit);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Status status(ModifiedState state) throws GitAPIException {
+        return state.git.status().call();
+    }
+
+    @Benchmark
+    public Status statusWithParallelHashing(ModifiedState state) throws GitAPIException {
+        return state.git.status()
+                .setWorkingTreeIt(new ParallelHashingTreeIterator(state.git.getRepository()))
+                .call();
+    }
+
+    @Benchmark
+    public void addFiles(ModifiedState state) throws GitAPIException {
+        GitHelper.addFiles(state.git, state.changedPaths);
+    }
+
+    @Benchmark
+    public RevCommit commitFiles(StagedState state) throws GitAPIException {
+        return GitHelper.commitFiles(state.git, false, "benchmark", null);
+    }
+
+    @Benchmark
+    public void revertChanges(ModifiedState state) throws GitAPIException {
+        GitHelper.revertChanges(state.git, state.changedPaths);
+    }
+
+    @Benchmark
+    public void reset(StagedState state) throws GitAPIException {
+        GitHelper.reset(state.git, ResetCommand.ResetType.MIXED);
+    }
+
+    @Benchmark
+    public List<Ref> getBranchesWithCommit(HistoryState state) throws GitAPIException {
+        return GitHelper.getBranchesWithCommit(state.git, GitHelper.BranchType.LOCAL, state.baseCommit);
+    }
+}
@@ -0,0 +1,307 @@
+package com.jgitfx.base;
+
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.eclipse.jgit.api.CommitCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.GitCommand;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
+import org.eclipse.jgit.api.errors.EmtpyCommitException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.api.errors.UnmergedPathsException;
+import org.eclipse.jgit.api.errors.WrongRepositoryStateException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.errors.UnmergedPathException;
+import org.eclipse.jgit.hooks.Hooks;
+import org.eclipse.jgit.hooks.PreCommitHook;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryState;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+
+/**
+ * Adds (stages) files and commits the index in one operation.
+ *
+ * <p>Calling {@link ParallelAddCommand} and then {@link CommitCommand} locks, reads, and writes the index for the
+ * add, only for the commit to lock and read it all over again. This command locks the index once, stages the files
+ * into it like {@link ParallelAddCommand} does, writes the commit's trees straight from the in-memory index, and
+ * then writes the index once. The index stays locked until HEAD has been updated, so if the commit fails (e.g.
+ * because it would be empty), neither the index nor HEAD changes.</p>
+ *
+ * <p>The fused path is only taken for ordinary commits: if the repository is merging, cherry-picking, etc., has a
+ * {@code pre-commit} hook (which has to see the staged index on disk), or no message was set (so that a squash
+ * message can be used), the files are added and then committed via {@link CommitCommand}, which handles
+ * those cases. The {@code commit-msg} hook is run either way.</p>
+ *
+ * <p>The {@link ProgressMonitor} is updated while the files are added, after which a "Committing" task of unknown
+ * size begins. If the monitor is cancelled before that task, nothing is written and a {@link CanceledException} is
+ * thrown; once the commit has started, it can't be cancelled.</p>
+ */
+public class AddAndCommitCommand extends GitCommand<RevCommit> {
+
+    private final ParallelAddCommand add;
+
+    private String message;
+    private PersonIdent author;
+    private PersonIdent committer;
+    private boolean amend = false;
+    private boolean allowEmpty = true;
+    private ProgressMonitor monitor = NullProgressMonitor.INSTANCE;
+
+    private DirCache index;
+    /**
+     * @return the index as it was written by {@link #call()}, or null if it hasn't been called successfully
+     */
+    public DirCache getIndex() { return index; }
+
+    public AddAndCommitCommand(Repository repo) {
+        super(repo);
+        add = new ParallelAddCommand(repo);
+    }
+
+    /**
+     * @see ParallelAddCommand#addFilepattern(String)
+     */
+    public AddAndCommitCommand addFilepattern(String filepattern) {
+        checkCallable();
+        add.addFilepattern(filepattern);
+        return this;
+    }
+
+    /**
+     * @see ParallelAddCommand#setUpdate(boolean)
+     */
+    public AddAndCommitCommand setUpdate(boolean update) {
+        checkCallable();
+        add.setUpdate(update);
+        return this;
+    }
+
+    /**
+     * @see ParallelAddCommand#setWorkingTreeIterator(WorkingTreeIterator)
+     */
+    public AddAndCommitCommand setWorkingTreeIterator(WorkingTreeIterator iterator) {
+        checkCallable();
+        add.setWorkingTreeIterator(iterator);
+        return this;
+    }
+
+    /**
+     * @see ParallelAddCommand#setExecutor(Executor)
+     */
+    public AddAndCommitCommand setExecutor(Executor executor) {
+        checkCallable();
+        add.setExecutor(executor);
+        return this;
+    }
+
+    /**
+     * @see ParallelAddCommand#setContentHashCache(ContentHashCache)
+     */
+    public AddAndCommitCommand setContentHashCache(ContentHashCache cache) {
+        checkCallable();
+        add.setContentHashCache(cache);
+        return this;
+    }
+
+    public AddAndCommitCommand setProgressMonitor(ProgressMonitor monitor) {
+        checkCallable();
+        this.monitor = monitor == null ? NullProgressMonitor.INSTANCE : monitor;
+        add.setProgressMonitor(this.monitor);
+        return this;
+    }
+
+    /**
+     * @see CommitCommand#setMessage(String)
+     */
+    public AddAndCommitCommand setMessage(String message) {
+        checkCallable();
+        this.message = message;
+        return this;
+    }
+
+    /**
+     * @see CommitCommand#setAuthor(PersonIdent)
+     */
+    public AddAndCommitCommand setAuthor(PersonIdent author) {
+        checkCallable();
+        this.author = author;
+        return this;
+    }
+
+    /**
+     * @see CommitCommand#setCommitter(PersonIdent)
+     */
+    public AddAndCommitCommand setCommitter(PersonIdent committer) {
+        checkCallable();
+        this.committer = committer;
+        return this;
+    }
+
+    /**
+     * @see CommitCommand#setAmend(boolean)
+     */
+    public AddAndCommitCommand setAmend(boolean amend) {
+        checkCallable();
+        this.amend = amend;
+        return this;
+    }
+
+    /**
+     * @param allowEmpty if false, an {@link EmtpyCommitException} is thrown when the commit would not change
+     *                   anything. Defaults to true, like {@link CommitCommand}.
+     */
+    public AddAndCommitCommand setAllowEmpty(boolean allowEmpty) {
+        checkCallable();
+        this.allowEmpty = allowEmpty;
+        return this;
+    }
+
+    @Override
+    public RevCommit call() throws GitAPIException {
+        checkCallable();
+        RevCommit commit = canFuse() ? addAndCommit() : addThenCommit();
+        setCallable(false);
+        return commit;
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private boolean canFuse() {
+        return repo.getRepositoryState() == RepositoryState.SAFE
+                && message != null
+                && repo.getFS().findHook(repo, PreCommitHook.NAME) == null;
+    }
+
+    private RevCommit addThenCommit() throws GitAPIException {
+        index = add.call();
+        if (monitor.isCancelled()) {
+            throw new CanceledException("The commit was cancelled");
+        }
+        monitor.beginTask("Committing", ProgressMonitor.UNKNOWN);
+        RevCommit commit = Git.wrap(repo).commit()
+                .setMessage(message)
+                .setAuthor(author)
+                .setCommitter(committer)
+                .setAmend(amend)
+                .setAllowEmpty(allowEmpty)
+                .call();
+        monitor.endTask();
+        return commit;
+    }
+
+    private RevCommit addAndCommit() throws GitAPIException {
+        DirCache dc = null;
+        try (RevWalk rw = new RevWalk(repo);
+             ObjectInserter inserter = repo.newObjectInserter()) {
+            if (repo.exactRef(Constants.HEAD) == null) {
+                throw new NoHeadException("Commit on repository without HEAD currently not supported");
+            }
+            ObjectId headId = repo.resolve(Constants.HEAD + "^{commit}");
+            if (headId == null && amend) {
+                throw new WrongRepositoryStateException("Amending is not possible for initial commit.");
+            }
+
+            PersonIdent committer = this.committer != null ? this.committer : new PersonIdent(repo);
+            PersonIdent author = this.author;
+            List<ObjectId> parents = new ArrayList<>();
+            if (headId != null) {
+                if (amend) {
+                    RevCommit previous = rw.parseCommit(headId);
+                    for (RevCommit p : previous.getParents()) {
+                        parents.add(p.getId());
+                    }
+                    if (author == null) {
+                        author = previous.getAuthorIdent();
+                    }
+                } else {
+                    parents.add(headId);
+                }
+            }
+            if (author == null) {
+                author = committer;
+            }
+            String message = Hooks.commitMsg(repo, null).setCommitMessage(this.message).call();
+
+            long lockStart = System.nanoTime();
+            dc = repo.lockDirCache();
+            GitMetrics.recordLockWait(GitOperation.COMMIT, System.nanoTime() - lockStart);
+
+            add.stage(dc).finish();
+            if (monitor.isCancelled()) {
+                throw new CanceledException("The commit was cancelled");
+            }
+            monitor.beginTask("Committing", ProgressMonitor.UNKNOWN);
+
+            ObjectId treeId = dc.writeTree(inserter);
+            if (headId != null && !allowEmpty && treeId.equals(rw.parseCommit(headId).getTree())) {
+                throw new EmtpyCommitException("No changes");
+            }
+
+            CommitBuilder builder = new CommitBuilder();
+            builder.setCommitter(committer);
+            builder.setAuthor(author);
+            builder.setMessage(message);
+            builder.setParentIds(parents);
+            builder.setTreeId(treeId);
+            ObjectId commitId = inserter.insert(builder);
+            inserter.flush();
+            RevCommit revCommit = rw.parseCommit(commitId);
+
+            // written to the lock file; only committed once HEAD points to the new commit
+            dc.write();
+
+            RefUpdate ru = repo.updateRef(Constants.HEAD);
+            ru.setNewObjectId(commitId);
+            String prefix = amend ? "commit (amend): " : parents.isEmpty() ? "commit (initial): " : "commit: ";
+            ru.setRefLogMessage(prefix + revCommit.getShortMessage(), false);
+            ru.setExpectedOldObjectId(headId != null ? headId : ObjectId.zeroId());
+            RefUpdate.Result result = ru.forceUpdate();
+            switch (result) {
+                case NEW:
+                case FORCED:
+                case FAST_FORWARD:
+                    break;
+                case REJECTED:
+                case LOCK_FAILURE:
+                    throw new ConcurrentRefUpdateException("Could not lock HEAD", ru.getRef(), result);
+                default:
+                    throw new JGitInternalException("Updating HEAD to " + commitId.name() + " failed: " + result);
+            }
+
+            if (!dc.commit()) {
+                throw new IOException("HEAD was updated to " + commitId.name() + ", but the index could not be "
+                        + "written to " + repo.getIndexFile());
+            }
+            monitor.endTask();
+            index = dc;
+            return revCommit;
+        } catch (UnmergedPathException e) {
+            throw new UnmergedPathsException(e);
+        } catch (IOException e) {
+            throw ParallelAddCommand.wrap(e, "Exception caught during execution of add and commit command");
+        } finally {
+            if (dc != null) {
+                dc.unlock();
+            }
+        }
+    }
+}
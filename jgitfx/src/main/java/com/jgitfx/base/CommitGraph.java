@@ -0,0 +1,618 @@
+package com.jgitfx.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * A persistent copy of a repository's commit graph, so that ancestry questions ("is A an ancestor of B?", "which
+ * branches contain A?") are answered without reading any commit object. Used by
+ * {@link GitHelper#getBranchesWithCommit(org.eclipse.jgit.api.Git, GitHelper.BranchType, String)}.
+ *
+ * <p>Every commit reachable from a ref when the graph was last {@link #update(Repository) updated} has a position
+ * in the graph, after those of its parents, and the graph holds its parents' positions, its commit time and its
+ * generation number: 1 for a root commit, otherwise one more than the highest generation of its parents. Since a
+ * commit's generation is higher than that of each of its ancestors, a walk looking for a commit stops at every
+ * commit whose generation is not higher than the one it looks for, instead of walking down to the roots.</p>
+ *
+ * <p>The graph is appended to {@code .git/jgitfx/commit-graph}, so an update only parses the commits that were
+ * added since the last one. {@link GitHelper}'s fetch, pull and commit methods update it when it exists; commits
+ * made in any other way are added by the next query's update. The file starts with a format version and is
+ * rewritten if it was written by another version, is damaged, or if the repository's shallow commits changed (a
+ * commit's parents are those it had when it was added). Commits that are no longer reachable are kept, as their
+ * ancestry never changes.</p>
+ *
+ * <p>The file is locked while the graph is open. {@link #open(Repository)} returns the same instance for the same
+ * repository while it is open; each call must be matched by a {@link #close()}, and the file is released (and the
+ * graph dropped from memory) once the last one is.</p>
+ */
+public final class CommitGraph implements AutoCloseable {
+
+    /** Changed whenever the layout of the file or the meaning of its records changes */
+    static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4A474347; // "JGCG"
+
+    // header: magic, version, commit count, hash of the shallow commits
+    private static final int HEADER_SIZE = 16;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_COUNT = 8;
+    private static final int H_SHALLOW = 12;
+
+    // record: id, commit time, generation, parent count, then the position of each parent
+    /** the size of a record without its parents */
+    private static final int RECORD_SIZE = 32;
+
+    private static final byte[] PARENT = Constants.encodeASCII("parent ");
+    /** the length of "tree " followed by a hex id and a newline, with which every commit starts */
+    private static final int TREE_LINE_LENGTH = 46;
+    /** the length of "parent " followed by a hex id and a newline */
+    private static final int PARENT_LINE_LENGTH = 48;
+    /** the length of "object " in a tag */
+    private static final int TAG_OBJECT_OFFSET = 7;
+
+    // query states of a position
+    private static final byte UNKNOWN = 0;
+    private static final byte REACHES = 1;
+    private static final byte MISSES = 2;
+
+    private static final Map<File, CommitGraph> OPEN = new HashMap<>();
+
+    private final File file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    /** the number of opens that weren't closed yet; guarded by {@link #OPEN} */
+    private int users = 0;
+
+    // the graph, indexed by position; guarded by this
+    private int count;
+    private int[] ids = new int[5 * 1024];
+    private int[] commitTimes = new int[1024];
+    private int[] generations = new int[1024];
+    private int[] parentStarts = new int[1025];
+    private int[] parents = new int[1024];
+    /** open-addressing table of position + 1, by id */
+    private int[] table = new int[2048];
+    /** where the next record is written */
+    private long end = HEADER_SIZE;
+    private int shallowHash;
+    /** the commits of annotated tags that were peeled before, by the tags' ids */
+    private final Map<ObjectId, ObjectId> peeledTags = new HashMap<>();
+    private final int[] key = new int[5];
+
+    /**
+     * Opens the graph of the given repository, or returns it if it is already open. The graph only holds the
+     * commits it held when it was last updated; call {@link #update(Repository)} before asking about new ones.
+     * The graph must be {@link #close() closed} when it is no longer needed.
+     * @throws IOException if the graph file couldn't be read or created, or is locked by another process
+     */
+    public static CommitGraph open(Repository repo) throws IOException {
+        File file = fileOf(repo);
+        synchronized (OPEN) {
+            CommitGraph graph = OPEN.get(file);
+            if (graph == null) {
+                graph = new CommitGraph(file);
+                OPEN.put(file, graph);
+            }
+            graph.users++;
+            return graph;
+        }
+    }
+
+    /**
+     * Updates the graph of the given repository if it is open or was written before, so that it stays cheap to
+     * update for the next query; otherwise does nothing, so that repositories that are never queried don't pay
+     * for building it.
+     * @throws IOException if the graph file couldn't be read or written, or a commit couldn't be read
+     */
+    public static void refresh(Repository repo) throws IOException {
+        File file = fileOf(repo);
+        boolean open;
+        synchronized (OPEN) {
+            open = OPEN.containsKey(file);
+        }
+        if (open || file.isFile()) {
+            try (CommitGraph graph = open(repo)) {
+                graph.update(repo);
+            }
+        }
+    }
+
+    private CommitGraph(File file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toPath().getParent());
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException(file + " is in use by another process");
+            }
+            if (!load()) {
+                clear(0);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the commits that are reachable from any ref (including HEAD) but not in the graph yet.
+     * @return the number of commits that were added
+     * @throws IOException if the graph file couldn't be written or a commit couldn't be read
+     */
+    public synchronized int update(Repository repo) throws IOException {
+        try (ObjectReader reader = repo.newObjectReader()) {
+            Set<ObjectId> shallow = reader.getShallowCommits();
+            int hash = hashOf(shallow);
+            if (hash != shallowHash) {
+                clear(hash);
+            }
+
+            int before = count;
+            ByteBuffer records = ByteBuffer.allocate(64 * 1024);
+            Deque<ObjectId> stack = new ArrayDeque<>();
+            for (Ref ref : repo.getAllRefs().values()) {
+                ObjectId tip = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+                if (tip == null || positionOf(tip) >= 0) {
+                    continue;
+                }
+                ObjectId commit = peel(reader, tip);
+                if (commit != null && positionOf(commit) < 0) {
+                    stack.push(commit);
+                }
+            }
+
+            // add each commit after its parents, without recursing as deep as the history is long
+            List<ObjectId> commitParents = new ArrayList<>();
+            while (!stack.isEmpty()) {
+                ObjectId commit = stack.peek();
+                if (positionOf(commit) >= 0) {
+                    stack.pop();
+                    continue;
+                }
+                byte[] raw = reader.open(commit, Constants.OBJ_COMMIT).getCachedBytes();
+                commitParents.clear();
+                int ptr = TREE_LINE_LENGTH;
+                if (!shallow.contains(commit)) {
+                    for (; RawParseUtils.match(raw, ptr, PARENT) >= 0; ptr += PARENT_LINE_LENGTH) {
+                        commitParents.add(ObjectId.fromString(raw, ptr + PARENT.length));
+                    }
+                }
+
+                boolean ready = true;
+                for (ObjectId parent : commitParents) {
+                    if (positionOf(parent) < 0) {
+                        stack.push(parent);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    records = write(records, add(commit, commitTimeOf(raw, ptr), commitParents));
+                }
+            }
+            flush(records, count);
+            return count - before;
+        }
+    }
+
+    /**
+     * @return the number of commits in the graph
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return true if the commit is in the graph
+     */
+    public synchronized boolean contains(AnyObjectId commit) {
+        return positionOf(commit) >= 0;
+    }
+
+    /**
+     * @return the commit's generation number, or 0 if it isn't in the graph
+     */
+    public synchronized int getGeneration(AnyObjectId commit) {
+        int position = positionOf(commit);
+        return position >= 0 ? generations[position] : 0;
+    }
+
+    /**
+     * @return the commit's commit time in seconds since the epoch, as {@link
+     *         org.eclipse.jgit.revwalk.RevCommit#getCommitTime()}, or -1 if it isn't in the graph
+     */
+    public synchronized int getCommitTime(AnyObjectId commit) {
+        int position = positionOf(commit);
+        return position >= 0 ? commitTimes[position] : -1;
+    }
+
+    /**
+     * @return the commit's parents, or null if it isn't in the graph
+     */
+    public synchronized List<ObjectId> getParents(AnyObjectId commit) {
+        int position = positionOf(commit);
+        if (position < 0) {
+            return null;
+        }
+        List<ObjectId> result = new ArrayList<>(parentStarts[position + 1] - parentStarts[position]);
+        for (int i = parentStarts[position]; i < parentStarts[position + 1]; i++) {
+            result.add(idAt(parents[i]));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if {@code ancestor} is {@code descendant} or one of its ancestors
+     * @throws IllegalArgumentException if either commit isn't in the graph
+     */
+    public synchronized boolean isAncestor(AnyObjectId ancestor, AnyObjectId descendant) {
+        int target = requirePosition(ancestor);
+        int start = requirePosition(descendant);
+        return reaches(start, target, new byte[count], new int[64]);
+    }
+
+    /**
+     * Finds the refs that contain a commit, like {@code git branch --contains}.
+     * @param commit the commit to look for, which must be in the graph
+     * @param refs the refs to check; refs that don't point to a commit in the graph are left out
+     * @return the refs whose commit is {@code commit} or one of its descendants, in the given order
+     * @throws IllegalArgumentException if the commit isn't in the graph
+     */
+    public synchronized List<Ref> filterContaining(AnyObjectId commit, Collection<Ref> refs) {
+        int target = requirePosition(commit);
+        // whether a commit reaches the target doesn't depend on where the walk started, so it's shared by all refs
+        byte[] states = new byte[count];
+        int[] stack = new int[64];
+        List<Ref> result = new ArrayList<>();
+        for (Ref ref : refs) {
+            ObjectId tip = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+            int start = tip != null ? positionOf(tip) : -1;
+            if (start >= 0 && reaches(start, target, states, stack)) {
+                result.add(ref);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Closes this open of the graph, after which it must no longer be used by the caller. The graph file is
+     * released once every {@link #open(Repository)} of the graph was closed.
+     */
+    @Override
+    public void close() throws IOException {
+        // release the file before another open can create a new instance that locks it
+        synchronized (OPEN) {
+            if (--users > 0) {
+                return;
+            }
+            OPEN.remove(file);
+            synchronized (this) {
+                try {
+                    lock.release();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private static File fileOf(Repository repo) {
+        return new File(new File(repo.getDirectory(), "jgitfx"), "commit-graph").getAbsoluteFile();
+    }
+
+    /**
+     * Reads the file into memory, checking that every record's parents come before it and that its generation
+     * matches theirs.
+     * @return false if the file is empty, of another version, or damaged
+     */
+    private boolean load() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // keep reading
+        }
+        buffer.flip();
+        if (buffer.limit() < size || buffer.getInt(H_MAGIC) != MAGIC || buffer.getInt(H_VERSION) != FORMAT_VERSION) {
+            return false;
+        }
+        int expected = buffer.getInt(H_COUNT);
+        shallowHash = buffer.getInt(H_SHALLOW);
+        buffer.position(HEADER_SIZE);
+
+        byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+        List<ObjectId> commitParents = new ArrayList<>();
+        while (count < expected) {
+            if (buffer.remaining() < RECORD_SIZE) {
+                return false;
+            }
+            buffer.get(raw);
+            int commitTime = buffer.getInt();
+            int generation = buffer.getInt();
+            int parentCount = buffer.getInt();
+            if (parentCount < 0 || buffer.remaining() < 4L * parentCount) {
+                return false;
+            }
+            commitParents.clear();
+            for (int i = 0; i < parentCount; i++) {
+                int parent = buffer.getInt();
+                if (parent < 0 || parent >= count) {
+                    return false;
+                }
+                commitParents.add(idAt(parent));
+            }
+            int position = add(ObjectId.fromRaw(raw), commitTime, commitParents);
+            if (generations[position] != generation) {
+                return false;
+            }
+        }
+        // drop whatever an interrupted update wrote after the last record it counted
+        end = buffer.position();
+        if (end < size) {
+            channel.truncate(end);
+        }
+        return true;
+    }
+
+    /**
+     * Empties the graph and its file.
+     */
+    private void clear(int shallowHash) throws IOException {
+        count = 0;
+        Arrays.fill(table, 0);
+        peeledTags.clear();
+        this.shallowHash = shallowHash;
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, FORMAT_VERSION);
+        header.putInt(H_COUNT, 0);
+        header.putInt(H_SHALLOW, shallowHash);
+        writeFully(header, 0);
+        end = HEADER_SIZE;
+    }
+
+    /**
+     * Adds a commit whose parents are already in the graph.
+     * @return its position
+     */
+    private int add(ObjectId commit, int commitTime, List<ObjectId> commitParents) {
+        int position = count;
+        if (position == commitTimes.length) {
+            int capacity = position * 2;
+            ids = Arrays.copyOf(ids, 5 * capacity);
+            commitTimes = Arrays.copyOf(commitTimes, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            parentStarts = Arrays.copyOf(parentStarts, capacity + 1);
+        }
+        int start = parentStarts[position];
+        if (start + commitParents.size() > parents.length) {
+            parents = Arrays.copyOf(parents, Math.max(parents.length * 2, start + commitParents.size()));
+        }
+        int generation = 1;
+        for (int i = 0; i < commitParents.size(); i++) {
+            int parent = positionOf(commitParents.get(i));
+            parents[start + i] = parent;
+            generation = Math.max(generation, generations[parent] + 1);
+        }
+        parentStarts[position + 1] = start + commitParents.size();
+        commit.copyRawTo(ids, 5 * position);
+        commitTimes[position] = commitTime;
+        generations[position] = generation;
+        count++;
+
+        if (count * 4L > table.length * 3L) {
+            table = new int[table.length * 2];
+            for (int i = 0; i < count; i++) {
+                insert(i);
+            }
+        } else {
+            insert(position);
+        }
+        return position;
+    }
+
+    private void insert(int position) {
+        int slot = ids[5 * position + 1] & (table.length - 1);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = position + 1;
+    }
+
+    private int positionOf(AnyObjectId id) {
+        id.copyRawTo(key, 0);
+        for (int slot = key[1] & (table.length - 1); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+            int i = 5 * (table[slot] - 1);
+            if (ids[i] == key[0] && ids[i + 1] == key[1] && ids[i + 2] == key[2] && ids[i + 3] == key[3]
+                    && ids[i + 4] == key[4]) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private int requirePosition(AnyObjectId commit) {
+        int position = positionOf(commit);
+        if (position < 0) {
+            throw new IllegalArgumentException(commit.name() + " is not in the commit graph");
+        }
+        return position;
+    }
+
+    private ObjectId idAt(int position) {
+        return ObjectId.fromRaw(ids, 5 * position);
+    }
+
+    /**
+     * Walks from {@code start} towards the roots, not going below the generation of {@code target}.
+     * @param states what is known of each position so far: whether it reaches the target or not
+     */
+    private boolean reaches(int start, int target, byte[] states, int[] stack) {
+        int targetGeneration = generations[target];
+        states[target] = REACHES;
+        int size = 0;
+        stack[size++] = start;
+        while (size > 0) {
+            int position = stack[size - 1];
+            if (states[position] != UNKNOWN) {
+                size--;
+                continue;
+            }
+            if (generations[position] <= targetGeneration) {
+                states[position] = MISSES;
+                size--;
+                continue;
+            }
+            boolean pending = false;
+            byte state = MISSES;
+            for (int i = parentStarts[position]; i < parentStarts[position + 1]; i++) {
+                byte parentState = states[parents[i]];
+                if (parentState == REACHES) {
+                    state = REACHES;
+                    break;
+                } else if (parentState == UNKNOWN) {
+                    pending = true;
+                }
+            }
+            if (state == REACHES || !pending) {
+                states[position] = state;
+                size--;
+                continue;
+            }
+            // decide on the parents first, then come back to this commit
+            for (int i = parentStarts[position]; i < parentStarts[position + 1]; i++) {
+                if (states[parents[i]] == UNKNOWN) {
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
+                    }
+                    stack[size++] = parents[i];
+                }
+            }
+        }
+        return states[start] == REACHES;
+    }
+
+    /**
+     * @return the commit the object peels to, or null if it isn't a commit or a tag of one
+     */
+    private ObjectId peel(ObjectReader reader, ObjectId id) throws IOException {
+        ObjectId peeled = peeledTags.get(id);
+        if (peeled != null) {
+            return peeled;
+        }
+        ObjectId object = id;
+        for (ObjectLoader loader = reader.open(object); loader.getType() != Constants.OBJ_COMMIT;
+             loader = reader.open(object)) {
+            if (loader.getType() != Constants.OBJ_TAG) {
+                return null;
+            }
+            object = ObjectId.fromString(loader.getCachedBytes(), TAG_OBJECT_OFFSET);
+        }
+        if (!object.equals(id)) {
+            peeledTags.put(id.copy(), object);
+        }
+        return object;
+    }
+
+    /**
+     * @param ptr the position in the commit after its parents
+     * @return the commit time, parsed like {@link org.eclipse.jgit.revwalk.RevCommit} does
+     */
+    private static int commitTimeOf(byte[] raw, int ptr) {
+        ptr = RawParseUtils.committer(raw, ptr);
+        if (ptr < 0) {
+            return 0;
+        }
+        ptr = RawParseUtils.nextLF(raw, ptr, '>');
+        return RawParseUtils.parseBase10(raw, ptr, null);
+    }
+
+    /**
+     * Buffers the record of the commit at the given position, flushing the records before it when the buffer is
+     * full.
+     */
+    private ByteBuffer write(ByteBuffer records, int position) throws IOException {
+        int parentCount = parentStarts[position + 1] - parentStarts[position];
+        int size = RECORD_SIZE + 4 * parentCount;
+        if (records.remaining() < size) {
+            flush(records, position);
+            if (records.capacity() < size) {
+                records = ByteBuffer.allocate(size);
+            }
+        }
+        for (int i = 0; i < 5; i++) {
+            records.putInt(ids[5 * position + i]);
+        }
+        records.putInt(commitTimes[position]);
+        records.putInt(generations[position]);
+        records.putInt(parentCount);
+        for (int i = parentStarts[position]; i < parentStarts[position + 1]; i++) {
+            records.putInt(parents[i]);
+        }
+        return records;
+    }
+
+    /**
+     * Appends the buffered records to the file, then counts them in its header, so that a reader never counts a
+     * record that isn't completely written.
+     * @param written the number of records in the file once the buffered ones are appended
+     */
+    private void flush(ByteBuffer records, int written) throws IOException {
+        records.flip();
+        if (records.hasRemaining()) {
+            int size = records.remaining();
+            writeFully(records, end);
+            end += size;
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.putInt(0, written);
+            writeFully(header, H_COUNT);
+        }
+        records.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static int hashOf(Set<ObjectId> shallow) {
+        int hash = shallow.size();
+        for (ObjectId id : shallow) {
+            hash += id.hashCode() * 31;
+        }
+        return hash;
+    }
+}
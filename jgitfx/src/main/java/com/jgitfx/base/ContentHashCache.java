@@ -0,0 +1,453 @@
+package com.jgitfx.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * A persistent cache of the blob ids of working tree files, keyed by each file's path, size, modification time,
+ * and file key (its inode on Unix), so that a file whose content was hashed before isn't read again, even after
+ * the application restarts. Used by {@link ParallelHashingTreeIterator} and {@link ParallelAddCommand}.
+ *
+ * <p>The cache is an open-addressing hash table of fixed-size records in {@code .git/jgitfx/content-hashes}, which
+ * is memory-mapped, so neither looking up nor storing an id allocates on the heap or reads the whole file. The
+ * table starts small and doubles whenever it is 3/4 full, so the file only takes as much space as the repository
+ * has files. It holds at most {@code maxEntries} ids; once full, the least recently used half is evicted. The file
+ * starts with a format version: a file written by another version (or a damaged one) is discarded, as is a single
+ * record whose checksum doesn't match.</p>
+ *
+ * <p>Like the index, the cache trusts a file's metadata: a file that changes without changing its size,
+ * modification time, or file key is reported with its old id. To not cache a "racily clean" file whose
+ * modification time may not change on its next write, ids are only stored for files that were last modified
+ * more than {@link #RACY_MILLIS} before they were hashed. Ids are those of the raw file content, so the cache
+ * must not be used for files that need cleaning (autocrlf or clean filters).</p>
+ *
+ * <p>The file is locked while the cache is open. {@link #open(Repository)} returns the same instance for the same
+ * repository until it is {@link #close() closed}.</p>
+ */
+public final class ContentHashCache implements AutoCloseable {
+
+    /** Changed whenever the layout of the file or the meaning of its records changes */
+    static final int FORMAT_VERSION = 1;
+
+    public static final int DEFAULT_MAX_ENTRIES = 750_000;
+
+    /** The number of slots of a new table; 256 KiB of records */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /** How long before it was hashed a file must have been last modified for its id to be stored */
+    public static final long RACY_MILLIS = 3000;
+
+    private static final int MAGIC = 0x4A474843; // "JGHC"
+
+    // header: magic, version, capacity, count, clock
+    private static final int HEADER_SIZE = 32;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_CLOCK = 16;
+
+    // record: path hash, size, modification time, file key, id, last use, checksum
+    private static final int RECORD_SIZE = 64;
+    private static final int R_PATH = 0;
+    private static final int R_SIZE = 8;
+    private static final int R_MODIFIED = 16;
+    private static final int R_KEY = 24;
+    private static final int R_ID = 32;
+    private static final int R_USED = 52;
+    private static final int R_CHECK = 56;
+
+    private static final Map<File, ContentHashCache> OPEN = new HashMap<>();
+
+    /**
+     * The metadata a cached id is keyed by, read before the file is hashed.
+     */
+    public static final class FileStat {
+
+        private final long size;
+        public long getSize() { return size; }
+
+        private final long lastModified;
+        /** In nanoseconds since the epoch, as precise as the file system allows */
+        public long getLastModified() { return lastModified; }
+
+        private final long fileKey;
+        public long getFileKey() { return fileKey; }
+
+        private FileStat(long size, long lastModified, long fileKey) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * @return the file's metadata, or null if it isn't a regular file or couldn't be read
+         */
+        public static FileStat of(File file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(
+                        file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attributes.isRegularFile()) {
+                    return null;
+                }
+                Object key = attributes.fileKey();
+                return new FileStat(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        key != null ? key.hashCode() : 0);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private boolean sameAs(FileStat other) {
+            return other != null && size == other.size && lastModified == other.lastModified
+                    && fileKey == other.fileKey;
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final int maxEntries;
+    private final int maxCapacity;
+    // guarded by this
+    private int capacity;
+    private MappedByteBuffer table;
+
+    /**
+     * Same as {@link #open(Repository, int)} with {@link #DEFAULT_MAX_ENTRIES}.
+     */
+    public static ContentHashCache open(Repository repo) throws IOException {
+        return open(repo, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Opens the cache of the given repository, or returns it if it is already open.
+     * @param maxEntries the number of ids to keep; ignored if the cache is already open
+     * @throws IOException if the cache file couldn't be created or is locked by another process
+     */
+    public static ContentHashCache open(Repository repo, int maxEntries) throws IOException {
+        File file = new File(new File(repo.getDirectory(), "jgitfx"), "content-hashes").getAbsoluteFile();
+        synchronized (OPEN) {
+            ContentHashCache cache = OPEN.get(file);
+            if (cache == null) {
+                cache = new ContentHashCache(file, maxEntries);
+                OPEN.put(file, cache);
+            }
+            return cache;
+        }
+    }
+
+    private ContentHashCache(File file, int maxEntries) throws IOException {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one entry: " + maxEntries);
+        }
+        this.file = file;
+        this.maxEntries = maxEntries;
+        // keep the table at most 3/4 full, so that there is always a free slot to end a probe
+        long slots = Long.highestOneBit((maxEntries + maxEntries / 3L + 1) * 2 - 1);
+        if (HEADER_SIZE + slots * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many entries to map the cache at once: " + maxEntries);
+        }
+        maxCapacity = (int) slots;
+
+        Files.createDirectories(file.toPath().getParent());
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException(file + " is in use by another process");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // keep reading
+            }
+            int stored = header.getInt(H_CAPACITY);
+            boolean valid = header.getInt(H_MAGIC) == MAGIC && header.getInt(H_VERSION) == FORMAT_VERSION
+                    && Integer.bitCount(stored) == 1 && stored <= maxCapacity
+                    && channel.size() == HEADER_SIZE + (long) stored * RECORD_SIZE;
+            if (valid) {
+                capacity = stored;
+                table = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            } else {
+                // nothing is mapped yet, so the file can be emptied; the mapping extends it without writing zeros
+                channel.truncate(0);
+                capacity = Math.min(INITIAL_CAPACITY, maxCapacity);
+                table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+                table.putInt(H_MAGIC, MAGIC);
+                table.putInt(H_VERSION, FORMAT_VERSION);
+                table.putInt(H_CAPACITY, capacity);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the cached id of the file at the given repository-relative path, or null if its id isn't cached for
+     *         the given metadata
+     */
+    public synchronized ObjectId get(String path, FileStat stat) {
+        long pathHash = hash(path);
+        for (int slot = slotOf(pathHash); isUsed(slot); slot = (slot + 1) & (capacity - 1)) {
+            int r = offset(slot);
+            if (table.getLong(r + R_PATH) != pathHash) {
+                continue;
+            }
+            if (table.getLong(r + R_SIZE) != stat.size || table.getLong(r + R_MODIFIED) != stat.lastModified
+                    || table.getLong(r + R_KEY) != stat.fileKey || table.getInt(r + R_CHECK) != checksum(r)) {
+                return null;
+            }
+            table.putInt(r + R_USED, tick());
+            table.putInt(r + R_CHECK, checksum(r));
+            byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+            for (int i = 0; i < id.length; i++) {
+                id[i] = table.get(r + R_ID + i);
+            }
+            return ObjectId.fromRaw(id);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the id of the given file, which was hashed after {@code stat} was read. Nothing is stored if the
+     * file changed in the meantime or was modified less than {@link #RACY_MILLIS} ago.
+     */
+    public void put(String path, File file, FileStat stat, AnyObjectId id) {
+        long modifiedMillis = TimeUnit.NANOSECONDS.toMillis(stat.lastModified);
+        if (modifiedMillis > System.currentTimeMillis() - RACY_MILLIS || !stat.sameAs(FileStat.of(file))) {
+            return;
+        }
+        byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+        id.copyRawTo(raw, 0);
+        put(hash(path), stat.size, stat.lastModified, stat.fileKey, raw);
+    }
+
+    /**
+     * @return the number of cached ids
+     */
+    public synchronized int size() {
+        return table.getInt(H_COUNT);
+    }
+
+    /**
+     * Discards all cached ids.
+     */
+    public synchronized void clear() {
+        clearRecords();
+        table.putInt(H_CLOCK, 0);
+    }
+
+    /**
+     * Releases the cache file, after which the cache must no longer be used. Its content has already been written
+     * to the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN) {
+            OPEN.remove(file);
+        }
+        synchronized (this) {
+            table.force();
+            lock.release();
+            channel.close();
+        }
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private synchronized void put(long pathHash, long size, long modified, long key, byte[] id) {
+        int slot = slotOf(pathHash);
+        while (isUsed(slot) && table.getLong(offset(slot) + R_PATH) != pathHash) {
+            slot = (slot + 1) & (capacity - 1);
+        }
+        if (!isUsed(slot)) {
+            int count = table.getInt(H_COUNT);
+            if (count >= maxEntries) {
+                evict();
+                put(pathHash, size, modified, key, id);
+                return;
+            }
+            if ((count + 1) * 4L > capacity * 3L) {
+                // the records move to other slots, so probe again afterwards
+                if (!grow()) {
+                    evict();
+                }
+                put(pathHash, size, modified, key, id);
+                return;
+            }
+            table.putInt(H_COUNT, count + 1);
+        }
+        write(offset(slot), pathHash, size, modified, key, id, tick());
+    }
+
+    private void write(int r, long pathHash, long size, long modified, long key, byte[] id, int used) {
+        table.putLong(r + R_PATH, pathHash);
+        table.putLong(r + R_SIZE, size);
+        table.putLong(r + R_MODIFIED, modified);
+        table.putLong(r + R_KEY, key);
+        for (int i = 0; i < id.length; i++) {
+            table.put(r + R_ID + i, id[i]);
+        }
+        table.putInt(r + R_USED, used);
+        table.putInt(r + R_CHECK, checksum(r));
+    }
+
+    /**
+     * Keeps the most recently used half of the records. Since removing records from a linearly probed table
+     * would break the probe sequences of others, the survivors are inserted into a cleared table.
+     */
+    private void evict() {
+        int[] uses = new int[table.getInt(H_COUNT)];
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (isUsed(slot) && n < uses.length) {
+                uses[n++] = table.getInt(offset(slot) + R_USED);
+            }
+        }
+        Arrays.sort(uses, 0, n);
+        int keep = n / 2;
+        List<byte[]> survivors = readRecords(keep == 0 ? Integer.MAX_VALUE : uses[n - keep]);
+        clearRecords();
+        insert(survivors);
+    }
+
+    /**
+     * Doubles the table, unless it already has room for {@code maxEntries} ids. The file is extended by mapping
+     * a larger part of it, so the new slots don't take disk space until they are used.
+     * @return false if the table couldn't grow
+     */
+    private boolean grow() {
+        if (capacity >= maxCapacity) {
+            return false;
+        }
+        List<byte[]> records = readRecords(1);
+        int grown = capacity * 2;
+        try {
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) grown * RECORD_SIZE);
+        } catch (IOException e) {
+            return false;
+        }
+        clearRecords();
+        capacity = grown;
+        table.putInt(H_CAPACITY, capacity);
+        insert(records);
+        return true;
+    }
+
+    /**
+     * @return the records that were used at or after the given tick and whose checksum matches
+     */
+    private List<byte[]> readRecords(int usedSince) {
+        List<byte[]> records = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            int r = offset(slot);
+            if (isUsed(slot) && table.getInt(r + R_USED) >= usedSince && table.getInt(r + R_CHECK) == checksum(r)) {
+                byte[] record = new byte[RECORD_SIZE];
+                for (int i = 0; i < RECORD_SIZE; i++) {
+                    record[i] = table.get(r + i);
+                }
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Zeroes the used records only, so that the pages of a sparse file that were never written stay unwritten.
+     */
+    private void clearRecords() {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (isUsed(slot)) {
+                int r = offset(slot);
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    table.putLong(r + i, 0);
+                }
+            }
+        }
+        table.putInt(H_COUNT, 0);
+    }
+
+    /**
+     * Inserts records read by {@link #readRecords(int)} into a cleared table, keeping their last use.
+     */
+    private void insert(List<byte[]> records) {
+        for (byte[] bytes : records) {
+            ByteBuffer record = ByteBuffer.wrap(bytes);
+            long pathHash = record.getLong(R_PATH);
+            int slot = slotOf(pathHash);
+            while (isUsed(slot)) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            byte[] id = Arrays.copyOfRange(bytes, R_ID, R_ID + Constants.OBJECT_ID_LENGTH);
+            write(offset(slot), pathHash, record.getLong(R_SIZE), record.getLong(R_MODIFIED), record.getLong(R_KEY),
+                    id, record.getInt(R_USED));
+        }
+        table.putInt(H_COUNT, records.size());
+    }
+
+    /** Records are never stored with a last use of 0 */
+    private boolean isUsed(int slot) {
+        return table.getInt(offset(slot) + R_USED) != 0;
+    }
+
+    private int tick() {
+        int clock = table.getInt(H_CLOCK) + 1;
+        if (clock <= 0) {
+            // after 2^31 uses, restart; the order of the records is lost, but not their ids
+            clock = 1;
+        }
+        table.putInt(H_CLOCK, clock);
+        return clock;
+    }
+
+    private int slotOf(long pathHash) {
+        return (int) (pathHash ^ (pathHash >>> 32)) & (capacity - 1);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private int checksum(int r) {
+        int check = 1;
+        for (int i = 0; i < R_CHECK; i += 4) {
+            check = check * 31 + table.getInt(r + i);
+        }
+        return check;
+    }
+
+    /** 64-bit FNV-1a of the path's characters, followed by a final mix */
+    private static long hash(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,242 @@
+package com.jgitfx.base;
+
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import com.jgitfx.base.progress.MergingProgressMonitor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.transport.TrackingRefUpdate;
+
+/**
+ * Fetches from several remotes at the same time, like {@code git fetch --all} does one after another.
+ *
+ * <p>Each remote is fetched on the {@link #setExecutor(Executor) executor} by a {@link FetchCommand} in dry-run
+ * mode, which downloads the remote's objects without updating any refs. As each fetch completes, the calling thread
+ * applies its ref updates in one batch, so the remote's connections run concurrently, but refs are only ever updated
+ * by one thread. A ref that another remote has already updated to the same object (e.g. a tag both remotes have) is
+ * left as is. {@code FETCH_HEAD} ends up with the records of whichever fetch wrote it last.</p>
+ *
+ * <p>Remotes that share objects (e.g. mirrors) may send the same pack, which only one of the concurrent fetches
+ * can store; a fetch that fails with a {@link TransportException} is therefore tried once more after all others
+ * are done, when it usually only has to download what the others didn't.</p>
+ *
+ * <p>The progress of all fetches is merged into the {@link #setProgressMonitor(ProgressMonitor) progress monitor}
+ * (see {@link MergingProgressMonitor}). If a remote can't be fetched, the other remotes are still fetched and their
+ * refs updated, after which the first failure is thrown with the other failures added as suppressed exceptions.</p>
+ */
+public class FetchAllCommand extends TransportCommand<FetchAllCommand, Map<String, FetchResult>> {
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "jgitfx-fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Collection<String> remotes;
+    private Executor executor = DEFAULT_EXECUTOR;
+    private ProgressMonitor monitor = NullProgressMonitor.INSTANCE;
+    private TagOpt tagOpt;
+    private boolean removeDeletedRefs = true;
+
+    public FetchAllCommand(Repository repo) {
+        super(repo);
+    }
+
+    /**
+     * Sets the names of the remotes to fetch from. Defaults to all remotes in the repository's configuration.
+     */
+    public FetchAllCommand setRemotes(Collection<String> remotes) {
+        checkCallable();
+        this.remotes = remotes;
+        return this;
+    }
+
+    /**
+     * Sets the executor on which the remotes are fetched. Defaults to a pool of 4 threads, shared by all
+     * instances.
+     */
+    public FetchAllCommand setExecutor(Executor executor) {
+        checkCallable();
+        this.executor = executor;
+        return this;
+    }
+
+    public FetchAllCommand setProgressMonitor(ProgressMonitor monitor) {
+        checkCallable();
+        this.monitor = monitor == null ? NullProgressMonitor.INSTANCE : monitor;
+        return this;
+    }
+
+    /**
+     * @see FetchCommand#setTagOpt(TagOpt)
+     */
+    public FetchAllCommand setTagOpt(TagOpt tagOpt) {
+        checkCallable();
+        this.tagOpt = tagOpt;
+        return this;
+    }
+
+    /**
+     * @see FetchCommand#setRemoveDeletedRefs(boolean)
+     */
+    public FetchAllCommand setRemoveDeletedRefs(boolean removeDeletedRefs) {
+        checkCallable();
+        this.removeDeletedRefs = removeDeletedRefs;
+        return this;
+    }
+
+    /**
+     * @return the result of each remote's fetch, in the order of the remotes' names
+     */
+    @Override
+    public Map<String, FetchResult> call() throws GitAPIException {
+        checkCallable();
+        Collection<String> names = remotes != null
+                ? remotes
+                : new TreeSet<>(repo.getConfig().getSubsections(ConfigConstants.CONFIG_REMOTE_SECTION));
+
+        MergingProgressMonitor merged = new MergingProgressMonitor(monitor, "Fetching " + names.size()
+                + (names.size() == 1 ? " remote" : " remotes"));
+        CompletionService<FetchResult> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<FetchResult>, String> fetches = new IdentityHashMap<>();
+        for (String name : names) {
+            ProgressMonitor child = GitMetrics.countObjects(GitOperation.FETCH, merged.newChild());
+            fetches.put(completion.submit(() -> fetchObjects(name, child)), name);
+        }
+
+        Map<String, FetchResult> results = new LinkedHashMap<>();
+        List<String> retries = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+        try {
+            for (int i = 0; i < fetches.size(); i++) {
+                Future<FetchResult> fetch = completion.take();
+                String name = fetches.get(fetch);
+                try {
+                    FetchResult result = fetch.get();
+                    updateRefs(result);
+                    results.put(name, result);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof TransportException) {
+                        retries.add(name);
+                    } else {
+                        failures.add(cause instanceof Exception ? (Exception) cause : e);
+                    }
+                } catch (IOException e) {
+                    failures.add(e);
+                }
+            }
+            for (String name : retries) {
+                try {
+                    FetchResult result = fetchObjects(name, GitMetrics.countObjects(GitOperation.FETCH,
+                            merged.newChild()));
+                    updateRefs(result);
+                    results.put(name, result);
+                } catch (GitAPIException | IOException | JGitInternalException e) {
+                    failures.add(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetches.keySet().forEach(fetch -> fetch.cancel(true));
+            throw new CanceledException("Fetching was interrupted");
+        } finally {
+            merged.endTask();
+        }
+        setCallable(false);
+
+        if (!failures.isEmpty()) {
+            Exception first = failures.get(0);
+            failures.subList(1, failures.size()).forEach(first::addSuppressed);
+            if (first instanceof GitAPIException) {
+                throw (GitAPIException) first;
+            }
+            if (first instanceof RuntimeException) {
+                throw (RuntimeException) first;
+            }
+            throw new JGitInternalException("Exception caught during execution of fetch all command", first);
+        }
+
+        Map<String, FetchResult> ordered = new LinkedHashMap<>();
+        names.forEach(name -> ordered.put(name, results.get(name)));
+        return ordered;
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private FetchResult fetchObjects(String remote, ProgressMonitor monitor) throws GitAPIException {
+        FetchCommand fetch = Git.wrap(repo).fetch()
+                .setRemote(remote)
+                .setDryRun(true)
+                .setCheckFetchedObjects(true)
+                .setRemoveDeletedRefs(removeDeletedRefs)
+                .setProgressMonitor(monitor);
+        if (tagOpt != null) {
+            fetch.setTagOpt(tagOpt);
+        }
+        configure(fetch);
+        return fetch.call();
+    }
+
+    /**
+     * Applies the ref updates that the dry-run fetch only pretended to make. Their results are updated in place.
+     */
+    private void updateRefs(FetchResult result) throws IOException {
+        BatchRefUpdate batch = repo.getRefDatabase().newBatchUpdate()
+                .setAllowNonFastForwards(true)
+                .setRefLogMessage("fetch", true);
+        for (TrackingRefUpdate update : result.getTrackingRefUpdates()) {
+            ReceiveCommand command = update.asReceiveCommand();
+            if (command.getResult() != ReceiveCommand.Result.OK) {
+                // rejected by the fetch
+                continue;
+            }
+            Ref current = repo.getRefDatabase().exactRef(update.getLocalName());
+            ObjectId currentId = current != null && current.getObjectId() != null
+                    ? current.getObjectId()
+                    : ObjectId.zeroId();
+            if (currentId.equals(command.getNewId())) {
+                continue;
+            }
+            command.setResult(ReceiveCommand.Result.NOT_ATTEMPTED);
+            batch.addCommand(command);
+        }
+        if (!batch.getCommands().isEmpty()) {
+            try (RevWalk walk = new RevWalk(repo)) {
+                batch.execute(walk, NullProgressMonitor.INSTANCE);
+            }
+        }
+    }
+}
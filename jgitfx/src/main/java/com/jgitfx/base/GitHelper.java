@@ -1,7 +1,14 @@
 package com.jgitfx.base;
 
+import com.jgitfx.base.log.CommitLog;
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CloneCommand;
@@ -17,13 +24,19 @@ import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.RevertCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RefSpec;
@@ -49,23 +62,35 @@ public class GitHelper {
      * ************************* */
 
     /**
-     * Creates a new Git repository in the parent directory
+     * Creates a new Git repository in the parent directory. The repository is cached in
+     * {@link RepositoryHandleCache#getDefault()}, so the returned Git object should be closed when it is
+     * no longer needed.
      * @param parentDirectory the directory in which to create the new Git repository
      * @return a high-porcelain Git object
      * @throws GitAPIException
      */
     public static Git createRepoIn(File parentDirectory) throws GitAPIException {
-        return Git.init().setDirectory(parentDirectory).call();
+        try {
+            return RepositoryHandleCache.getDefault().create(parentDirectory);
+        } catch (IOException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        }
     }
 
     /**
-     * Opens a local Git repository
+     * Opens an existing local Git repository. If the repository is already open, its cached instance is reused,
+     * so the returned Git object should be closed when it is no longer needed (see {@link RepositoryHandleCache}).
      * @param gitMetaDirectory the ".git" directory to open
      * @return a high-porcelain Git object
      * @throws GitAPIException
+     * @throws JGitInternalException if the directory is not a Git repository or could not be read
      */
     public static Git openRepo(File gitMetaDirectory) throws GitAPIException {
-        return Git.init().setGitDir(gitMetaDirectory).call();
+        try {
+            return RepositoryHandleCache.getDefault().open(gitMetaDirectory);
+        } catch (IOException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        }
     }
 
     /**
@@ -78,11 +103,11 @@ public class GitHelper {
      */
     public static Git cloneRepo(String cloneURI, File parentDirectory) throws GitAPIException {
         CloneCommand clone = Git.cloneRepository();
-        return Git.cloneRepository()
-                // essential
-                .setURI(cloneURI)               // essential
+        return GitMetrics.record(GitOperation.CLONE, () -> clone
+                .setURI(cloneURI)
                 .setDirectory(parentDirectory)  // parent directory to store git dir
-                .call();
+                .setProgressMonitor(GitMetrics.countObjects(GitOperation.CLONE, null))
+                .call());
     }
 
     /**
@@ -105,10 +130,11 @@ public class GitHelper {
             clone.setBranch(checkoutRef);
         }
 
-        return clone
+        return GitMetrics.record(GitOperation.CLONE, () -> clone
                 .setURI(cloneURI)
                 .setDirectory(parentDirectory)
-                .call();
+                .setProgressMonitor(GitMetrics.countObjects(GitOperation.CLONE, null))
+                .call());
     }
 
     /**
@@ -141,13 +167,62 @@ public class GitHelper {
             clone.setBranchesToClone(branchesToClone);
         }
 
+        monitor = GitMetrics.countObjects(GitOperation.CLONE, monitor);
+        if (monitor != null) { clone.setProgressMonitor(monitor); }
+
+        return GitMetrics.record(GitOperation.CLONE, () -> clone
+                .setURI(cloneURI)
+                .setDirectory(parentDirectory)
+                .setRemote(remoteName)
+                .call());
+    }
+
+    /**
+     * Clones only the latest commit of one branch of a git repository and checks it out, like
+     * {@code git clone --depth 1 --single-branch}.
+     * @param cloneURI the uri to the remote repository
+     * @param parentDirectory the directory in which to store the git meta directory (".git" directory)
+     * @param branch the branch to clone or, if {@code null}, the branch to which the remote HEAD points
+     * @return the cloned Git repository
+     * @throws GitAPIException
+     * @see ShallowCloneCommand
+     */
+    public static Git cloneBranchTip(String cloneURI, File parentDirectory, String branch) throws GitAPIException {
+        return cloneRepo(cloneURI, parentDirectory, Constants.DEFAULT_REMOTE_NAME, branch, true, 1, -1, false, null);
+    }
+
+    /**
+     * Clones a git repository with only part of its history and stores it in the parent directory.
+     * @param cloneURI the uri to the remote repository
+     * @param parentDirectory the directory in which to store the git meta directory (".git" directory)
+     * @param branch the branch to check out or, if {@code null}, the branch to which the remote HEAD points
+     * @param singleBranch whether to only clone the given branch instead of all branches
+     * @param depth how many commits of each branch's history to clone, or 0 for all of them
+     * @param blobLimit the size in bytes above which blobs are left out, or -1 to clone all blobs
+     * @param noCheckout whether to skip checking out the branch
+     * @param monitor reports the progress of the clone command; can be null
+     * @return the cloned Git repository
+     * @throws GitAPIException
+     * @see ShallowCloneCommand
+     */
+    public static Git cloneRepo(String cloneURI, File parentDirectory, String remoteName, String branch,
+                                boolean singleBranch, int depth, long blobLimit, boolean noCheckout,
+                                ProgressMonitor monitor) throws GitAPIException {
+        ShallowCloneCommand clone = new ShallowCloneCommand();
+
+        monitor = GitMetrics.countObjects(GitOperation.CLONE, monitor);
         if (monitor != null) { clone.setProgressMonitor(monitor); }
 
-        return clone
+        return GitMetrics.record(GitOperation.CLONE, () -> clone
                 .setURI(cloneURI)
                 .setDirectory(parentDirectory)
                 .setRemote(remoteName)
-                .call();
+                .setBranch(branch)
+                .setSingleBranch(singleBranch)
+                .setDepth(depth)
+                .setBlobLimit(blobLimit)
+                .setNoCheckout(noCheckout)
+                .call());
     }
 
     /* ************************* *
@@ -176,7 +251,27 @@ public class GitHelper {
         AddCommand adder = git.add();
         adder.setUpdate(excludeNewFiles);
         relativePaths.forEach(adder::addFilepattern);
-        adder.call();
+        GitMetrics.record(GitOperation.ADD, relativePaths.size(), adder::call);
+    }
+
+    /**
+     * Add (stage) files to the index like {@link #addFiles(Git, List, boolean)}, but hash the files on all cores
+     * via {@link ParallelAddCommand}. Meant for staging many or very large files.
+     * @param git the git repository
+     * @param relativePaths the relative paths of the files to add
+     * @param excludeNewFiles if true, any untracked files in {@code relativePaths} will not be added (they won't
+     *                        become "tracked" at the end of the call).
+     * @param monitor notified each time a chunk of files has been hashed; can be used to cancel the call.
+     *                May be null.
+     * @throws GitAPIException
+     */
+    public static void addFilesInParallel(Git git, List<String> relativePaths, boolean excludeNewFiles,
+                                          ProgressMonitor monitor) throws GitAPIException {
+        ParallelAddCommand adder = new ParallelAddCommand(git.getRepository());
+        adder.setUpdate(excludeNewFiles);
+        adder.setProgressMonitor(monitor);
+        relativePaths.forEach(adder::addFilepattern);
+        GitMetrics.record(GitOperation.ADD, relativePaths.size(), adder::call);
     }
 
     /**
@@ -210,13 +305,46 @@ public class GitHelper {
      */
     public static RevCommit commitFiles(
             Git git, boolean amendCommit, String message, PersonIdent author, PersonIdent committer) throws GitAPIException {
-        return git.commit()
+        RevCommit commit = GitMetrics.record(GitOperation.COMMIT, () -> git.commit()
                 .setAllowEmpty(false)       // don't allow empty commit: a commit that changes nothing
                 .setAmend(amendCommit)      // whether commit is amending previous one or not
                 .setMessage(message)
                 .setAuthor(author)
                 .setCommitter(committer)
-                .call();
+                .call());
+        refreshCommitGraph(git);
+        return commit;
+    }
+
+    /**
+     * Adds (stages) files to the index and commits them like {@link #addFiles(Git, List)} followed by
+     * {@link #commitFiles(Git, boolean, String, PersonIdent, PersonIdent)}, but via {@link AddAndCommitCommand}, so
+     * the index is only locked, read, and written once. Meant for large indexes.
+     * @param git the git repo
+     * @param relativePaths the relative paths of the files to add
+     * @param amendCommit if true, the previous commit will be amended by this one
+     * @param message commit message
+     * @param author commit author. See {@link #commitFiles(Git, boolean, String, PersonIdent, PersonIdent)}
+     * @param committer commit committer. See {@link #commitFiles(Git, boolean, String, PersonIdent, PersonIdent)}
+     * @param monitor notified while the files are added; can be used to cancel the call until the commit starts.
+     *                May be null.
+     * @return the commit
+     * @throws GitAPIException
+     */
+    public static RevCommit addAndCommitFiles(Git git, List<String> relativePaths, boolean amendCommit,
+                                              String message, PersonIdent author, PersonIdent committer,
+                                              ProgressMonitor monitor) throws GitAPIException {
+        AddAndCommitCommand command = new AddAndCommitCommand(git.getRepository())
+                .setAllowEmpty(false)       // don't allow empty commit: a commit that changes nothing
+                .setAmend(amendCommit)
+                .setMessage(message)
+                .setAuthor(author)
+                .setCommitter(committer)
+                .setProgressMonitor(monitor);
+        relativePaths.forEach(command::addFilepattern);
+        RevCommit commit = GitMetrics.record(GitOperation.COMMIT, relativePaths.size(), command::call);
+        refreshCommitGraph(git);
+        return commit;
     }
 
     /* ************************************ *
@@ -245,11 +373,11 @@ public class GitHelper {
 
         setupMergeCommand(merge, commitsByRef, commitsById, commitsByNameAndId, monitor, strategy, fastForwardMode);
 
-        return merge
+        return GitMetrics.record(GitOperation.MERGE, () -> merge
                 .setStrategy(strategy)
                 .setFastForward(fastForwardMode)
                 .setSquash(true)
-                .call();
+                .call());
     }
 
     public static MergeResult mergeWithoutCommit(Git git, MergeStrategy strategy, List<Ref> commitsByRef,
@@ -260,11 +388,11 @@ public class GitHelper {
 
         setupMergeCommand(merge, commitsByRef, commitsById, commitsByNameAndId, monitor, strategy, fastForwardMode);
 
-        return merge
+        return GitMetrics.record(GitOperation.MERGE, () -> merge
                 .setStrategy(strategy)
                 .setFastForward(fastForwardMode)
                 .setCommit(false)
-                .call();
+                .call());
     }
 
     public static MergeResult mergeWithCommit(Git git, MergeStrategy strategy, List<Ref> commitsByRef, List<AnyObjectId> commitsById,
@@ -275,9 +403,9 @@ public class GitHelper {
 
         setupMergeCommand(merge, commitsByRef, commitsById, commitsByNameAndId, monitor, strategy, fastForwardMode);
 
-        return git.merge()
+        return GitMetrics.record(GitOperation.MERGE, () -> git.merge()
                 .setMessage(commitMessage)           // message to be used for merge commit
-                .call();
+                .call());
     }
 
 //    public static void rebase(Git git) throws GitAPIException {
@@ -321,7 +449,7 @@ public class GitHelper {
     public static void revertChanges(Git git, List<String> relativePaths) throws GitAPIException {
         CheckoutCommand checkout = git.checkout();
         relativePaths.forEach(checkout::addPath);
-        checkout.call();
+        GitMetrics.record(GitOperation.CHECKOUT, relativePaths.size(), checkout::call);
     }
 
     /**
@@ -390,10 +518,10 @@ public class GitHelper {
         commitsById.forEach(revert::include);
         commitsByNameAndId.forEach(nc -> revert.include(nc.getName(), nc.getObjectId()));
         
-        return revert
+        return GitMetrics.record(GitOperation.REVERT, () -> revert
                 .setStrategy(strategy)
                 .setOurCommitName(ourCommitName)
-                .call();
+                .call());
     }
 
     /**
@@ -403,9 +531,9 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static void reset(Git git, ResetCommand.ResetType mode) throws GitAPIException {
-        git.reset()
+        GitMetrics.record(GitOperation.RESET, () -> git.reset()
                 .setMode(mode)
-                .call();
+                .call());
     }
 
     /**
@@ -416,10 +544,10 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static void reset(Git git, ResetCommand.ResetType mode, String ref) throws GitAPIException {
-        git.reset()
+        GitMetrics.record(GitOperation.RESET, () -> git.reset()
                 .setMode(mode)
                 .setRef(ref)
-                .call();
+                .call());
     }
 
     /**
@@ -432,7 +560,7 @@ public class GitHelper {
     public static void reset(Git git, ResetCommand.ResetType mode, List<String> relativePaths) throws GitAPIException {
         ResetCommand reset = git.reset();
         relativePaths.forEach(reset::addPath);
-        reset.setMode(mode).call();
+        GitMetrics.record(GitOperation.RESET, relativePaths.size(), reset.setMode(mode)::call);
     }
 
     /**
@@ -447,10 +575,10 @@ public class GitHelper {
                              String ref) throws GitAPIException {
         ResetCommand reset = git.reset();
         relativePaths.forEach(reset::addPath);
-        reset
+        GitMetrics.record(GitOperation.RESET, relativePaths.size(), () -> reset
                 .setMode(mode)
                 .setRef(ref)
-                .call();
+                .call());
     }
 
     /* ************************* *
@@ -465,7 +593,7 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static Ref checkoutBranch(Git git, String branchName) throws GitAPIException {
-        return git.checkout().setName(branchName).call();
+        return GitMetrics.record(GitOperation.CHECKOUT, () -> git.checkout().setName(branchName).call());
     }
 
     /**
@@ -476,11 +604,11 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static Ref checkoutNewLocalBranch(Git git, String branchName) throws GitAPIException {
-        return git.checkout()
+        return GitMetrics.record(GitOperation.CHECKOUT, () -> git.checkout()
                 .setCreateBranch(true)
                 .setName(branchName)
                 // "start point" defaults to HEAD if not specified, so no need to specify it here
-                .call();
+                .call());
     }
 
     /**
@@ -492,11 +620,11 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static Ref checkoutNewLocalBranch(Git git, String branchName, String startPoint) throws GitAPIException {
-        return git.checkout()
+        return GitMetrics.record(GitOperation.CHECKOUT, () -> git.checkout()
                 .setCreateBranch(true)
                 .setName(branchName)
                 .setStartPoint(startPoint)
-                .call();
+                .call());
     }
 
     /**
@@ -508,11 +636,11 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static Ref checkoutNewLocalBranch(Git git, String branchName, RevCommit startPoint) throws GitAPIException {
-        return git.checkout()
+        return GitMetrics.record(GitOperation.CHECKOUT, () -> git.checkout()
                 .setCreateBranch(true)
                 .setName(branchName)
                 .setStartPoint(startPoint.getName())
-                .call();
+                .call());
     }
 
     /**
@@ -540,12 +668,12 @@ public class GitHelper {
     public static Ref checkoutNewBranchFromRemote(
             Git git, String branchName, String startPoint,
             CreateBranchCommand.SetupUpstreamMode upstreamMode) throws GitAPIException {
-        return git.checkout()
+        return GitMetrics.record(GitOperation.CHECKOUT, () -> git.checkout()
                 .setCreateBranch(true)
                 .setName(branchName)
                 .setStartPoint(startPoint)
                 .setUpstreamMode(upstreamMode)
-                .call();
+                .call());
     }
 
     /**
@@ -573,48 +701,48 @@ public class GitHelper {
     public static Ref checkoutNewBranchFromRemote(
             Git git, String branchName, RevCommit startPoint,
             CreateBranchCommand.SetupUpstreamMode upstreamMode) throws GitAPIException {
-        return git.checkout()
+        return GitMetrics.record(GitOperation.CHECKOUT, () -> git.checkout()
                 .setCreateBranch(true)
                 .setName(branchName)
                 .setStartPoint(startPoint)
                 .setUpstreamMode(upstreamMode)
-                .call();
+                .call());
     }
 
     public static Ref createNewLocalBranch(
             Git git, String branchName, String startingPoint) throws GitAPIException {
-        return git.branchCreate()
+        return GitMetrics.record(GitOperation.BRANCH, () -> git.branchCreate()
                 .setStartPoint(startingPoint)
                 .setName(branchName)
-                .call();
+                .call());
     }
 
     public static Ref createNewLocalBranch(
             Git git, String branchName, RevCommit startingPoint) throws GitAPIException {
-        return git.branchCreate()
+        return GitMetrics.record(GitOperation.BRANCH, () -> git.branchCreate()
                 .setStartPoint(startingPoint)
                 .setName(branchName)
-                .call();
+                .call());
     }
 
     public static Ref createNewBranchFromRemote(
             Git git, String branchName, RevCommit startingPoint,
             CreateBranchCommand.SetupUpstreamMode upstreamMode) throws GitAPIException {
-        return git.branchCreate()
+        return GitMetrics.record(GitOperation.BRANCH, () -> git.branchCreate()
                 .setStartPoint(startingPoint)
                 .setName(branchName)
                 .setUpstreamMode(upstreamMode)
-                .call();
+                .call());
     }
 
     public static Ref createNewBranchFromRemote(
             Git git, String branchName, String startingPoint,
             CreateBranchCommand.SetupUpstreamMode upstreamMode) throws GitAPIException {
-        return git.branchCreate()
+        return GitMetrics.record(GitOperation.BRANCH, () -> git.branchCreate()
                 .setStartPoint(startingPoint)
                 .setName(branchName)
                 .setUpstreamMode(upstreamMode)
-                .call();
+                .call());
     }
 
     /**
@@ -624,7 +752,7 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static void deleteBranches(Git git, String... branchNames) throws GitAPIException {
-        git.branchDelete().setBranchNames(branchNames).call();
+        GitMetrics.record(GitOperation.BRANCH, () -> git.branchDelete().setBranchNames(branchNames).call());
     }
 
     /**
@@ -634,7 +762,7 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static void renameCurrentBranchTo(Git git, String newBranchName) throws GitAPIException {
-        git.branchRename().setNewName(newBranchName).call();
+        GitMetrics.record(GitOperation.BRANCH, () -> git.branchRename().setNewName(newBranchName).call());
     }
 
     /**
@@ -645,10 +773,10 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static void renameBranchTo(Git git, String branchToRename, String newBranchName) throws GitAPIException {
-        git.branchRename()
+        GitMetrics.record(GitOperation.BRANCH, () -> git.branchRename()
                 .setOldName(branchToRename)
                 .setNewName(newBranchName)
-                .call();
+                .call());
     }
 
     /**
@@ -681,24 +809,175 @@ public class GitHelper {
         }
     }
 
+    /**
+     * Opens the repository's commit graph and brings it up to date for a query. The graph must be closed with
+     * {@link #closeCommitGraph(CommitGraph)} once the query is answered, so that it doesn't stay in memory and
+     * other processes can use the file.
+     * @return the graph, or null if it can't be opened or updated, in which case the caller walks the history itself
+     */
+    private static CommitGraph openUpdatedCommitGraph(Git git) {
+        CommitGraph graph;
+        try {
+            graph = CommitGraph.open(git.getRepository());
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            graph.update(git.getRepository());
+            return graph;
+        } catch (IOException e) {
+            closeCommitGraph(graph);
+            return null;
+        }
+    }
+
+    private static void closeCommitGraph(CommitGraph graph) {
+        try {
+            graph.close();
+        } catch (IOException e) {
+            // the graph is only a cache: the query was answered, and the next one opens the file again
+        }
+    }
+
+    /**
+     * Brings the repository's commit graph up to date after new commits were made or fetched, if it is in use.
+     */
+    private static void refreshCommitGraph(Git git) {
+        try {
+            CommitGraph.refresh(git.getRepository());
+        } catch (IOException e) {
+            // the graph is only a cache: the next query that uses it updates it again
+        }
+    }
+
+    /**
+     * Resolves a commit ID or ref name to the commit it points to, peeling tags.
+     */
+    private static ObjectId resolveCommit(Git git, String commit) throws RefNotFoundException {
+        Repository repo = git.getRepository();
+        try (RevWalk walk = new RevWalk(repo)) {
+            ObjectId resolved = repo.resolve(commit);
+            if (resolved == null) {
+                throw new RefNotFoundException("Ref " + commit + " cannot be resolved");
+            }
+            return walk.parseCommit(resolved).copy();
+        } catch (IOException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        }
+    }
+
     public static List<Ref> getBranches(Git git, BranchType branchType) throws GitAPIException {
         ListBranchCommand branchList = git.branchList();
         setBranchType(branchList, branchType);
-        return branchList.call();
+        return GitMetrics.record(GitOperation.BRANCH, branchList::call);
     }
 
     /**
-     * Gets the list of branches that contain the given commit
+     * Gets the list of branches that contain the given commit. The repository's {@link CommitGraph} is updated and
+     * used to answer this without reading commits; if it can't be opened or updated (e.g. because another process
+     * has it open), each branch's history is walked instead.
      * @param git the git repository
      * @param commit a commit ID or ref name
      * @return the list of branches with the given commit
+     * @throws RefNotFoundException if {@code commit} does not resolve to an object
      * @throws GitAPIException
      */
     public static List<Ref> getBranchesWithCommit(Git git, BranchType branchType, String commit) throws GitAPIException {
         ListBranchCommand branchList = git.branchList();
         setBranchType(branchList, branchType);
-        branchList.setContains(commit);
-        return branchList.call();
+        return GitMetrics.record(GitOperation.BRANCH, () -> {
+            CommitGraph graph = openUpdatedCommitGraph(git);
+            if (graph == null) {
+                return branchList.setContains(commit).call();
+            }
+            try {
+                ObjectId target = resolveCommit(git, commit);
+                List<Ref> branches = branchList.call();
+                if (!graph.contains(target)) {
+                    // the graph holds every commit a ref reaches, so no branch contains this one (e.g. a commit
+                    // only the reflog still knows)
+                    return new ArrayList<>();
+                }
+                return graph.filterContaining(target, branches);
+            } finally {
+                closeCommitGraph(graph);
+            }
+        });
+    }
+
+    /**
+     * Determines whether a commit is part of another commit's history, like {@code git merge-base --is-ancestor}.
+     * Answered from the repository's {@link CommitGraph} if it can be opened and updated; otherwise, by walking the
+     * history.
+     * @param git the git repository
+     * @param ancestor a commit ID or ref name
+     * @param descendant a commit ID or ref name
+     * @return true if {@code ancestor} is {@code descendant} or one of its ancestors
+     * @throws RefNotFoundException if either commit does not resolve to an object
+     * @throws GitAPIException
+     */
+    public static boolean isAncestor(Git git, String ancestor, String descendant) throws GitAPIException {
+        return GitMetrics.record(GitOperation.BRANCH, () -> {
+            ObjectId ancestorId = resolveCommit(git, ancestor);
+            ObjectId descendantId = resolveCommit(git, descendant);
+            CommitGraph graph = openUpdatedCommitGraph(git);
+            if (graph != null) {
+                try {
+                    if (graph.contains(ancestorId) && graph.contains(descendantId)) {
+                        return graph.isAncestor(ancestorId, descendantId);
+                    }
+                } finally {
+                    closeCommitGraph(graph);
+                }
+            }
+            // without the graph, or e.g. for a commit that no ref reaches
+            try (RevWalk walk = new RevWalk(git.getRepository())) {
+                return walk.isMergedInto(walk.parseCommit(ancestorId), walk.parseCommit(descendantId));
+            } catch (IOException e) {
+                throw new JGitInternalException(e.getMessage(), e);
+            }
+        });
+    }
+
+    /* ************************* *
+     * History
+     * ************************* */
+
+    /**
+     * Opens the history of the checked-out branch, to be read a page at a time (see {@link CommitLog}). The
+     * returned log must be closed when it is no longer needed.
+     * @param git the git repository
+     * @return the log; empty if HEAD does not point to a commit yet
+     * @throws GitAPIException
+     */
+    public static CommitLog log(Git git) throws GitAPIException {
+        return log(git, null, Collections.emptyList());
+    }
+
+    /**
+     * Opens the history of a ref or commit, to be read a page at a time (see {@link CommitLog}). Wrap the log in a
+     * {@link com.jgitfx.base.log.CommitLogList} to show it in a {@link javafx.scene.control.ListView}. The returned
+     * log must be closed when it is no longer needed.
+     * @param git the git repository
+     * @param startRef the ref name or commit ID at which to start, or null for HEAD
+     * @param relativePaths the paths to which to limit the log; empty for the whole history
+     * @return the log; empty if {@code startRef} is null and HEAD does not point to a commit yet
+     * @throws RefNotFoundException if {@code startRef} does not resolve to a commit
+     * @throws GitAPIException
+     */
+    public static CommitLog log(Git git, String startRef, List<String> relativePaths) throws GitAPIException {
+        Repository repo = git.getRepository();
+        try {
+            ObjectId start = repo.resolve(startRef != null ? startRef : Constants.HEAD);
+            if (start == null && startRef != null) {
+                throw new RefNotFoundException("Ref " + startRef + " cannot be resolved");
+            }
+            return new CommitLog(repo, start, relativePaths);
+        } catch (IncorrectObjectTypeException e) {
+            throw new RefNotFoundException("Ref " + startRef + " does not point to a commit", e);
+        } catch (IOException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        }
     }
 
     /* ************************* *
@@ -723,11 +1002,14 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static FetchResult fetch(Git git, String remoteName) throws GitAPIException {
-        return git.fetch()
+        FetchResult result = GitMetrics.record(GitOperation.FETCH, () -> git.fetch()
                 .setRemote(remoteName)
                 .setCheckFetchedObjects(true)
                 .setRemoveDeletedRefs(true)
-                .call();
+                .setProgressMonitor(GitMetrics.countObjects(GitOperation.FETCH, null))
+                .call());
+        refreshCommitGraph(git);
+        return result;
     }
 
     /**
@@ -769,16 +1051,61 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static FetchResult fetch(Git git, String remoteName, List<RefSpec> refSpecs, TagOpt tagOpt, ProgressMonitor monitor) throws GitAPIException {
+        return fetch(git, remoteName, refSpecs, tagOpt, monitor, 0);
+    }
+
+    /**
+     * Same as {@link #fetch(Git, String, List, TagOpt, ProgressMonitor)}, but gives up if the remote doesn't respond
+     * within the given time.
+     * @param timeout how many seconds to wait for the remote at a time; 0 to wait as long as it takes
+     * @return result of the fetch
+     * @throws GitAPIException
+     */
+    public static FetchResult fetch(Git git, String remoteName, List<RefSpec> refSpecs, TagOpt tagOpt,
+                                    ProgressMonitor monitor, int timeout) throws GitAPIException {
         FetchCommand fetch = git.fetch();
+        fetch.setTimeout(timeout);
 
+        monitor = GitMetrics.countObjects(GitOperation.FETCH, monitor);
         if (monitor != null) { fetch.setProgressMonitor(monitor); }
-        return fetch
+        FetchResult result = GitMetrics.record(GitOperation.FETCH, () -> fetch
                 .setRemote(remoteName)
                 .setRefSpecs(refSpecs)
                 .setTagOpt(tagOpt)
                 .setRemoveDeletedRefs(true)
                 .setCheckFetchedObjects(true)
-                .call();
+                .call());
+        refreshCommitGraph(git);
+        return result;
+    }
+
+    /**
+     * Fetches all content from every configured remote at the same time. Note: this command will also prune
+     * deleted references
+     * @param git the git repository
+     * @return the result of each remote's fetch by the remote's name
+     * @throws GitAPIException the first remote's failure, if any remote could not be fetched
+     * @see FetchAllCommand
+     */
+    public static Map<String, FetchResult> fetchAll(Git git) throws GitAPIException {
+        return fetchAll(git, null);
+    }
+
+    /**
+     * Fetches all content from every configured remote at the same time, with a monitor that reports their
+     * merged progress. Note: this command will also prune deleted references
+     * @param git the git repository
+     * @param monitor reports the progress of the fetches; can be null
+     * @return the result of each remote's fetch by the remote's name
+     * @throws GitAPIException the first remote's failure, if any remote could not be fetched
+     * @see FetchAllCommand
+     */
+    public static Map<String, FetchResult> fetchAll(Git git, ProgressMonitor monitor) throws GitAPIException {
+        FetchAllCommand fetch = new FetchAllCommand(git.getRepository());
+        if (monitor != null) { fetch.setProgressMonitor(monitor); }
+        Map<String, FetchResult> results = GitMetrics.record(GitOperation.FETCH, fetch::call);
+        refreshCommitGraph(git);
+        return results;
     }
 
     /**
@@ -845,15 +1172,31 @@ public class GitHelper {
      */
     public static PullResult pullWithMerge(Git git, MergeStrategy strategy, String remoteName, String branchName,
                                            ProgressMonitor monitor) throws GitAPIException {
+        return pullWithMerge(git, strategy, remoteName, branchName, monitor, 0);
+    }
+
+    /**
+     * Same as {@link #pullWithMerge(Git, MergeStrategy, String, String, ProgressMonitor)}, but gives up if the
+     * remote doesn't respond within the given time.
+     * @param timeout how many seconds to wait for the remote at a time; 0 to wait as long as it takes
+     * @return result of the pull
+     * @throws GitAPIException
+     */
+    public static PullResult pullWithMerge(Git git, MergeStrategy strategy, String remoteName, String branchName,
+                                           ProgressMonitor monitor, int timeout) throws GitAPIException {
         PullCommand pull = git.pull();
+        pull.setTimeout(timeout);
 
+        monitor = GitMetrics.countObjects(GitOperation.PULL, monitor);
         if (monitor != null) { pull.setProgressMonitor(monitor); }
 
-        return pull
+        PullResult result = GitMetrics.record(GitOperation.PULL, () -> pull
                 .setStrategy(strategy)
                 .setRemote(remoteName)            // value -> current branch config -> DEFAULT_REMOTE_NAME = "origin"
                 .setRemoteBranchName(branchName)  // value -> current branch config -> current branch name
-                .call();
+                .call());
+        refreshCommitGraph(git);
+        return result;
     }
 
     /**
@@ -904,14 +1247,16 @@ public class GitHelper {
                                       ProgressMonitor monitor) throws GitAPIException {
         PullCommand pull = git.pull();
 
+        monitor = GitMetrics.countObjects(GitOperation.PULL, monitor);
         if (monitor != null) { pull.setProgressMonitor(monitor); }
 
-        return pull
+        PullResult result = GitMetrics.record(GitOperation.PULL, () -> pull
                 .setRebase(true)                 // when true, ignores merge strategy
                 .setRemote(remoteName)           // value -> current branch config -> DEFAULT_REMOTE_NAME = "origin"
                 .setRemoteBranchName(branchName) // value -> current branch config -> current branch name
-                .setProgressMonitor(monitor)
-                .call();
+                .call());
+        refreshCommitGraph(git);
+        return result;
     }
 
     /**
@@ -932,11 +1277,12 @@ public class GitHelper {
      * @throws GitAPIException
      */
     public static Iterable<PushResult> pushAll(Git git, String remoteName) throws GitAPIException {
-        return git.push()
+        return GitMetrics.record(GitOperation.PUSH, () -> git.push()
                 .setRemote(remoteName)
                 .setPushAll()
                 .setPushTags()
-                .call();
+                .setProgressMonitor(GitMetrics.countObjects(GitOperation.PUSH, null))
+                .call());
     }
 
     public static Iterable<PushResult> push(Git git) throws GitAPIException {
@@ -944,7 +1290,10 @@ public class GitHelper {
     }
 
     public static Iterable<PushResult> push(Git git, String remoteName) throws GitAPIException {
-        return git.push().setRemote(remoteName).call();
+        return GitMetrics.record(GitOperation.PUSH, () -> git.push()
+                .setRemote(remoteName)
+                .setProgressMonitor(GitMetrics.countObjects(GitOperation.PUSH, null))
+                .call());
     }
 
     /**
@@ -974,13 +1323,14 @@ public class GitHelper {
                                   ProgressMonitor monitor) throws GitAPIException {
         PushCommand push = git.push();
 
+        monitor = GitMetrics.countObjects(GitOperation.PUSH, monitor);
         if (monitor != null) { push.setProgressMonitor(monitor); }
 
-        return push
+        return GitMetrics.record(GitOperation.PUSH, () -> push
                 .setRemote(remoteName)      // value -> "origin" (DEFAULT_REMOTE_NAME)
                 .setRefSpecs(refSpecs)
                 .setAtomic(useAtomicPush)
-                .call();
+                .call());
     }
 
 }
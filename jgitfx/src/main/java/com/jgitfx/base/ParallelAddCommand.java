@@ -0,0 +1,394 @@
+package com.jgitfx.base;
+
+import com.jgitfx.base.ContentHashCache.FileStat;
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.api.GitCommand;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.api.errors.FilterFailedException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.NoFilepatternException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuildIterator;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.CoreConfig.AutoCRLF;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.NameConflictTreeWalk;
+import org.eclipse.jgit.treewalk.TreeWalk.OperationType;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.WorkingTreeOptions;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+/**
+ * A drop-in replacement for {@link org.eclipse.jgit.api.AddCommand} meant for staging a large number of
+ * (or very large) files.
+ *
+ * <p>{@link org.eclipse.jgit.api.AddCommand} hashes and deflates every file on the calling thread. This command
+ * walks the index and working tree the same way, but hands the regular files that need to be hashed to an
+ * {@link Executor} in chunks of {@link #setChunkSize(int) chunkSize} files, so blobs are inserted on all cores.
+ * The resulting entries are written to the index in a single batched edit once every chunk is done. Files that
+ * have not changed since they were last staged (according to their size and modification time) are not hashed
+ * again.</p>
+ *
+ * <p>Files whose content has to be cleaned before it is stored (due to {@code core.autocrlf} or a clean filter),
+ * symbolic links, and submodules are handled on the calling thread, exactly like
+ * {@link org.eclipse.jgit.api.AddCommand} does.</p>
+ *
+ * <p>The {@link ProgressMonitor} is updated, on the calling thread, each time a chunk is done. If it is cancelled,
+ * the remaining chunks are skipped, the index is left unchanged, and a {@link CanceledException} is thrown.</p>
+ */
+public class ParallelAddCommand extends GitCommand<DirCache> {
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "jgitfx-add");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Collection<String> filepatterns = new LinkedList<>();
+
+    private boolean update = false;
+    private WorkingTreeIterator workingTreeIterator;
+    private Executor executor = DEFAULT_EXECUTOR;
+    private ProgressMonitor monitor = NullProgressMonitor.INSTANCE;
+    private int chunkSize = 256;
+    private ContentHashCache contentHashCache;
+
+    public ParallelAddCommand(Repository repo) {
+        super(repo);
+    }
+
+    /**
+     * @param filepattern repository-relative path of file/directory to add (with / as separator), or "." to add
+     *                    every file
+     */
+    public ParallelAddCommand addFilepattern(String filepattern) {
+        checkCallable();
+        filepatterns.add(filepattern);
+        return this;
+    }
+
+    /**
+     * @param update if true, only files that are already tracked are added (and deleted files are removed from
+     *               the index); otherwise, untracked files are added as well. See
+     *               {@link org.eclipse.jgit.api.AddCommand#setUpdate(boolean)}
+     */
+    public ParallelAddCommand setUpdate(boolean update) {
+        checkCallable();
+        this.update = update;
+        return this;
+    }
+
+    /**
+     * Sets the working tree iterator to use. Only files of a {@link FileTreeIterator} are hashed in parallel. A
+     * {@link ParallelHashingTreeIterator} reuses the index this command has already read.
+     */
+    public ParallelAddCommand setWorkingTreeIterator(WorkingTreeIterator iterator) {
+        checkCallable();
+        this.workingTreeIterator = iterator;
+        return this;
+    }
+
+    /**
+     * Sets the executor on which the chunks are hashed. Defaults to a pool with one thread per core.
+     */
+    public ParallelAddCommand setExecutor(Executor executor) {
+        checkCallable();
+        this.executor = executor;
+        return this;
+    }
+
+    public ParallelAddCommand setProgressMonitor(ProgressMonitor monitor) {
+        checkCallable();
+        this.monitor = monitor == null ? NullProgressMonitor.INSTANCE : monitor;
+        return this;
+    }
+
+    /**
+     * Sets the cache in which the ids of the files are looked up before they are read. A file whose id is cached
+     * and whose blob is already in the repository is not read at all. Defaults to none.
+     */
+    public ParallelAddCommand setContentHashCache(ContentHashCache cache) {
+        checkCallable();
+        this.contentHashCache = cache;
+        return this;
+    }
+
+    /**
+     * Sets how many files are hashed by one task, and thus how often progress is reported. Defaults to 256.
+     */
+    public ParallelAddCommand setChunkSize(int chunkSize) {
+        checkCallable();
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    @Override
+    public DirCache call() throws GitAPIException {
+        checkCallable();
+        DirCache dc = null;
+        try {
+            long lockStart = System.nanoTime();
+            dc = repo.lockDirCache();
+            GitMetrics.recordLockWait(GitOperation.ADD, System.nanoTime() - lockStart);
+
+            stage(dc).commit();
+            setCallable(false);
+        } catch (IOException e) {
+            throw wrap(e, "Exception caught during execution of add command");
+        } finally {
+            if (dc != null) {
+                dc.unlock();
+            }
+        }
+        return dc;
+    }
+
+    /**
+     * Stages the files into the given index, which must already be locked, without writing it. Used by
+     * {@link AddAndCommitCommand} to add and commit the files with a single lock of the index.
+     * @return the builder holding the staged entries; the caller still has to finish or commit it
+     */
+    DirCacheBuilder stage(DirCache dc) throws IOException, GitAPIException {
+        if (filepatterns.isEmpty()) {
+            throw new NoFilepatternException("At least one file pattern is required");
+        }
+        boolean addAll = filepatterns.contains(".");
+
+        try (ObjectInserter inserter = repo.newObjectInserter();
+             NameConflictTreeWalk tw = new NameConflictTreeWalk(repo)) {
+            tw.setOperationType(OperationType.CHECKIN_OP);
+            DirCacheBuilder builder = dc.builder();
+            tw.addTree(new DirCacheBuildIterator(builder));
+            if (workingTreeIterator == null) {
+                workingTreeIterator = new FileTreeIterator(repo);
+            } else if (workingTreeIterator instanceof ParallelHashingTreeIterator) {
+                ((ParallelHashingTreeIterator) workingTreeIterator).useIndex(dc, true);
+                if (contentHashCache != null) {
+                    ((ParallelHashingTreeIterator) workingTreeIterator).setContentHashCache(contentHashCache);
+                }
+            }
+            workingTreeIterator.setDirCacheIterator(tw, 0);
+            tw.addTree(workingTreeIterator);
+            if (!addAll) {
+                tw.setFilter(PathFilterGroup.createFromStrings(filepatterns));
+            }
+
+            boolean rawContentIsClean = workingTreeIterator instanceof FileTreeIterator
+                    && repo.getConfig().get(WorkingTreeOptions.KEY).getAutoCRLF() == AutoCRLF.FALSE;
+            List<PendingBlob> pending = new ArrayList<>();
+
+            // same walk as AddCommand, except that regular files are only queued for hashing
+            byte[] lastAdded = null;
+            while (tw.next()) {
+                if (monitor.isCancelled()) {
+                    throw new CanceledException("Adding files was cancelled");
+                }
+
+                DirCacheIterator c = tw.getTree(0, DirCacheIterator.class);
+                WorkingTreeIterator f = tw.getTree(1, WorkingTreeIterator.class);
+                if (c == null && f != null && f.isEntryIgnored()) {
+                    continue;
+                } else if (c == null && update) {
+                    continue;
+                }
+
+                DirCacheEntry entry = c != null ? c.getDirCacheEntry() : null;
+                if (entry != null && entry.getStage() > 0
+                        && lastAdded != null
+                        && lastAdded.length == tw.getPathLength()
+                        && tw.isPathPrefix(lastAdded, lastAdded.length) == 0) {
+                    // only add one entry for all the stages of a conflicting path
+                    continue;
+                }
+
+                if (tw.isSubtree() && !tw.isDirectoryFileConflict()) {
+                    tw.enterSubtree();
+                    continue;
+                }
+
+                if (f == null) {
+                    // working tree file does not exist
+                    if (entry != null && (!update || FileMode.GITLINK == entry.getFileMode())) {
+                        builder.add(entry);
+                    }
+                    continue;
+                }
+
+                if (entry != null && entry.isAssumeValid()) {
+                    builder.add(entry);
+                    continue;
+                }
+
+                if (f.getEntryRawMode() == FileMode.TYPE_TREE) {
+                    tw.enterSubtree();
+                    continue;
+                }
+
+                if (entry != null && entry.getStage() == 0 && !f.isModified(entry, false, tw.getObjectReader())) {
+                    // already staged
+                    builder.add(entry);
+                    continue;
+                }
+
+                byte[] path = tw.getRawPath();
+                if (entry == null || entry.getStage() > 0) {
+                    entry = new DirCacheEntry(path);
+                }
+                FileMode mode = f.getIndexFileMode(c);
+                entry.setFileMode(mode);
+
+                if (FileMode.GITLINK == mode) {
+                    entry.setLength(0);
+                    entry.setLastModified(0);
+                    entry.setObjectId(f.getEntryObjectId());
+                } else {
+                    entry.setLength(f.getEntryLength());
+                    entry.setLastModified(f.getEntryLastModified());
+                    if (FileMode.SYMLINK != mode && rawContentIsClean && f.getCleanFilterCommand() == null) {
+                        pending.add(new PendingBlob(entry, f.getEntryLength()));
+                    } else {
+                        long len = f.getEntryContentLength();
+                        try (InputStream in = f.openEntryStream()) {
+                            entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, len, in));
+                        }
+                    }
+                }
+                builder.add(entry);
+                lastAdded = path;
+            }
+            inserter.flush();
+
+            insertInParallel(pending);
+            return builder;
+        }
+    }
+
+    /**
+     * Unwraps the {@link FilterFailedException} that a clean filter might have thrown, or wraps the exception in a
+     * {@link JGitInternalException}.
+     */
+    static JGitInternalException wrap(IOException e, String message) throws FilterFailedException {
+        Throwable cause = e.getCause();
+        if (cause instanceof FilterFailedException) {
+            throw (FilterFailedException) cause;
+        }
+        return new JGitInternalException(message, e);
+    }
+
+    /**
+     * Hashes and inserts the given blobs in chunks and sets their object ids.
+     */
+    private void insertInParallel(List<PendingBlob> blobs) throws IOException, CanceledException {
+        monitor.beginTask("Adding files", blobs.size());
+
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Integer>> chunks = new ArrayList<>();
+        File workTree = repo.getWorkTree();
+        for (int start = 0; start < blobs.size(); start += chunkSize) {
+            List<PendingBlob> chunk = blobs.subList(start, Math.min(blobs.size(), start + chunkSize));
+            chunks.add(completion.submit(() -> insertChunk(workTree, chunk)));
+        }
+
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                if (monitor.isCancelled()) {
+                    throw new CanceledException("Adding files was cancelled");
+                }
+                monitor.update(completion.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CanceledException("Adding files was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new JGitInternalException("Exception caught during execution of add command", cause);
+        } finally {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            monitor.endTask();
+        }
+    }
+
+    private Integer insertChunk(File workTree, List<PendingBlob> chunk) throws IOException {
+        // inserters aren't thread-safe, so every chunk gets its own
+        long bytes = 0;
+        int objects = 0;
+        try (ObjectInserter inserter = repo.newObjectInserter();
+             ObjectReader reader = repo.newObjectReader()) {
+            for (PendingBlob blob : chunk) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // cancelled; the entries won't be written
+                    break;
+                }
+                String path = blob.entry.getPathString();
+                File file = new File(workTree, path);
+                FileStat stat = null;
+                if (contentHashCache != null) {
+                    stat = FileStat.of(file);
+                    ObjectId cached = stat != null ? contentHashCache.get(path, stat) : null;
+                    if (cached != null && reader.has(cached)) {
+                        // the same content was added before; there is no need to read it again
+                        blob.entry.setObjectId(cached);
+                        continue;
+                    }
+                }
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    ObjectId id = inserter.insert(Constants.OBJ_BLOB, blob.length, in);
+                    blob.entry.setObjectId(id);
+                    if (stat != null && stat.getSize() == blob.length) {
+                        contentHashCache.put(path, file, stat, id);
+                    }
+                }
+                bytes += blob.length;
+                objects++;
+            }
+            inserter.flush();
+        }
+        GitMetrics.recordWrite(GitOperation.ADD, objects, bytes);
+        return chunk.size();
+    }
+
+    /** An entry whose blob still has to be inserted; the entry itself can only hold an int length */
+    private static final class PendingBlob {
+
+        private final DirCacheEntry entry;
+        private final long length;
+
+        private PendingBlob(DirCacheEntry entry, long length) {
+            this.entry = entry;
+            this.length = length;
+        }
+    }
+}
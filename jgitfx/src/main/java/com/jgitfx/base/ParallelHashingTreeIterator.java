@@ -0,0 +1,323 @@
+package com.jgitfx.base;
+
+import com.jgitfx.base.ContentHashCache.FileStat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.CoreConfig.AutoCRLF;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.util.SystemReader;
+
+/**
+ * A {@link FileTreeIterator} that hashes files on a {@link ForkJoinPool} ahead of the tree walk, for use with
+ * {@link com.jgitfx.base.dialogs.CommitDialogBase#setWorkingTreeIterator(WorkingTreeIterator)},
+ * {@link ParallelAddCommand#setWorkingTreeIterator(WorkingTreeIterator)} or
+ * {@link org.eclipse.jgit.api.StatusCommand#setWorkingTreeIt(WorkingTreeIterator)}.
+ *
+ * <p>{@link FileTreeIterator} hashes a file on the walking thread when the walk asks for its id, which it only
+ * does if the file's size and modification time can't tell whether it changed since it was staged. As soon as
+ * the walk enters a directory, this iterator looks up each of its files in the index and starts hashing the ones
+ * the walk will ask for, so that the ids are usually ready by the time the walk gets there. Files of at least
+ * {@link #setMmapThreshold(long) mmapThreshold} bytes are read through a memory-mapped {@link FileChannel}, smaller
+ * ones (and all files on Windows) into a buffer that each pool thread reuses. With a
+ * {@link #setContentHashCache(ContentHashCache) content hash cache}, files hashed by an earlier walk (or an earlier
+ * run of the application) aren't read at all.</p>
+ *
+ * <p>The index is read when the walk starts, unless one is passed to the constructor. Files are only hashed ahead
+ * if {@code core.autocrlf} is false; files that need a clean filter are still hashed by {@link FileTreeIterator}.
+ * Like any tree iterator, an instance can only be used for one walk.</p>
+ */
+public class ParallelHashingTreeIterator extends FileTreeIterator {
+
+    private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("jgitfx-hash-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+
+    private static final byte[] BLOB_TYPE = Constants.encodedTypeString(Constants.OBJ_BLOB);
+
+    /** The largest window of a file that is mapped at once */
+    private static final long MAX_MAPPING = 1 << 30;
+
+    /**
+     * A mapping is only released once it is garbage collected, and until then Windows doesn't let the file be
+     * modified, renamed or deleted; so files are never mapped there.
+     */
+    private static final boolean CAN_MAP = !SystemReader.getInstance().isWindows();
+
+    // reused by each pool thread
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(Constants::newMessageDigest);
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(64 * 1024));
+
+    /** Shared by an iterator and all of its subtree iterators */
+    private static final class WalkState {
+
+        private ForkJoinPool pool = DEFAULT_POOL;
+        private long mmapThreshold = 1 << 20;
+        private DirCache index;
+        private boolean smudgedOnly = false;
+
+        private ContentHashCache cache;
+
+        private TreeWalk walk;
+        private int dirCacheTree;
+        private boolean hashAhead;
+    }
+
+    private final WalkState state;
+
+    /** the entries passed to {@link #init(Entry[])} by the super constructor; deliberately not initialized */
+    private Entry[] listed;
+
+    /** the pending ids of this directory's files, if any are hashed ahead */
+    private Map<Entry, ForkJoinTask<byte[]>> hashes;
+
+    /** the entry whose id {@link #idBuffer()} returned from {@link #hashes}, if the current one */
+    private Entry hashedEntry;
+
+    public ParallelHashingTreeIterator(Repository repo) {
+        this(repo, null);
+    }
+
+    /**
+     * @param index the index the walk compares the working tree against, or null to read it when the walk starts
+     */
+    public ParallelHashingTreeIterator(Repository repo, DirCache index) {
+        super(repo);
+        state = new WalkState();
+        state.index = index;
+    }
+
+    private ParallelHashingTreeIterator(ParallelHashingTreeIterator parent, File directory) {
+        super(parent, directory, parent.fs);
+        state = parent.state;
+        hashAhead(parent.getEntryPathString() + "/");
+    }
+
+    /**
+     * Sets the pool on which files are hashed. Defaults to a pool with one thread per core.
+     */
+    public void setPool(ForkJoinPool pool) { state.pool = pool; }
+
+    /**
+     * Sets the size from which files are memory-mapped instead of read into a buffer. Defaults to 1 MB. Ignored on
+     * Windows, where a mapped file stays locked until the mapping is garbage collected, so files are always read into
+     * a buffer.
+     */
+    public void setMmapThreshold(long bytes) { state.mmapThreshold = bytes; }
+
+    /**
+     * Sets the cache in which the ids of hashed files are looked up before they are read, and stored after.
+     * Defaults to none.
+     */
+    public void setContentHashCache(ContentHashCache cache) { state.cache = cache; }
+
+    /**
+     * Uses the given index instead of reading it. If {@code smudgedOnly}, only files whose index entries are smudged
+     * are hashed ahead: {@link ParallelAddCommand} doesn't compare the content of files whose modification time
+     * changed, so hashing them ahead would only waste time.
+     */
+    void useIndex(DirCache index, boolean smudgedOnly) {
+        state.index = index;
+        state.smudgedOnly = smudgedOnly;
+    }
+
+    @Override
+    public void setDirCacheIterator(TreeWalk walk, int treeId) {
+        super.setDirCacheIterator(walk, treeId);
+        state.walk = walk;
+        state.dirCacheTree = treeId;
+        state.hashAhead = getOptions().getAutoCRLF() == AutoCRLF.FALSE;
+        if (state.hashAhead && state.index == null) {
+            try {
+                state.index = repository.readDirCache();
+            } catch (IOException e) {
+                // the files are then only hashed when the walk asks for their ids
+                state.hashAhead = false;
+            }
+        }
+        hashAhead("");
+    }
+
+    @Override
+    public AbstractTreeIterator createSubtreeIterator(ObjectReader reader) {
+        return new ParallelHashingTreeIterator(this, ((FileEntry) current()).getFile());
+    }
+
+    @Override
+    protected void init(Entry[] list) {
+        super.init(list);
+        listed = list;
+    }
+
+    @Override
+    public byte[] idBuffer() {
+        hashedEntry = null;
+        ForkJoinTask<byte[]> hash = hashes != null ? hashes.get(current()) : null;
+        if (hash != null && !isCleanAgainstIndex() && !needsCleanFilter()) {
+            byte[] id = hash.join();
+            if (id != null) {
+                hashedEntry = current();
+                return id;
+            }
+        }
+        return super.idBuffer();
+    }
+
+    @Override
+    public int idOffset() {
+        return hashedEntry != null && hashedEntry == current() ? 0 : super.idOffset();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    /**
+     * Starts hashing the files of this directory whose ids the walk is going to ask for.
+     * @param prefix the repository-relative path of this directory, ending in "/" unless it is the root
+     */
+    private void hashAhead(String prefix) {
+        if (!state.hashAhead || listed == null) {
+            return;
+        }
+        for (Entry entry : listed) {
+            if (!(entry instanceof FileEntry) || hashes != null && hashes.containsKey(entry)) {
+                continue;
+            }
+            FileMode mode = entry.getMode();
+            if (mode != FileMode.REGULAR_FILE && mode != FileMode.EXECUTABLE_FILE) {
+                continue;
+            }
+            DirCacheEntry indexEntry = state.index.getEntry(prefix + entry.getName());
+            if (indexEntry != null && needsContentCheck(indexEntry, entry)) {
+                if (hashes == null) {
+                    hashes = new IdentityHashMap<>();
+                }
+                String path = prefix + entry.getName();
+                File file = ((FileEntry) entry).getFile();
+                long length = entry.getLength();
+                long mmapThreshold = state.mmapThreshold;
+                ContentHashCache cache = state.cache;
+                hashes.put(entry, state.pool.submit(() -> cache != null
+                        ? lookUpOrHash(cache, path, file, length, mmapThreshold)
+                        : hash(file, length, mmapThreshold)));
+            }
+        }
+    }
+
+    /**
+     * Whether {@link WorkingTreeIterator#isModified(DirCacheEntry, boolean, ObjectReader)} will have to look at the
+     * file's content. Erring on the side of hashing a file that won't be needed only costs time.
+     */
+    private boolean needsContentCheck(DirCacheEntry indexEntry, Entry entry) {
+        if (indexEntry.getStage() != DirCacheEntry.STAGE_0 || indexEntry.isAssumeValid()
+                || indexEntry.isUpdateNeeded()) {
+            return false;
+        }
+        if (indexEntry.isSmudged()) {
+            return true;
+        }
+        return !state.smudgedOnly
+                && indexEntry.getLength() == (int) entry.getLength()
+                && indexEntry.getLastModified() != entry.getLastModified();
+    }
+
+    /** Same check as {@link WorkingTreeIterator#idBuffer()}, which then reuses the index's id */
+    private boolean isCleanAgainstIndex() {
+        DirCacheIterator i = state.walk.getTree(state.dirCacheTree, DirCacheIterator.class);
+        DirCacheEntry entry = i != null ? i.getDirCacheEntry() : null;
+        return entry != null && compareMetadata(entry) == MetadataDiff.EQUAL;
+    }
+
+    private boolean needsCleanFilter() {
+        try {
+            return getCleanFilterCommand() != null;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static byte[] lookUpOrHash(ContentHashCache cache, String path, File file, long length,
+                                       long mmapThreshold) {
+        FileStat stat = FileStat.of(file);
+        if (stat == null || stat.getSize() != length) {
+            return null;
+        }
+        ObjectId cached = cache.get(path, stat);
+        if (cached != null) {
+            byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+            cached.copyRawTo(id, 0);
+            return id;
+        }
+        byte[] id = hash(file, length, mmapThreshold);
+        if (id != null) {
+            cache.put(path, file, stat, ObjectId.fromRaw(id));
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the file's blob, or null if the file couldn't be read or its length changed
+     */
+    private static byte[] hash(File file, long length, long mmapThreshold) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        digest.update(BLOB_TYPE);
+        digest.update((byte) ' ');
+        digest.update(Constants.encodeASCII(length));
+        digest.update((byte) 0);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != length) {
+                return null;
+            }
+            if (CAN_MAP && length >= mmapThreshold) {
+                for (long position = 0; position < length; position += MAX_MAPPING) {
+                    long size = Math.min(MAX_MAPPING, length - position);
+                    MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                    digest.update(mapping);
+                }
+            } else {
+                ByteBuffer buffer = BUFFER.get();
+                long read = 0;
+                buffer.clear();
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    read += buffer.remaining();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+                if (read != length) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return digest.digest();
+    }
+}
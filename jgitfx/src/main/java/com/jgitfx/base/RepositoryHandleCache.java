@@ -0,0 +1,204 @@
+package com.jgitfx.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * A cache of open {@link Repository repositories}, keyed by their canonical git directory, so that opening the
+ * same repository again reuses its already-loaded config, refs and pack indexes instead of reading them anew.
+ *
+ * <p>{@link #open(File)} and {@link #create(File)} hand out {@link Git} handles. Each handle counts as one
+ * reference to its repository and must be {@link Git#close() closed} when it is no longer needed. Once a
+ * repository has no references left, it is closed after it has been idle for {@link #getIdleTimeout()}, unless
+ * it is opened again before then. {@link #closeIdle()} closes every unreferenced repository right away.</p>
+ *
+ * <p>{@link #getDefault()} is the cache used by {@link GitHelper#openRepo(File)},
+ * {@link GitHelper#createRepoIn(File)} and the repository menu items.</p>
+ */
+public final class RepositoryHandleCache implements AutoCloseable {
+
+    private static final RepositoryHandleCache DEFAULT = new RepositoryHandleCache();
+    public static RepositoryHandleCache getDefault() { return DEFAULT; }
+
+    private static final ScheduledExecutorService EVICTION_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "jgitfx-repository-eviction");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Map<File, Entry> entries = new HashMap<>();
+    private boolean closed = false;
+
+    private volatile Duration idleTimeout = Duration.ofMinutes(5);
+    public final Duration getIdleTimeout() { return idleTimeout; }
+    public final void setIdleTimeout(Duration timeout) { idleTimeout = timeout; }
+
+    /**
+     * Opens an existing repository, reusing the cached one if it is still open.
+     * @param gitMetaDirectory the ".git" directory of the repository
+     * @return a handle to the repository that must be closed when it is no longer needed
+     * @throws RepositoryNotFoundException if the directory is not a git repository
+     * @throws IOException if the repository could not be read
+     */
+    public Git open(File gitMetaDirectory) throws IOException {
+        File gitDir = FileKey.resolve(gitMetaDirectory, FS.DETECTED);
+        if (gitDir == null) {
+            throw new RepositoryNotFoundException(gitMetaDirectory);
+        }
+        File key = gitDir.getCanonicalFile();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = acquireNew(key, FileKey.exact(key, FS.DETECTED).open(true));
+            }
+            return new Handle(entry);
+        }
+    }
+
+    /**
+     * Creates a new repository (or re-initializes an existing one) whose ".git" directory is placed in the given
+     * directory, and caches it.
+     * @param parentDirectory the directory in which to create the new Git repository
+     * @return a handle to the repository that must be closed when it is no longer needed
+     * @throws GitAPIException
+     * @throws IOException if the path of the created repository could not be resolved
+     */
+    public Git create(File parentDirectory) throws GitAPIException, IOException {
+        Repository created = Git.init().setDirectory(parentDirectory).call().getRepository();
+        File key = created.getDirectory().getCanonicalFile();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = acquireNew(key, created);
+            } else {
+                // already open, so keep using the warm instance
+                created.close();
+            }
+            return new Handle(entry);
+        }
+    }
+
+    /**
+     * Closes every cached repository that is no longer referenced.
+     */
+    public synchronized void closeIdle() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.references == 0) {
+                iterator.remove();
+                entry.repository.close();
+            }
+        }
+    }
+
+    /**
+     * Closes every cached repository that is no longer referenced. The others are closed as soon as their
+     * last handle is closed. Afterwards, no more repositories can be opened through this cache.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    /**
+     * @return the canonical git directories of the repositories that are currently cached
+     */
+    public synchronized List<File> getCachedDirectories() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private Entry acquireNew(File key, Repository repository) {
+        if (closed) {
+            repository.close();
+            throw new IllegalStateException("The repository cache has been closed");
+        }
+        Entry entry = new Entry(key, repository);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.references--;
+        if (entry.references > 0) {
+            return;
+        }
+        if (closed) {
+            entries.remove(entry.key);
+            entry.repository.close();
+            return;
+        }
+
+        long releasedAt = ++entry.releaseCount;
+        Duration timeout = idleTimeout;
+        EVICTION_EXECUTOR.schedule(() -> evictIfStillIdle(entry, releasedAt), timeout.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void evictIfStillIdle(Entry entry, long releasedAt) {
+        // the repository must not have been used (or evicted) since the eviction was scheduled
+        if (entry.references == 0 && entry.releaseCount == releasedAt && entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            entry.repository.close();
+        }
+    }
+
+    /** A cached repository; guarded by the cache */
+    private static final class Entry {
+
+        private final File key;
+        private final Repository repository;
+        private int references = 0;
+        /** incremented every time the last reference is released, to tell stale evictions apart */
+        private long releaseCount = 0;
+
+        private Entry(File key, Repository repository) {
+            this.key = key;
+            this.repository = repository;
+        }
+    }
+
+    /**
+     * A {@link Git} that releases its reference, rather than closing the repository, when it is closed.
+     */
+    private final class Handle extends Git {
+
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Handle(Entry entry) {
+            super(entry.repository);
+            this.entry = entry;
+            entry.references++;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.jgitfx.base;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.util.FileUtils;
+
+/**
+ * Clones a repository with less than all of its history: only one branch, only the last few commits of each
+ * branch, and/or no blobs above a given size. By default, it clones like {@link CloneCommand}.
+ *
+ * <p>JGit's transport can fetch a single branch, but can neither ask the remote for a shallow pack nor filter
+ * blobs. So after a {@link #setDepth(int) depth} or {@link #setBlobLimit(long) blob limit} clone has fetched the
+ * branches, their history is cut off at the given depth and the repository's objects are repacked into a single
+ * pack that only holds the objects still reachable. The commits at which history was cut off are recorded in
+ * {@code .git/shallow}, like {@code git clone --depth} does, so both JGit and Git treat them as having no parents.
+ * Tags that point outside the remaining history are deleted. (A {@link RevWalk} only does so for commits it looks
+ * up before parsing them, though: if the first commit it parses is a shallow one passed to
+ * {@link RevWalk#parseAny}, e.g. by {@link org.eclipse.jgit.api.LogCommand#all()} on a clone of depth 1, it still
+ * tries to read its parents.)</p>
+ *
+ * <p>The work tree is checked out before the repository is repacked, so it is complete even if blobs were left
+ * out. Those blobs can't be read by JGit afterwards (e.g. to diff them); the clone is marked as a partial clone of
+ * the remote, so that Git fetches them from the remote when it needs them.</p>
+ */
+public class ShallowCloneCommand extends TransportCommand<ShallowCloneCommand, Git> {
+
+    private String uri;
+    private File directory;
+    private String remote = Constants.DEFAULT_REMOTE_NAME;
+    private String branch;
+    private boolean singleBranch = false;
+    private boolean noCheckout = false;
+    private int depth = 0;
+    private long blobLimit = -1;
+    private ProgressMonitor monitor = NullProgressMonitor.INSTANCE;
+
+    public ShallowCloneCommand() {
+        super(null);
+    }
+
+    /**
+     * @see CloneCommand#setURI(String)
+     */
+    public ShallowCloneCommand setURI(String uri) {
+        this.uri = uri;
+        return this;
+    }
+
+    /**
+     * @see CloneCommand#setDirectory(File)
+     */
+    public ShallowCloneCommand setDirectory(File directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * @see CloneCommand#setRemote(String)
+     */
+    public ShallowCloneCommand setRemote(String remote) {
+        this.remote = remote;
+        return this;
+    }
+
+    /**
+     * @param branch the branch ("master" or "refs/heads/master") or, unless only a single branch is cloned, the
+     *               tag to check out; or null for the branch to which the remote HEAD points
+     */
+    public ShallowCloneCommand setBranch(String branch) {
+        this.branch = branch;
+        return this;
+    }
+
+    /**
+     * @param singleBranch if true, only the {@link #setBranch(String) branch} is fetched, now and by later fetches
+     *                     that use the remote's configuration (like {@code git clone --single-branch}).
+     *                     Defaults to false.
+     */
+    public ShallowCloneCommand setSingleBranch(boolean singleBranch) {
+        this.singleBranch = singleBranch;
+        return this;
+    }
+
+    /**
+     * @see CloneCommand#setNoCheckout(boolean)
+     */
+    public ShallowCloneCommand setNoCheckout(boolean noCheckout) {
+        this.noCheckout = noCheckout;
+        return this;
+    }
+
+    /**
+     * @param depth the number of commits of each branch's history to keep (1 for just the tips), or 0 to keep all
+     *              of it. Defaults to 0.
+     */
+    public ShallowCloneCommand setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth must not be negative: " + depth);
+        }
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * @param bytes the size above which blobs are left out of the clone, or a negative number to keep all blobs.
+     *              Defaults to -1.
+     */
+    public ShallowCloneCommand setBlobLimit(long bytes) {
+        this.blobLimit = bytes;
+        return this;
+    }
+
+    public ShallowCloneCommand setProgressMonitor(ProgressMonitor monitor) {
+        this.monitor = monitor == null ? NullProgressMonitor.INSTANCE : monitor;
+        return this;
+    }
+
+    /**
+     * @return the cloned repository, which should be closed when it is no longer needed
+     */
+    @Override
+    public Git call() throws GitAPIException {
+        CloneCommand clone = Git.cloneRepository()
+                .setURI(uri)
+                .setDirectory(directory)
+                .setRemote(remote)
+                .setNoCheckout(noCheckout)
+                .setProgressMonitor(monitor);
+        configure(clone);
+        String branchRef = null;
+        if (singleBranch) {
+            branchRef = findRemoteBranch();
+            clone.setBranch(branchRef)
+                    .setCloneAllBranches(false)
+                    .setBranchesToClone(Collections.singletonList(branchRef));
+        } else {
+            clone.setCloneAllBranches(true);
+            if (branch != null) {
+                clone.setBranch(branch);
+            }
+        }
+
+        Git git = clone.call();
+        try {
+            Repository repo = git.getRepository();
+            if (singleBranch) {
+                fetchOnly(repo, branchRef);
+            }
+            if (singleBranch || depth > 0 || blobLimit >= 0) {
+                prune(repo);
+            }
+        } catch (IOException e) {
+            git.close();
+            throw new JGitInternalException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            git.close();
+            throw e;
+        }
+        return git;
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    /**
+     * @return the full name of the remote branch to clone, resolving a null {@link #branch} the way
+     * {@link CloneCommand} does
+     */
+    private String findRemoteBranch() throws GitAPIException {
+        LsRemoteCommand lsRemote = Git.lsRemoteRepository().setRemote(uri);
+        configure(lsRemote);
+        Map<String, Ref> advertised = lsRemote.callAsMap();
+        if (branch != null) {
+            String name = branch.startsWith(Constants.R_HEADS) ? branch : Constants.R_HEADS + branch;
+            if (!advertised.containsKey(name)) {
+                throw new RefNotFoundException("Remote branch " + branch + " not found in " + uri);
+            }
+            return name;
+        }
+
+        Ref head = advertised.get(Constants.HEAD);
+        ObjectId headId = head != null ? head.getObjectId() : null;
+        if (headId == null) {
+            throw new RefNotFoundException("The remote " + uri + " has no HEAD");
+        }
+        if (head.isSymbolic()) {
+            return head.getTarget().getName();
+        }
+        Ref master = advertised.get(Constants.R_HEADS + Constants.MASTER);
+        if (master != null && headId.equals(master.getObjectId())) {
+            return master.getName();
+        }
+        for (Ref ref : advertised.values()) {
+            if (ref.getName().startsWith(Constants.R_HEADS) && headId.equals(ref.getObjectId())) {
+                return ref.getName();
+            }
+        }
+        throw new RefNotFoundException("The remote HEAD of " + uri + " does not point to a branch");
+    }
+
+    /**
+     * Replaces the remote's fetch ref spec for all branches with one for the given branch.
+     */
+    private void fetchOnly(Repository repo, String branchRef) throws IOException {
+        StoredConfig config = repo.getConfig();
+        RemoteConfig remoteConfig;
+        try {
+            remoteConfig = new RemoteConfig(config, remote);
+        } catch (URISyntaxException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        for (RefSpec spec : new ArrayList<>(remoteConfig.getFetchRefSpecs())) {
+            remoteConfig.removeFetchRefSpec(spec);
+        }
+        String tracking = Constants.R_REMOTES + remote + "/" + Repository.shortenRefName(branchRef);
+        remoteConfig.addFetchRefSpec(new RefSpec().setForceUpdate(true).setSourceDestination(branchRef, tracking));
+        remoteConfig.update(config);
+        config.save();
+    }
+
+    /**
+     * Cuts off history at {@link #depth}, deletes tags that point outside of it, and replaces all objects with a
+     * single pack of the objects that are still reachable and within the {@link #blobLimit}.
+     */
+    private void prune(Repository repo) throws IOException {
+        try (ObjectWalk walk = new ObjectWalk(repo)) {
+            Collection<RevCommit> shallow = cutOffHistory(repo, walk);
+            if (!shallow.isEmpty()) {
+                writeShallowFile(repo, shallow);
+            }
+            walk.reset();
+            walk.assumeShallow(shallow);
+            List<RevObject> objects = listReachableObjects(repo, walk);
+            replaceObjects(repo, objects, blobLimit >= 0);
+            if (blobLimit >= 0) {
+                markAsPartialClone(repo);
+            }
+        }
+    }
+
+    /**
+     * Walks back {@link #depth} commits from every branch and deletes the tags that don't point to one of them.
+     * @return the commits whose parents are left out
+     */
+    private Collection<RevCommit> cutOffHistory(Repository repo, RevWalk walk) throws IOException {
+        RevFlag kept = walk.newFlag("kept");
+        List<RevCommit> generation = new ArrayList<>();
+        List<Ref> tags = new ArrayList<>();
+        for (Ref ref : repo.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+            if (ref.getName().startsWith(Constants.R_TAGS)) {
+                tags.add(ref);
+                continue;
+            }
+            ObjectId id = ref.getObjectId();
+            RevObject object = id != null ? walk.peel(walk.parseAny(id)) : null;
+            if (object instanceof RevCommit && !object.has(kept)) {
+                object.add(kept);
+                generation.add((RevCommit) object);
+            }
+        }
+
+        List<RevCommit> shallow = new ArrayList<>();
+        for (int d = 1; !generation.isEmpty(); d++) {
+            List<RevCommit> next = new ArrayList<>();
+            for (RevCommit commit : generation) {
+                walk.parseHeaders(commit);
+                if (d == depth) {
+                    if (commit.getParentCount() != 0) {
+                        shallow.add(commit);
+                    }
+                    continue;
+                }
+                for (RevCommit parent : commit.getParents()) {
+                    if (!parent.has(kept)) {
+                        parent.add(kept);
+                        next.add(parent);
+                    }
+                }
+            }
+            generation = next;
+        }
+
+        for (Ref tag : tags) {
+            RevObject target = walk.peel(walk.parseAny(tag.getObjectId()));
+            if (!target.has(kept)) {
+                RefUpdate update = repo.updateRef(tag.getName());
+                update.setForceUpdate(true);
+                RefUpdate.Result result = update.delete();
+                if (result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE) {
+                    throw new IOException("Could not delete " + tag.getName() + ": " + result);
+                }
+            }
+        }
+        return shallow;
+    }
+
+    private static void writeShallowFile(Repository repo, Collection<RevCommit> shallow) throws IOException {
+        TreeSet<String> ids = new TreeSet<>();
+        shallow.forEach(commit -> ids.add(commit.name()));
+        File file = new File(repo.getDirectory(), Constants.SHALLOW);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII)) {
+            for (String id : ids) {
+                writer.write(id);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * @return the objects reachable from the remaining refs, without the blobs above {@link #blobLimit}
+     */
+    private List<RevObject> listReachableObjects(Repository repo, ObjectWalk walk) throws IOException {
+        for (Ref ref : repo.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+            if (ref.getObjectId() != null) {
+                walk.markStart(walk.parseAny(ref.getObjectId()));
+            }
+        }
+        ObjectReader reader = walk.getObjectReader();
+        List<RevObject> objects = new ArrayList<>();
+        RevObject object;
+        while ((object = walk.next()) != null) {
+            objects.add(object);
+        }
+        while ((object = walk.nextObject()) != null) {
+            if (blobLimit < 0 || object.getType() != Constants.OBJ_BLOB
+                    || reader.getObjectSize(object, Constants.OBJ_BLOB) <= blobLimit) {
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Writes the objects into a new pack and deletes all other packs and loose objects.
+     * @param promisor whether to mark the pack as one whose missing objects the remote promises to provide
+     */
+    private void replaceObjects(Repository repo, List<RevObject> objects, boolean promisor) throws IOException {
+        File objectsDir = ((FileRepository) repo).getObjectsDirectory();
+        File packDir = new File(objectsDir, "pack");
+        String name;
+        File tmpPack = new File(packDir, "shallow_clone.pack_tmp");
+        File tmpIdx = new File(packDir, "shallow_clone.idx_tmp");
+        try {
+            try (PackWriter writer = new PackWriter(new PackConfig(repo), repo.newObjectReader())) {
+                writer.setDeltaBaseAsOffset(true);
+                writer.preparePack(objects.iterator());
+                name = "pack-" + writer.computeName().getName();
+                try (OutputStream out = new FileOutputStream(tmpPack)) {
+                    writer.writePack(monitor, monitor, out);
+                }
+                try (OutputStream out = new FileOutputStream(tmpIdx)) {
+                    writer.writeIndex(out);
+                }
+            }
+
+            // nothing but this command uses the repository yet, so its packs can simply be replaced
+            repo.getObjectDatabase().close();
+            File[] oldFiles = packDir.listFiles((dir, file) -> file.startsWith("pack-"));
+            if (oldFiles != null) {
+                for (File file : oldFiles) {
+                    FileUtils.delete(file, FileUtils.RETRY);
+                }
+            }
+            File[] looseDirs = objectsDir.listFiles((dir, file) -> file.length() == 2);
+            if (looseDirs != null) {
+                for (File dir : looseDirs) {
+                    FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.RETRY);
+                }
+            }
+            if (promisor) {
+                FileUtils.createNewFile(new File(packDir, name + ".promisor"));
+            }
+            FileUtils.rename(tmpPack, new File(packDir, name + ".pack"), StandardCopyOption.ATOMIC_MOVE);
+            FileUtils.rename(tmpIdx, new File(packDir, name + ".idx"), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.delete(tmpPack, FileUtils.SKIP_MISSING);
+            FileUtils.delete(tmpIdx, FileUtils.SKIP_MISSING);
+        }
+    }
+
+    /**
+     * Lets Git fetch the blobs that were left out from the remote, the way it does for
+     * {@code git clone --filter=blob:limit=<n>}.
+     */
+    private void markAsPartialClone(Repository repo) throws IOException {
+        StoredConfig config = repo.getConfig();
+        config.setInt(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_REPO_FORMAT_VERSION, 1);
+        config.setString("extensions", null, "partialClone", remote);
+        config.setBoolean(ConfigConstants.CONFIG_REMOTE_SECTION, remote, "promisor", true);
+        config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, remote, "partialCloneFilter",
+                "blob:limit=" + blobLimit);
+        config.save();
+    }
+}
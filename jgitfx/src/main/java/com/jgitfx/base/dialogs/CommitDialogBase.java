@@ -1,10 +1,25 @@
 package com.jgitfx.base.dialogs;
 
+import com.jgitfx.base.AddAndCommitCommand;
+import com.jgitfx.base.ContentHashCache;
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import com.jgitfx.base.progress.FxProgressMonitor;
 import java.util.List;
 import java.util.Optional;
-import org.eclipse.jgit.api.AddCommand;
-import org.eclipse.jgit.api.CommitCommand;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.DialogEvent;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.CanceledException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -29,9 +44,16 @@ import org.reactfx.value.Val;
  *     }
  * </pre>
  *
- * <p>Though the JGit code implementation should suffice for most use cases, the JGit code can be customized via
- * {@link #setWorkingTreeIterator(WorkingTreeIterator)} for the {@link AddCommand} and
- * {@link #configureCommitCommand(CommitCommand)} for the {@link CommitCommand}</p>
+ * <p>The files are added and committed by an {@link AddAndCommitCommand}, which only locks and writes the index
+ * once. Though the JGit code implementation should suffice for most use cases, it can be customized via
+ * {@link #setWorkingTreeIterator(WorkingTreeIterator)} and {@link #configureCommitCommand(AddAndCommitCommand)}.</p>
+ *
+ * <p>{@link #addAndCommitSelectedFiles()} blocks the JavaFX Application Thread until the files are committed. To
+ * add and commit them on a background thread instead, call {@link #commitInBackgroundOn(ButtonType)} with the
+ * commit button: clicking it then keeps the dialog open and busy (see
+ * {@link CommitDialogPaneBase#displayCommitInProgress(FxProgressMonitor)}) until
+ * {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)} completes, and closing the dialog in the meantime
+ * cancels the commit. The result converter is then not called for the commit button.</p>
  *
  * @param <R> the return result
  * @param <P> the pane class to use for the DialogPane
@@ -41,35 +63,50 @@ public abstract class CommitDialogBase<R, P extends CommitDialogPaneBase> extend
     private final Val<Git> git;
     protected final Git getGitOrThrow() {return git.getOrThrow(); }
 
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jgitfx-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private Optional<WorkingTreeIterator> workingTreeIterator = Optional.empty();
     public final void setWorkingTreeIterator(WorkingTreeIterator iterator) { workingTreeIterator = Optional.of(iterator); }
 
+    private Optional<ContentHashCache> contentHashCache = Optional.empty();
+    /** Sets the cache that spares the {@link AddAndCommitCommand} from reading files it has hashed before. */
+    public final void setContentHashCache(ContentHashCache cache) { contentHashCache = Optional.ofNullable(cache); }
+
+    private Executor executor = DEFAULT_EXECUTOR;
+    /** Sets the executor on which {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)} runs. */
+    public final void setExecutor(Executor executor) { this.executor = executor; }
+
+    private final ReadOnlyBooleanWrapper committing = new ReadOnlyBooleanWrapper(false);
+    public final boolean isCommitting() { return committing.get(); }
+    /** True while {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)} runs */
+    public final ReadOnlyBooleanProperty committingProperty() { return committing.getReadOnlyProperty(); }
+
+    private FxProgressMonitor currentMonitor;
+
     public CommitDialogBase(Val<Git> git) {
         super();
         this.git = git;
     }
 
     /**
-     * Adds the files that were selected and commits them. Note: the {@link AddCommand}
-     * and {@link CommitCommand} are used in this method. {@link AddCommand#setWorkingTreeIterator(WorkingTreeIterator)}
-     * can be configured fia {@link #setWorkingTreeIterator(WorkingTreeIterator)} before calling this method,
-     * and the {@code CommitCommand} can be configured via {@link #configureCommitCommand(CommitCommand)}.
+     * Adds the files that were selected and commits them via an {@link AddAndCommitCommand}.
+     * {@link AddAndCommitCommand#setWorkingTreeIterator(WorkingTreeIterator)} can be configured via
+     * {@link #setWorkingTreeIterator(WorkingTreeIterator)} before calling this method, and the rest of the command
+     * can be configured via {@link #configureCommitCommand(AddAndCommitCommand)}.
      * @return the result of {@link #createResult(DirCache, RevCommit, List)} or null if
      *         a {@link GitAPIException} is thrown.
      */
     protected final R addAndCommitSelectedFiles() {
         List<String> selectedFiles = getDialogPane().getSelectedFiles();
         try {
-            AddCommand add = getGitOrThrow().add();
-            selectedFiles.forEach(add::addFilepattern);
-            workingTreeIterator.ifPresent(add::setWorkingTreeIterator);
-            DirCache cache = add.call();
-
-            CommitCommand commit = getGitOrThrow().commit();
-            configureCommitCommand(commit);
-            RevCommit revCommit = commit.call();
+            AddAndCommitCommand command = createCommand(selectedFiles);
+            RevCommit revCommit = GitMetrics.record(GitOperation.COMMIT, selectedFiles.size(), command::call);
 
-            return createResult(cache, revCommit, selectedFiles);
+            return createResult(command.getIndex(), revCommit, selectedFiles);
         } catch (GitAPIException e) {
             handleGitAPIException(e);
             return null;
@@ -77,7 +114,123 @@ public abstract class CommitDialogBase<R, P extends CommitDialogPaneBase> extend
     }
 
     /**
-     * Method used to configure the {@link CommitCommand} before {@link CommitCommand#call()} is called.
+     * Like {@link #addAndCommitSelectedFiles()}, but adds and commits the files on a background thread (see
+     * {@link #setExecutor(Executor)}), so the JavaFX Application Thread is not blocked. The
+     * {@link AddAndCommitCommand} reports its progress to the given monitor and stops when it is cancelled while
+     * the files are being added. The commit itself can't be cancelled once it has started.
+     *
+     * <p>Must be called on the JavaFX Application Thread. The returned future is completed on that thread:</p>
+     * <ul>
+     *     <li>with the result of {@link #createResult(DirCache, RevCommit, List)} if the files were committed,</li>
+     *     <li>exceptionally, after the exception was passed to {@link #handleGitAPIException(GitAPIException)}, if
+     *         a {@link GitAPIException} was thrown,</li>
+     *     <li>cancelled, if the monitor was cancelled before the commit started,</li>
+     *     <li>or exceptionally, if anything else was thrown.</li>
+     * </ul>
+     * @throws IllegalStateException if a commit is already in progress
+     */
+    protected final CompletableFuture<R> addAndCommitSelectedFilesAsync(FxProgressMonitor monitor) {
+        if (isCommitting()) {
+            throw new IllegalStateException("A commit is already in progress");
+        }
+
+        // read everything the command needs from the pane while on the JavaFX Application Thread
+        List<String> selectedFiles = getDialogPane().getSelectedFiles();
+        AddAndCommitCommand command = createCommand(selectedFiles);
+        command.setProgressMonitor(monitor);
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        committing.set(true);
+        currentMonitor = monitor;
+        executor.execute(() -> {
+            try {
+                RevCommit revCommit = GitMetrics.record(GitOperation.COMMIT, selectedFiles.size(), command::call);
+                Platform.runLater(() -> {
+                    finishCommit();
+                    result.complete(createResult(command.getIndex(), revCommit, selectedFiles));
+                });
+            } catch (CanceledException e) {
+                Platform.runLater(() -> {
+                    finishCommit();
+                    result.cancel(false);
+                });
+            } catch (GitAPIException e) {
+                Platform.runLater(() -> {
+                    finishCommit();
+                    handleGitAPIException(e);
+                    result.completeExceptionally(e);
+                });
+            } catch (Throwable e) {
+                // also catch errors: otherwise the dialog would stay committing, and could never be closed
+                Platform.runLater(() -> {
+                    finishCommit();
+                    result.completeExceptionally(e);
+                });
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Same as {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)} with a new monitor.
+     */
+    protected final CompletableFuture<R> addAndCommitSelectedFilesAsync() {
+        return addAndCommitSelectedFilesAsync(new FxProgressMonitor());
+    }
+
+    /**
+     * Cancels the commit that {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)} is running, if any.
+     */
+    public final void cancelCommit() {
+        if (currentMonitor != null) {
+            currentMonitor.cancel();
+        }
+    }
+
+    /**
+     * Makes the given button commit in the background: clicking it calls
+     * {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)} and keeps the dialog open until the commit
+     * completes. The pane displays the commit's progress in the meantime. Once the files are committed, the dialog
+     * closes with their result; if the commit fails, the dialog stays open. Closing the dialog while the commit
+     * runs cancels it, and the dialog closes once the cancellation took effect.
+     *
+     * <p>Call this once the dialog pane (and its buttons) have been set. A close request handler set afterwards
+     * replaces the one that cancels the commit.</p>
+     */
+    protected final void commitInBackgroundOn(ButtonType commitButton) {
+        getDialogPane().lookupButton(commitButton).addEventFilter(ActionEvent.ACTION, ae -> {
+            ae.consume();
+            if (isCommitting()) {
+                return;
+            }
+
+            FxProgressMonitor monitor = new FxProgressMonitor();
+            getDialogPane().displayCommitInProgress(monitor);
+            addAndCommitSelectedFilesAsync(monitor).whenComplete((result, exception) -> {
+                getDialogPane().displayCommitFinished();
+                if (exception == null) {
+                    setResult(result);
+                    getDialog().close();
+                } else if (exception instanceof CancellationException) {
+                    getDialog().close();
+                }
+            });
+        });
+        // Dialog has no addEventHandler, so wrap whatever close request handler is already set
+        EventHandler<DialogEvent> closeRequestHandler = getOnCloseRequest();
+        setOnCloseRequest(e -> {
+            if (isCommitting()) {
+                e.consume();
+                cancelCommit();
+            } else if (closeRequestHandler != null) {
+                closeRequestHandler.handle(e);
+            }
+        });
+    }
+
+    /**
+     * Method used to configure the {@link AddAndCommitCommand} before {@link AddAndCommitCommand#call()} is
+     * called.
      * Default configuration:
      * <pre>
      *     {@code
@@ -91,7 +244,7 @@ public abstract class CommitDialogBase<R, P extends CommitDialogPaneBase> extend
      * </pre>
      * @param commitCmd the commit command to configure
      */
-    protected void configureCommitCommand(CommitCommand commitCmd) {
+    protected void configureCommitCommand(AddAndCommitCommand commitCmd) {
         P pane = getDialogPane();
         commitCmd
                 .setAllowEmpty(false)
@@ -103,17 +256,33 @@ public abstract class CommitDialogBase<R, P extends CommitDialogPaneBase> extend
     /**
      * Optional method for handling the returned results. Note: {@link #getDialogPane()} can still be used
      * to get other information not provided in the method arguments.
-     * @param cache the result of the {@link AddCommand#call()}
-     * @param commit the result of the {@link CommitCommand#call()}
+     * @param cache the index as written by the {@link AddAndCommitCommand}
+     * @param commit the result of the {@link AddAndCommitCommand#call()}
      * @param selectedFiles the files that were committed
      */
     abstract protected R createResult(DirCache cache, RevCommit commit, List<String> selectedFiles);
 
     /**
      * If a {@link GitAPIException} is thrown, a developer can handle it here. Defaults to printing out stacktrace.
-     * @param e the exception that might be thrown from {@link #addAndCommitSelectedFiles()}
+     * @param e the exception that might be thrown from {@link #addAndCommitSelectedFiles()} or
+     *          {@link #addAndCommitSelectedFilesAsync(FxProgressMonitor)}; always called on the JavaFX Application
+     *          Thread
      */
     protected void handleGitAPIException(GitAPIException e) {
         e.printStackTrace();
     }
+
+    private AddAndCommitCommand createCommand(List<String> selectedFiles) {
+        AddAndCommitCommand command = new AddAndCommitCommand(getGitOrThrow().getRepository());
+        selectedFiles.forEach(command::addFilepattern);
+        workingTreeIterator.ifPresent(command::setWorkingTreeIterator);
+        contentHashCache.ifPresent(command::setContentHashCache);
+        configureCommitCommand(command);
+        return command;
+    }
+
+    private void finishCommit() {
+        committing.set(false);
+        currentMonitor = null;
+    }
 }
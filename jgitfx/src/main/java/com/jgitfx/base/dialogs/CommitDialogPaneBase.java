@@ -1,6 +1,17 @@
 package com.jgitfx.base.dialogs;
 
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import com.jgitfx.base.progress.FxProgressMonitor;
+import com.jgitfx.base.status.IncrementalStatus;
+import com.jgitfx.base.status.RenameDetector;
+import com.jgitfx.base.status.RenameDetector.Rename;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import javafx.application.Platform;
+import javafx.scene.Cursor;
 import javafx.scene.control.DialogPane;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
@@ -31,6 +42,27 @@ public abstract class CommitDialogPaneBase extends DialogPane {
     private final Val<Git> git;
     protected final Git getGitOrThrow() { return git.getOrThrow(); }
 
+    private Optional<IncrementalStatus> incrementalStatus = Optional.empty();
+    /**
+     * Sets the {@link IncrementalStatus} used by {@link #refreshFileViewer()}. When none is set, every refresh
+     * walks the entire working tree.
+     */
+    public final void setIncrementalStatus(IncrementalStatus status) { incrementalStatus = Optional.ofNullable(status); }
+
+    private Optional<RenameDetector> renameDetector = Optional.empty();
+    /**
+     * Sets the {@link RenameDetector} used by {@link #refreshFileViewer()}. The status is displayed right away with
+     * the renames of the previous refresh that it still allows; then renames are detected in the background, and if
+     * they differ, the status is displayed again with them (see {@link #displayFileViewer(Status, List)}). When
+     * none is set, no renames are detected.
+     */
+    public final void setRenameDetector(RenameDetector detector) { renameDetector = Optional.ofNullable(detector); }
+
+    /** counts the calls of {@link #refreshFileViewer()}, so that renames of an outdated status are not displayed */
+    private int refreshCount = 0;
+    /** the renames that are displayed */
+    private List<Rename> renames = Collections.emptyList();
+
     public CommitDialogPaneBase(Val<Git> git) {
         super();
         this.git = git;
@@ -50,15 +82,21 @@ public abstract class CommitDialogPaneBase extends DialogPane {
      * Refreshes the view to show any changes that might have affected the current files.
      *
      * <p>If new files were added, tracked files removed, or tracked files were modified, this method
-     * will call {@link #displayFileViewer(Status)} if {@link Status#hasUncommittedChanges()} returns
+     * will call {@link #displayFileViewer(Status, List)} if {@link Status#hasUncommittedChanges()} returns
      * true and {@link #displayPlaceHolder()} if it returns false.
      */
     public final void refreshFileViewer() {
         try {
-            Status status = getGitOrThrow().status().call();
+            Status status = incrementalStatus.isPresent()
+                    ? incrementalStatus.get().call()
+                    : GitMetrics.record(GitOperation.STATUS, getGitOrThrow().status()::call);
+            int refresh = ++refreshCount;
             if (status.hasUncommittedChanges()) {
-                displayFileViewer(status);
+                renames = RenameDetector.stillApplying(renames, status);
+                displayFileViewer(status, renames);
+                renameDetector.ifPresent(detector -> displayRenamesLater(detector, status, refresh));
             } else {
+                renames = Collections.emptyList();
                 displayPlaceHolder();
             }
         } catch (GitAPIException e) {
@@ -71,11 +109,45 @@ public abstract class CommitDialogPaneBase extends DialogPane {
      */
     abstract protected void displayFileViewer(Status status);
 
+    /**
+     * Update the view to match the new {@link Status} of the Git repository, displaying the given renames as such.
+     * Defaults to {@link #displayFileViewer(Status)}, which ignores the renames.
+     * @param renames the renames found by the {@link #setRenameDetector(RenameDetector) rename detector}; empty if
+     *                none is set
+     */
+    protected void displayFileViewer(Status status, List<Rename> renames) {
+        displayFileViewer(status);
+    }
+
     /**
      * Update the view to inform the user that there are no changes registered.
      */
     abstract protected void displayPlaceHolder();
 
+    /**
+     * Update the view to show that the selected files are being added and committed in the background (see
+     * {@link CommitDialogBase#commitInBackgroundOn(javafx.scene.control.ButtonType)}). Default implementation
+     * disables the content and shows a wait cursor.
+     * @param monitor reports the commit's progress
+     */
+    protected void displayCommitInProgress(FxProgressMonitor monitor) {
+        if (getContent() != null) {
+            getContent().setDisable(true);
+        }
+        setCursor(Cursor.WAIT);
+    }
+
+    /**
+     * Undoes {@link #displayCommitInProgress(FxProgressMonitor)} once the commit has completed, failed, or been
+     * cancelled.
+     */
+    protected void displayCommitFinished() {
+        if (getContent() != null) {
+            getContent().setDisable(false);
+        }
+        setCursor(null);
+    }
+
     /**
      * Handles any {@link GitAPIException}s thrown from {@link #refreshFileViewer()}. Default implementation prints
      * the stracktrace.
@@ -85,6 +157,17 @@ public abstract class CommitDialogPaneBase extends DialogPane {
         e.printStackTrace();
     }
 
-
-
+    /**
+     * Renames are only displayed, so if they can't be detected, the files stay displayed as they are.
+     */
+    private void displayRenamesLater(RenameDetector detector, Status status, int refresh) {
+        detector.detectAsync(status).whenComplete((detected, exception) -> Platform.runLater(() -> {
+            if (exception != null) {
+                exception.printStackTrace();
+            } else if (refresh == refreshCount && !new HashSet<>(detected).equals(new HashSet<>(renames))) {
+                renames = detected;
+                displayFileViewer(status, renames);
+            }
+        }));
+    }
 }
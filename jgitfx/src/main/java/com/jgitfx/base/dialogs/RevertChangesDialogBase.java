@@ -1,5 +1,7 @@
 package com.jgitfx.base.dialogs;
 
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
 import java.util.List;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.Git;
@@ -48,7 +50,7 @@ public abstract class RevertChangesDialogBase<R, P extends RevertChangesDialogPa
         List<String> selectedFiles = getDialogPane().getSelectedFiles();
         selectedFiles.forEach(checkout::addPath);
         try {
-            Ref ref = checkout.call();
+            Ref ref = GitMetrics.record(GitOperation.CHECKOUT, selectedFiles.size(), checkout::call);
             return createResult(ref);
         } catch (GitAPIException e) {
             e.printStackTrace();
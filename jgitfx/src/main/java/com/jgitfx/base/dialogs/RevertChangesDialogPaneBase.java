@@ -1,6 +1,15 @@
 package com.jgitfx.base.dialogs;
 
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import com.jgitfx.base.status.IncrementalStatus;
+import com.jgitfx.base.status.RenameDetector;
+import com.jgitfx.base.status.RenameDetector.Rename;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import javafx.application.Platform;
 import javafx.scene.control.DialogPane;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
@@ -30,6 +39,27 @@ public abstract class RevertChangesDialogPaneBase extends DialogPane {
     private final Val<Git> git;
     protected final Git getGitOrThrow() { return git.getOrThrow(); }
 
+    private Optional<IncrementalStatus> incrementalStatus = Optional.empty();
+    /**
+     * Sets the {@link IncrementalStatus} used by {@link #refreshFileViewer()}. When none is set, every refresh
+     * walks the entire working tree.
+     */
+    public final void setIncrementalStatus(IncrementalStatus status) { incrementalStatus = Optional.ofNullable(status); }
+
+    private Optional<RenameDetector> renameDetector = Optional.empty();
+    /**
+     * Sets the {@link RenameDetector} used by {@link #refreshFileViewer()}. The status is displayed right away with
+     * the renames of the previous refresh that it still allows; then renames are detected in the background, and if
+     * they differ, the status is displayed again with them (see {@link #displayFileViewer(Status, List)}). When
+     * none is set, no renames are detected.
+     */
+    public final void setRenameDetector(RenameDetector detector) { renameDetector = Optional.ofNullable(detector); }
+
+    /** counts the calls of {@link #refreshFileViewer()}, so that renames of an outdated status are not displayed */
+    private int refreshCount = 0;
+    /** the renames that are displayed */
+    private List<Rename> renames = Collections.emptyList();
+
     public RevertChangesDialogPaneBase(Val<Git> git) {
         super();
         this.git = git;
@@ -44,15 +74,21 @@ public abstract class RevertChangesDialogPaneBase extends DialogPane {
      * Refreshes the view to show any changes that might have affected the current files.
      *
      * <p>If modified tracked files have been manually reverted to their previous state or other unmodified
-     * tracked files were modified, this method will call {@link #displayFileViewer(Status)} if
+     * tracked files were modified, this method will call {@link #displayFileViewer(Status, List)} if
      * {@link Status#hasUncommittedChanges()} returns true and {@link #displayPlaceholder()} if it returns false.
      */
     public final void refreshFileViewer() {
         try {
-            Status status = getGitOrThrow().status().call();
+            Status status = incrementalStatus.isPresent()
+                    ? incrementalStatus.get().call()
+                    : GitMetrics.record(GitOperation.STATUS, getGitOrThrow().status()::call);
+            int refresh = ++refreshCount;
             if (status.hasUncommittedChanges()) {
-                displayFileViewer(status);
+                renames = RenameDetector.stillApplying(renames, status);
+                displayFileViewer(status, renames);
+                renameDetector.ifPresent(detector -> displayRenamesLater(detector, status, refresh));
             } else {
+                renames = Collections.emptyList();
                 displayPlaceholder();
             }
         } catch (GitAPIException e) {
@@ -65,6 +101,16 @@ public abstract class RevertChangesDialogPaneBase extends DialogPane {
      */
     protected abstract void displayFileViewer(Status status);
 
+    /**
+     * Update the view to match the new {@link Status} of the Git repository, displaying the given renames as such.
+     * Defaults to {@link #displayFileViewer(Status)}, which ignores the renames.
+     * @param renames the renames found by the {@link #setRenameDetector(RenameDetector) rename detector}; empty if
+     *                none is set
+     */
+    protected void displayFileViewer(Status status, List<Rename> renames) {
+        displayFileViewer(status);
+    }
+
     /**
      * Update the view to inform the user that there are no changes registered.
      */
@@ -77,4 +123,18 @@ public abstract class RevertChangesDialogPaneBase extends DialogPane {
     protected void handleRefreshException(GitAPIException e) {
         e.printStackTrace();
     }
+
+    /**
+     * Renames are only displayed, so if they can't be detected, the files stay displayed as they are.
+     */
+    private void displayRenamesLater(RenameDetector detector, Status status, int refresh) {
+        detector.detectAsync(status).whenComplete((detected, exception) -> Platform.runLater(() -> {
+            if (exception != null) {
+                exception.printStackTrace();
+            } else if (refresh == refreshCount && !new HashSet<>(detected).equals(new HashSet<>(renames))) {
+                renames = detected;
+                displayFileViewer(status, renames);
+            }
+        }));
+    }
 }
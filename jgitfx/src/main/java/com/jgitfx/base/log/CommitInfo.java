@@ -0,0 +1,51 @@
+package com.jgitfx.base.log;
+
+import java.util.Date;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * What a log view shows of a commit. Unlike a {@link org.eclipse.jgit.revwalk.RevCommit}, it does not keep the
+ * commit's raw body or a reference to the walk that produced it.
+ */
+public final class CommitInfo {
+
+    private final ObjectId id;
+    public final ObjectId getId() { return id; }
+
+    private final ObjectId[] parents;
+    public final int getParentCount() { return parents.length; }
+    public final ObjectId getParent(int index) { return parents[index]; }
+
+    private final String authorName;
+    public final String getAuthorName() { return authorName; }
+
+    private final String authorEmail;
+    public final String getAuthorEmail() { return authorEmail; }
+
+    private final long authorTime;
+    /** When the commit was authored, in milliseconds since the epoch */
+    public final long getAuthorTime() { return authorTime; }
+
+    private final String subject;
+    /** The first paragraph of the commit's message, joined into one line */
+    public final String getSubject() { return subject; }
+
+    CommitInfo(ObjectId id, ObjectId[] parents, String authorName, String authorEmail, long authorTime,
+               String subject) {
+        this.id = id;
+        this.parents = parents;
+        this.authorName = authorName;
+        this.authorEmail = authorEmail;
+        this.authorTime = authorTime;
+        this.subject = subject;
+    }
+
+    public Date getAuthorDate() {
+        return new Date(authorTime);
+    }
+
+    @Override
+    public String toString() {
+        return "CommitInfo(" + id.abbreviate(7).name() + " " + subject + ")";
+    }
+}
@@ -0,0 +1,119 @@
+package com.jgitfx.base.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * A repository's history, read a page at a time as {@link CommitInfo}s, newest first.
+ *
+ * <p>{@link org.eclipse.jgit.api.LogCommand} returns the commits themselves, each keeping its raw body, and when
+ * limited to paths, it reads the whole history before returning the first commit so that it can rewrite parents.
+ * A {@code CommitLog} keeps a single {@link RevWalk} open that only walks as far as the pages read so far. Each
+ * commit's body is dropped once its {@link CommitInfo} has been taken from it, and author names are shared
+ * between commits, so the log holds little more than the walked commit graph plus the pages' infos. When limited
+ * to paths, a commit's parents are its actual parents, not the closest ancestors that touch the paths.</p>
+ *
+ * <p>The log is not thread-safe beyond its methods being synchronized; it must be {@link #close() closed}.</p>
+ *
+ * @see CommitLogList
+ */
+public final class CommitLog implements AutoCloseable {
+
+    private final RevWalk walk;
+    /** the author names and emails seen so far, so that commits by the same author share them */
+    private final Map<String, String> strings = new HashMap<>();
+    private boolean exhausted;
+
+    /**
+     * @param start the commit to start at, or null for an empty log (e.g. while HEAD is unborn)
+     * @param paths the repository-relative paths to which the log is limited; empty for the whole history
+     * @throws IOException if the start commit could not be read
+     */
+    public CommitLog(Repository repo, AnyObjectId start, Collection<String> paths) throws IOException {
+        walk = new RevWalk(repo);
+        walk.setRetainBody(true);
+        // rewriting parents would make the walk read the whole history before producing the first commit
+        walk.setRewriteParents(false);
+        if (!paths.isEmpty()) {
+            walk.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+        }
+        exhausted = start == null;
+        if (start != null) {
+            try {
+                walk.markStart(walk.parseCommit(start));
+            } catch (IOException e) {
+                walk.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Reads the next page of the log.
+     * @param max the most commits to read
+     * @return the next at most {@code max} commits; fewer only if the log has no more commits
+     * @throws IOException if a commit could not be read
+     */
+    public synchronized List<CommitInfo> next(int max) throws IOException {
+        if (exhausted) {
+            return Collections.emptyList();
+        }
+        List<CommitInfo> page = new ArrayList<>(max);
+        while (page.size() < max) {
+            RevCommit commit = walk.next();
+            if (commit == null) {
+                exhausted = true;
+                break;
+            }
+            page.add(toInfo(commit));
+            commit.disposeBody();
+        }
+        return page;
+    }
+
+    /**
+     * @return true once {@link #next(int)} has returned the last commit
+     */
+    public synchronized boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public synchronized void close() {
+        exhausted = true;
+        walk.close();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private CommitInfo toInfo(RevCommit commit) {
+        ObjectId[] parents = new ObjectId[commit.getParentCount()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = commit.getParent(i).copy();
+        }
+        PersonIdent author = commit.getAuthorIdent();
+        return new CommitInfo(commit.copy(), parents, share(author.getName()), share(author.getEmailAddress()),
+                author.getWhen().getTime(), commit.getShortMessage());
+    }
+
+    private String share(String string) {
+        String shared = strings.putIfAbsent(string, string);
+        return shared != null ? shared : string;
+    }
+}
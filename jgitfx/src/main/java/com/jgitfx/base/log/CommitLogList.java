@@ -0,0 +1,143 @@
+package com.jgitfx.base.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ObservableListBase;
+import org.reactfx.EventSource;
+import org.reactfx.EventStream;
+
+/**
+ * An {@link javafx.collections.ObservableList} of a {@link CommitLog}'s commits that reads the log a page at a time,
+ * e.g. to be the items of a {@link javafx.scene.control.ListView}.
+ *
+ * <p>The list starts with the log's first page and grows by another page whenever an item near its end is
+ * {@link #get(int) gotten}, which a {@code ListView} only does for the cells it shows; so the log is only read as
+ * far as the user scrolls. Pages are read on a background thread (see {@link #setExecutor(Executor)}) and added
+ * to the list on the JavaFX Application Thread, which is the only thread on which the list may be used.</p>
+ */
+public final class CommitLogList extends ObservableListBase<CommitInfo> implements AutoCloseable {
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jgitfx-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CommitLog log;
+    private final int pageSize;
+    private final List<CommitInfo> commits = new ArrayList<>();
+
+    private Executor executor = DEFAULT_EXECUTOR;
+    public final Executor getExecutor() { return executor; }
+    /** Sets the executor on which pages are read. Defaults to a shared pool of daemon threads. */
+    public final void setExecutor(Executor executor) { this.executor = executor; }
+
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(false);
+    public final boolean isLoading() { return loading.get(); }
+    /** True while a page is being read */
+    public final ReadOnlyBooleanProperty loadingProperty() { return loading.getReadOnlyProperty(); }
+
+    private final ReadOnlyBooleanWrapper exhausted = new ReadOnlyBooleanWrapper(false);
+    public final boolean isExhausted() { return exhausted.get(); }
+    /** True once the list holds all of the log's commits */
+    public final ReadOnlyBooleanProperty exhaustedProperty() { return exhausted.getReadOnlyProperty(); }
+
+    private final EventSource<IOException> failures = new EventSource<>();
+    /** Emits, on the JavaFX Application Thread, why a page could not be read; reading stops after a failure */
+    public final EventStream<IOException> failures() { return failures; }
+
+    /**
+     * Creates the list and starts reading the log's first page.
+     * @param log the log to read; the list closes it when it is {@link #close() closed}
+     * @param pageSize how many commits to read at a time
+     */
+    public CommitLogList(CommitLog log, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("A page must hold at least one commit: " + pageSize);
+        }
+        this.log = log;
+        this.pageSize = pageSize;
+        loadNextPage();
+    }
+
+    /**
+     * Creates the list with pages of 200 commits and starts reading the first page.
+     */
+    public CommitLogList(CommitLog log) {
+        this(log, 200);
+    }
+
+    /**
+     * Gets a commit, and starts reading the next page if the commit is in the last half of the last page read.
+     */
+    @Override
+    public CommitInfo get(int index) {
+        CommitInfo commit = commits.get(index);
+        if (index >= commits.size() - pageSize / 2) {
+            loadNextPage();
+        }
+        return commit;
+    }
+
+    @Override
+    public int size() {
+        return commits.size();
+    }
+
+    /**
+     * Starts reading the next page unless one is being read or the log has no more commits.
+     */
+    public void loadNextPage() {
+        if (isLoading() || isExhausted()) {
+            return;
+        }
+        loading.set(true);
+        executor.execute(() -> {
+            try {
+                List<CommitInfo> page = log.next(pageSize);
+                boolean last = log.isExhausted();
+                Platform.runLater(() -> addPage(page, last));
+            } catch (IOException e) {
+                Platform.runLater(() -> {
+                    exhausted.set(true);
+                    loading.set(false);
+                    failures.push(e);
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops reading pages and closes the log. The commits read so far stay in the list.
+     */
+    @Override
+    public void close() {
+        exhausted.set(true);
+        log.close();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private void addPage(List<CommitInfo> page, boolean last) {
+        // update the state first, so that listeners of the change can ask for the next page
+        loading.set(false);
+        if (last) {
+            exhausted.set(true);
+        }
+        if (!page.isEmpty()) {
+            int from = commits.size();
+            commits.addAll(page);
+            beginChange();
+            nextAdd(from, commits.size());
+            endChange();
+        }
+    }
+}
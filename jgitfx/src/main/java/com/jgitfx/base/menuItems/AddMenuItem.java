@@ -1,10 +1,14 @@
 package com.jgitfx.base.menuItems;
 
+import com.jgitfx.base.ParallelAddCommand;
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
 import javafx.scene.Node;
 import javafx.scene.control.MenuItem;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.reactfx.value.Val;
 
 import java.util.List;
@@ -35,6 +39,19 @@ public abstract class AddMenuItem extends MenuItem {
     private final Val<Git> git;
     private final Supplier<List<String>> filePatternGetter;
 
+    private boolean addInParallel = false;
+    /**
+     * If true, the files are hashed on all cores via {@link ParallelAddCommand}, which is much faster when
+     * staging many or very large files. Defaults to false.
+     */
+    public final void setAddInParallel(boolean value) { addInParallel = value; }
+
+    private ProgressMonitor progressMonitor;
+    /**
+     * Sets the monitor that is notified of the progress of a parallel add (see {@link #setAddInParallel(boolean)}).
+     */
+    public final void setProgressMonitor(ProgressMonitor monitor) { progressMonitor = monitor; }
+
     /**
      * Constructs a MenuItem that will add the untracked files to the git repository.
      *
@@ -53,15 +70,23 @@ public abstract class AddMenuItem extends MenuItem {
      */
     public final void addFiles() {
         try {
-            AddCommand addCmd = git.getOrThrow().add();
-            // insure add command will add newly staged files
-            addCmd.setUpdate(false);
-
-            // add files
             List<String> files = filePatternGetter.get();
-            files.forEach(addCmd::addFilepattern);
+            if (addInParallel) {
+                ParallelAddCommand addCmd = new ParallelAddCommand(git.getOrThrow().getRepository());
+                addCmd.setUpdate(false);
+                addCmd.setProgressMonitor(progressMonitor);
+                files.forEach(addCmd::addFilepattern);
+                GitMetrics.record(GitOperation.ADD, files.size(), addCmd::call);
+            } else {
+                AddCommand addCmd = git.getOrThrow().add();
+                // insure add command will add newly staged files
+                addCmd.setUpdate(false);
+
+                // add files
+                files.forEach(addCmd::addFilepattern);
 
-            addCmd.call();
+                GitMetrics.record(GitOperation.ADD, files.size(), addCmd::call);
+            }
 
             updateFiles(files);
         } catch (GitAPIException e) {
@@ -1,5 +1,8 @@
 package com.jgitfx.base.menuItems;
 
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import com.jgitfx.base.status.StatusProbe;
 import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
@@ -31,9 +34,17 @@ public abstract class CommitMenuItemBase extends MenuItem {
 
     private final Val<Git> git;
 
+    private final StatusProbe statusProbe;
+    /**
+     * @return the probe used by {@link #commitOrInformAsync()}; it can be used to set a different executor or
+     *         to bind a busy indicator to its {@link StatusProbe#scanningProperty()}.
+     */
+    public final StatusProbe getStatusProbe() { return statusProbe; }
+
     public CommitMenuItemBase(Val<Git> git, String text, Node graphic) {
         super(text, graphic);
         this.git = git;
+        this.statusProbe = new StatusProbe(git);
     }
 
     /**
@@ -42,17 +53,34 @@ public abstract class CommitMenuItemBase extends MenuItem {
      */
     public final void commitOrInform() {
         try {
-            Status status = git.getOrThrow().status().call();
-            if (status.hasUncommittedChanges()) {
-                displayCommitDialog(git, status);
-            } else {
-                displayNoChangesDialog();
-            }
+            commitOrInform(GitMetrics.record(GitOperation.STATUS, git.getOrThrow().status()::call));
         } catch (GitAPIException e) {
             handleGitAPIException(e);
         }
     }
 
+    /**
+     * Same as {@link #commitOrInform()}, but the working tree is scanned on a background thread via
+     * {@link #getStatusProbe()}, so the UI stays responsive on large repositories. While the scan runs,
+     * {@link #displayScanningState(StatusProbe)} is called. If this method is called again before the scan
+     * finishes, no second scan is started.
+     *
+     * <p>Must be called on the JavaFX Application Thread.</p>
+     */
+    public final void commitOrInformAsync() {
+        if (statusProbe.scan(this::commitOrInform, this::handleGitAPIException)) {
+            displayScanningState(statusProbe);
+        }
+    }
+
+    private void commitOrInform(Status status) {
+        if (status.hasUncommittedChanges()) {
+            displayCommitDialog(git, status);
+        } else {
+            displayNoChangesDialog();
+        }
+    }
+
     /**
      * Displays the commit dialog when there are tracked files with uncommitted changes.
      * @param git the high porcelain Git object used to refresh a {@link com.jgitfx.jgitfx.fileviewers.FileSelecter}.
@@ -69,9 +97,19 @@ public abstract class CommitMenuItemBase extends MenuItem {
                 .showAndWait();
     }
 
+    /**
+     * Informs the user that the working tree is being scanned for changes. Called by
+     * {@link #commitOrInformAsync()} when a new scan starts. Defaults to {@link StatusProbe#showScanningAlert()},
+     * which shows a cancellable alert if the scan takes more than a moment.
+     * @param probe the probe that is running the scan
+     */
+    protected void displayScanningState(StatusProbe probe) {
+        probe.showScanningAlert();
+    }
+
     /**
      * If a {@link GitAPIException} is thrown, a developer can handle it here. Defaults to printing out stacktrace.
-     * @param e the exception that might be thrown from {@link #commitOrInform()}
+     * @param e the exception that might be thrown from {@link #commitOrInform()} or {@link #commitOrInformAsync()}
      */
     protected void handleGitAPIException(GitAPIException e) {
         e.printStackTrace();
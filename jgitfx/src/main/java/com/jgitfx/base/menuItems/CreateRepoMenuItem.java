@@ -1,5 +1,6 @@
 package com.jgitfx.base.menuItems;
 
+import com.jgitfx.base.GitHelper;
 import javafx.scene.Node;
 import javafx.scene.control.MenuItem;
 import org.eclipse.jgit.api.Git;
@@ -36,11 +37,12 @@ public class CreateRepoMenuItem extends MenuItem {
      * @param parentDirectory the directory in which the ".git" meta-directory should be. For example,
      *                        assuming an absolute path of "/home/user/parentDirectory/", the git repository
      *                        will be created with the path "/home/user/parentDirectory/.git/"
-     * @return the created {@link Git} object, or {@code null} if an error occurs.
+     * @return the created {@link Git} object, or {@code null} if an error occurs. It should be closed when it is
+     *         no longer needed, see {@link GitHelper#createRepoIn(File)}.
      */
     public Git createGitRepo(File parentDirectory) {
         try {
-            return Git.init().setDirectory(parentDirectory).call();
+            return GitHelper.createRepoIn(parentDirectory);
         } catch (GitAPIException e) {
             handleGitAPIException(e);
             return null;
@@ -1,10 +1,12 @@
 package com.jgitfx.base.menuItems;
 
+import com.jgitfx.base.GitHelper;
 import java.io.File;
 import javafx.scene.Node;
 import javafx.scene.control.MenuItem;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
 
 /**
  * A {@link MenuItem} with a method that will open a repository from local storage and return
@@ -32,13 +34,19 @@ public class OpenRepoMenuItem extends MenuItem {
     }
 
     /**
+     * Opens the repository via {@link GitHelper#openRepo(File)}, which reuses the repository if it is already open.
+     * The returned Git object should be closed when it is no longer needed.
      * @param gitMetaDirectory the ".git" directory
      * @return the Git object or null if an error occurs
      */
     public Git openGitRepo(File gitMetaDirectory) {
         try {
-            return Git.init().setGitDir(gitMetaDirectory).call();
+            return GitHelper.openRepo(gitMetaDirectory);
         } catch (GitAPIException e) {
+            handleGitAPIException(e);
+            return null;
+        } catch (JGitInternalException e) {
+            // not a repository, or it could not be read
             e.printStackTrace();
             return null;
         }
@@ -0,0 +1,13 @@
+package com.jgitfx.base.metrics;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+/**
+ * A piece of git work whose metrics are recorded via {@link GitMetrics#record(GitOperation, GitCall)}.
+ * @param <T> the result of the work
+ */
+@FunctionalInterface
+public interface GitCall<T> {
+
+    T call() throws GitAPIException;
+}
@@ -0,0 +1,193 @@
+package com.jgitfx.base.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * Records per-operation metrics of the git work done by {@link com.jgitfx.base.GitHelper} and the dialog and
+ * menu item base classes. Recording is disabled by default; while it is disabled, the only overhead is reading
+ * a volatile flag.
+ *
+ * <p>Once enabled via {@link #setEnabled(boolean)}, every operation's {@link OperationMetrics} is registered as an
+ * MXBean named {@code com.jgitfx:type=GitMetrics,operation=<label>}. The metrics can also be observed through
+ * the JavaFX properties of {@link #of(GitOperation)}.</p>
+ *
+ * <p>Every call records its count and wall time. In addition:</p>
+ * <ul>
+ *     <li>calls given a list of paths record it as the number of files touched,</li>
+ *     <li>fetches and clones record the number of objects received, and pushes the number of objects sent
+ *         (see {@link #countObjects(GitOperation, ProgressMonitor)}),</li>
+ *     <li>{@link com.jgitfx.base.ParallelAddCommand} records the objects and bytes it writes and how long it
+ *         waits for the index lock.</li>
+ * </ul>
+ */
+public final class GitMetrics {
+
+    private static final Map<GitOperation, OperationMetrics> METRICS;
+    static {
+        Map<GitOperation, OperationMetrics> metrics = new EnumMap<>(GitOperation.class);
+        for (GitOperation operation : GitOperation.values()) {
+            metrics.put(operation, new OperationMetrics(operation));
+        }
+        METRICS = Collections.unmodifiableMap(metrics);
+    }
+
+    private static volatile boolean enabled = false;
+    private static boolean registered = false;
+
+    // prevent instantiation
+    private GitMetrics() {}
+
+    public static boolean isEnabled() { return enabled; }
+
+    /**
+     * Enables or disables recording. The first time recording is enabled, the metrics are registered with the
+     * platform MBean server.
+     */
+    public static synchronized void setEnabled(boolean value) {
+        if (value && !registered) {
+            registerMBeans();
+            registered = true;
+        }
+        enabled = value;
+    }
+
+    /**
+     * @return the metrics of the given operation
+     */
+    public static OperationMetrics of(GitOperation operation) {
+        return METRICS.get(operation);
+    }
+
+    /**
+     * Resets the metrics of all operations.
+     */
+    public static void resetAll() {
+        METRICS.values().forEach(OperationMetrics::reset);
+    }
+
+    /**
+     * Runs the call and, if recording is enabled, records its wall time and whether it failed.
+     */
+    public static <T> T record(GitOperation operation, GitCall<T> call) throws GitAPIException {
+        if (!enabled) {
+            return call.call();
+        }
+
+        OperationMetrics metrics = of(operation);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            metrics.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Like {@link #record(GitOperation, GitCall)}, but also records the number of files the call touches.
+     */
+    public static <T> T record(GitOperation operation, int filesTouched, GitCall<T> call) throws GitAPIException {
+        if (enabled) {
+            of(operation).recordFilesTouched(filesTouched);
+        }
+        return record(operation, call);
+    }
+
+    /**
+     * If recording is enabled, wraps the given monitor so that the number of objects received (by a fetch or
+     * clone) or sent (by a push) are recorded for the given operation.
+     * @param monitor the monitor to wrap; may be null
+     * @return the monitor to pass to the command, which is {@code monitor} itself if recording is disabled
+     */
+    public static ProgressMonitor countObjects(GitOperation operation, ProgressMonitor monitor) {
+        if (!enabled) {
+            return monitor;
+        }
+        return new ObjectCountingMonitor(of(operation), monitor == null ? NullProgressMonitor.INSTANCE : monitor);
+    }
+
+    public static void recordWrite(GitOperation operation, long objects, long bytes) {
+        if (enabled) {
+            of(operation).recordWrite(objects, bytes);
+        }
+    }
+
+    public static void recordLockWait(GitOperation operation, long nanos) {
+        if (enabled) {
+            of(operation).recordLockWait(nanos);
+        }
+    }
+
+    private static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics metrics : METRICS.values()) {
+            try {
+                ObjectName name = new ObjectName("com.jgitfx:type=GitMetrics,operation=" + metrics.getOperation());
+                server.registerMBean(metrics, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // registered by another copy of this library
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Forwards everything to its delegate and records the total work of the tasks that receive or send objects.
+     */
+    private static final class ObjectCountingMonitor implements ProgressMonitor {
+
+        private final OperationMetrics metrics;
+        private final ProgressMonitor delegate;
+
+        private ObjectCountingMonitor(OperationMetrics metrics, ProgressMonitor delegate) {
+            this.metrics = metrics;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void start(int totalTasks) {
+            delegate.start(totalTasks);
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+            if (totalWork != UNKNOWN) {
+                if (title.equals(JGitText.get().receivingObjects)) {
+                    metrics.recordRead(totalWork, 0);
+                } else if (title.equals(JGitText.get().writingObjects)) {
+                    metrics.recordWrite(totalWork, 0);
+                }
+            }
+            delegate.beginTask(title, totalWork);
+        }
+
+        @Override
+        public void update(int completed) {
+            delegate.update(completed);
+        }
+
+        @Override
+        public void endTask() {
+            delegate.endTask();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.jgitfx.base.metrics;
+
+/**
+ * The kinds of git operations for which {@link GitMetrics} records metrics.
+ */
+public enum GitOperation {
+    ADD("add"),
+    COMMIT("commit"),
+    MERGE("merge"),
+    FETCH("fetch"),
+    PUSH("push"),
+    PULL("pull"),
+    CLONE("clone"),
+    RESET("reset"),
+    REVERT("revert"),
+    CHECKOUT("checkout"),
+    BRANCH("branch"),
+    STATUS("status");
+
+    private final String label;
+    /**
+     * @return the lower-case name used to label this operation's metrics, e.g. in their JMX object name
+     */
+    public final String getLabel() { return label; }
+
+    GitOperation(String label) {
+        this.label = label;
+    }
+}
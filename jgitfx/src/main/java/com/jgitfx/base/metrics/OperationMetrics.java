@@ -0,0 +1,237 @@
+package com.jgitfx.base.metrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+
+/**
+ * The metrics of one {@link GitOperation}: how often it was called, how long the calls took (as a histogram with
+ * power-of-two buckets), and how many objects, bytes and files they read or wrote.
+ *
+ * <p>Metrics are recorded on whatever thread runs the operation. The JavaFX properties (e.g.
+ * {@link #countProperty()}) are only created once they are asked for and must only be used on the JavaFX
+ * Application Thread. At most one update of them is queued at a time, so binding a status bar to them does not
+ * flood the Application Thread.</p>
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+    /** bucket {@code i} holds durations in [2^(i-1), 2^i) microseconds; the last bucket holds everything longer */
+    private static final int BUCKET_COUNT = 40;
+
+    private final GitOperation operation;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+    private final LongAdder objectsRead = new LongAdder();
+    private final LongAdder objectsWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder filesTouched = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+
+    private volatile long lastNanos = 0;
+
+    // JavaFX properties; created on demand
+    private volatile boolean observed = false;
+    private final AtomicBoolean updatePending = new AtomicBoolean(false);
+    private ReadOnlyLongWrapper countProperty;
+    private ReadOnlyLongWrapper failureCountProperty;
+    private ReadOnlyDoubleWrapper lastTimeMillisProperty;
+    private ReadOnlyDoubleWrapper meanTimeMillisProperty;
+
+    OperationMetrics(GitOperation operation) {
+        this.operation = operation;
+    }
+
+    /* *************** *
+     * Recording       *
+     * *************** */
+
+    /**
+     * Records one call of the operation.
+     * @param nanos how long the call took
+     * @param failed whether the call threw an exception
+     */
+    public void recordCall(long nanos, boolean failed) {
+        count.increment();
+        if (failed) {
+            failures.increment();
+        }
+        totalNanos.add(nanos);
+        lastNanos = nanos;
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+        histogram.incrementAndGet(bucketOf(nanos));
+        scheduleUpdate();
+    }
+
+    public void recordRead(long objects, long bytes) {
+        objectsRead.add(objects);
+        bytesRead.add(bytes);
+    }
+
+    public void recordWrite(long objects, long bytes) {
+        objectsWritten.add(objects);
+        bytesWritten.add(bytes);
+    }
+
+    public void recordFilesTouched(long files) {
+        filesTouched.add(files);
+    }
+
+    public void recordLockWait(long nanos) {
+        lockWaitNanos.add(nanos);
+    }
+
+    /* *************** *
+     * MXBean          *
+     * *************** */
+
+    public GitOperation getGitOperation() { return operation; }
+
+    @Override public String getOperation() { return operation.getLabel(); }
+
+    @Override public long getCount() { return count.sum(); }
+    @Override public long getFailureCount() { return failures.sum(); }
+
+    @Override public double getTotalTimeMillis() { return toMillis(totalNanos.sum()); }
+    @Override public double getMaxTimeMillis() { return toMillis(maxNanos.get()); }
+    @Override public double getMeanTimeMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : toMillis(totalNanos.sum()) / n;
+    }
+    @Override public double getMedianTimeMillis() { return getPercentileTimeMillis(0.5); }
+    @Override public double get95thPercentileTimeMillis() { return getPercentileTimeMillis(0.95); }
+    @Override public double get99thPercentileTimeMillis() { return getPercentileTimeMillis(0.99); }
+
+    @Override public long getObjectsRead() { return objectsRead.sum(); }
+    @Override public long getObjectsWritten() { return objectsWritten.sum(); }
+    @Override public long getBytesRead() { return bytesRead.sum(); }
+    @Override public long getBytesWritten() { return bytesWritten.sum(); }
+    @Override public long getFilesTouched() { return filesTouched.sum(); }
+    @Override public double getLockWaitMillis() { return toMillis(lockWaitNanos.sum()); }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the upper bound of the histogram bucket that contains the given percentile of the recorded calls,
+     *         or 0 if nothing was recorded
+     */
+    public double getPercentileTimeMillis(double percentile) {
+        long[] buckets = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = histogram.get(i);
+            total += buckets[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return getMaxTimeMillis();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        failures.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            histogram.set(i, 0);
+        }
+        objectsRead.reset();
+        objectsWritten.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        filesTouched.reset();
+        lockWaitNanos.reset();
+        lastNanos = 0;
+        scheduleUpdate();
+    }
+
+    /* *************** *
+     * JavaFX          *
+     * *************** */
+
+    public ReadOnlyLongProperty countProperty() {
+        observe();
+        return countProperty.getReadOnlyProperty();
+    }
+
+    public ReadOnlyLongProperty failureCountProperty() {
+        observe();
+        return failureCountProperty.getReadOnlyProperty();
+    }
+
+    /** The duration of the most recent call */
+    public ReadOnlyDoubleProperty lastTimeMillisProperty() {
+        observe();
+        return lastTimeMillisProperty.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty meanTimeMillisProperty() {
+        observe();
+        return meanTimeMillisProperty.getReadOnlyProperty();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private void observe() {
+        if (!observed) {
+            countProperty = new ReadOnlyLongWrapper();
+            failureCountProperty = new ReadOnlyLongWrapper();
+            lastTimeMillisProperty = new ReadOnlyDoubleWrapper();
+            meanTimeMillisProperty = new ReadOnlyDoubleWrapper();
+            updateProperties();
+            observed = true;
+        }
+    }
+
+    private void scheduleUpdate() {
+        if (observed && updatePending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updatePending.set(false);
+                updateProperties();
+            });
+        }
+    }
+
+    private void updateProperties() {
+        countProperty.set(getCount());
+        failureCountProperty.set(getFailureCount());
+        lastTimeMillisProperty.set(toMillis(lastNanos));
+        meanTimeMillisProperty.set(getMeanTimeMillis());
+    }
+
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
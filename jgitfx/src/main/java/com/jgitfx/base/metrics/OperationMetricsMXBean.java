@@ -0,0 +1,28 @@
+package com.jgitfx.base.metrics;
+
+/**
+ * The JMX view of an {@link OperationMetrics}. Times are in milliseconds.
+ */
+public interface OperationMetricsMXBean {
+
+    String getOperation();
+
+    long getCount();
+    long getFailureCount();
+
+    double getTotalTimeMillis();
+    double getMeanTimeMillis();
+    double getMaxTimeMillis();
+    double getMedianTimeMillis();
+    double get95thPercentileTimeMillis();
+    double get99thPercentileTimeMillis();
+
+    long getObjectsRead();
+    long getObjectsWritten();
+    long getBytesRead();
+    long getBytesWritten();
+    long getFilesTouched();
+    double getLockWaitMillis();
+
+    void reset();
+}
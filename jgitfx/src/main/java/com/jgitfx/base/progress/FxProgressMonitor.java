@@ -0,0 +1,136 @@
+package com.jgitfx.base.progress;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.reactfx.EventSource;
+import org.reactfx.EventStream;
+
+/**
+ * A {@link ProgressMonitor} that publishes the progress of a long-running command (e.g. a clone, fetch, push or
+ * pull) as an {@link EventStream} of {@link ProgressEvent}s on the JavaFX Application Thread.
+ *
+ * <p>JGit may report progress thousands of times per second. Instead of forwarding every update, the monitor
+ * only remembers the latest state and emits it at most once per JavaFX pulse (i.e. once per rendered frame).
+ * While nothing changes, no pulses are listened to. Calling {@link #cancel()} makes {@link #isCancelled()}
+ * return true, which JGit checks to stop the command.</p>
+ *
+ * <pre>
+ *     {@code
+ *     FxProgressMonitor monitor = new FxProgressMonitor();
+ *     monitor.events().subscribe(e -> {
+ *         label.setText(e.getTitle());
+ *         progressBar.setProgress(e.getProgress());
+ *     });
+ *     cancelButton.setOnAction(ae -> monitor.cancel());
+ *     // on a background thread
+ *     GitHelper.fetch(git, "origin", refSpecs, TagOpt.AUTO_FOLLOW, monitor);
+ *     }
+ * </pre>
+ */
+public class FxProgressMonitor implements ProgressMonitor {
+
+    private final EventSource<ProgressEvent> events = new EventSource<>();
+    /** The latest progress; emitted on the JavaFX Application Thread. */
+    public final EventStream<ProgressEvent> events() { return events; }
+
+    private volatile boolean cancelled = false;
+    public final void cancel() { cancelled = true; }
+    @Override public final boolean isCancelled() { return cancelled; }
+
+    // guarded by this
+    private String title = null;
+    private int taskNumber = 0;
+    private int totalTasks = 0;
+    private int completed = 0;
+    private int totalWork = UNKNOWN;
+    private boolean taskEnded = false;
+    private long version = 0;
+
+    // only used on the JavaFX Application Thread
+    private long emittedVersion = 0;
+    private final AtomicBoolean listening = new AtomicBoolean(false);
+    private final AnimationTimer pulseListener = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            onPulse();
+        }
+    };
+
+    @Override
+    public void start(int totalTasks) {
+        synchronized (this) {
+            this.totalTasks = totalTasks;
+            version++;
+        }
+        changed();
+    }
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+        synchronized (this) {
+            this.title = title;
+            this.totalWork = totalWork;
+            completed = 0;
+            taskNumber++;
+            taskEnded = false;
+            version++;
+        }
+        changed();
+    }
+
+    @Override
+    public void update(int completed) {
+        synchronized (this) {
+            this.completed += completed;
+            version++;
+        }
+        changed();
+    }
+
+    @Override
+    public void endTask() {
+        synchronized (this) {
+            taskEnded = true;
+            version++;
+        }
+        changed();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private void changed() {
+        if (listening.compareAndSet(false, true)) {
+            Platform.runLater(pulseListener::start);
+        }
+    }
+
+    private void onPulse() {
+        ProgressEvent event = null;
+        synchronized (this) {
+            if (version != emittedVersion) {
+                emittedVersion = version;
+                event = new ProgressEvent(title, taskNumber, totalTasks, completed, totalWork, taskEnded);
+            }
+        }
+
+        if (event != null) {
+            events.push(event);
+            return;
+        }
+
+        // nothing happened during the last pulse: stop listening until the next change
+        pulseListener.stop();
+        listening.set(false);
+        boolean changedSinceCheck;
+        synchronized (this) {
+            changedSinceCheck = version != emittedVersion;
+        }
+        if (changedSinceCheck && listening.compareAndSet(false, true)) {
+            pulseListener.start();
+        }
+    }
+}
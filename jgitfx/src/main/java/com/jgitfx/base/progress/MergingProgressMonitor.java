@@ -0,0 +1,114 @@
+package com.jgitfx.base.progress;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * Merges the progress of commands that run at the same time (e.g. the fetches of
+ * {@link com.jgitfx.base.FetchAllCommand}) into a single {@link ProgressMonitor}, such as an
+ * {@link FxProgressMonitor}.
+ *
+ * <p>A {@link ProgressMonitor} reports one task at a time, so the merged monitor reports one task whose total
+ * work is the sum of the total work of all tasks the {@link #newChild() children} have begun so far, and whose
+ * completed work is the sum of what they have completed. Each time a child begins another task of known size, the
+ * merged task is begun again with the larger total and the work completed so far, so the merged progress may step
+ * back. Tasks of unknown size are not reflected. The children can be used from any thread; the merged monitor is
+ * only called by one thread at a time.</p>
+ */
+public final class MergingProgressMonitor {
+
+    private final ProgressMonitor monitor;
+    private final String title;
+
+    // guarded by this
+    private long totalWork = 0;
+    private long completed = 0;
+    private boolean begun = false;
+
+    /**
+     * @param monitor the monitor to which the merged progress is reported
+     * @param title the title of the merged task
+     */
+    public MergingProgressMonitor(ProgressMonitor monitor, String title) {
+        this.monitor = monitor;
+        this.title = title;
+    }
+
+    /**
+     * @return a new monitor to pass to one of the commands; it is cancelled when the merged monitor is
+     */
+    public ProgressMonitor newChild() {
+        return new Child();
+    }
+
+    /**
+     * Ends the merged task. Should be called once all commands are done.
+     */
+    public synchronized void endTask() {
+        if (begun) {
+            monitor.endTask();
+            begun = false;
+        }
+    }
+
+    public boolean isCancelled() {
+        return monitor.isCancelled();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private synchronized void childBegan(int work) {
+        totalWork += work;
+        monitor.beginTask(title, clamp(totalWork));
+        if (completed != 0) {
+            monitor.update(clamp(completed));
+        }
+        begun = true;
+    }
+
+    private synchronized void childUpdated(int work) {
+        completed += work;
+        monitor.update(work);
+    }
+
+    private static int clamp(long work) {
+        return (int) Math.min(work, Integer.MAX_VALUE);
+    }
+
+    private final class Child implements ProgressMonitor {
+
+        /** whether the current task has a known size; only used by the thread running the command */
+        private boolean known = false;
+
+        @Override
+        public void start(int totalTasks) {
+            // the merged monitor has only one task
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+            known = totalWork != UNKNOWN && totalWork > 0;
+            if (known) {
+                childBegan(totalWork);
+            }
+        }
+
+        @Override
+        public void update(int completed) {
+            if (known) {
+                childUpdated(completed);
+            }
+        }
+
+        @Override
+        public void endTask() {
+            known = false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return MergingProgressMonitor.this.isCancelled();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.jgitfx.base.progress;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * A snapshot of the progress reported to a {@link FxProgressMonitor}.
+ */
+public final class ProgressEvent {
+
+    private final String title;
+    public final String getTitle() { return title; }
+
+    private final int taskNumber;
+    /** The 1-based number of the current task, or 0 if no task has begun yet */
+    public final int getTaskNumber() { return taskNumber; }
+
+    private final int totalTasks;
+    /** The number of tasks announced by {@link ProgressMonitor#start(int)}, or 0 if unknown */
+    public final int getTotalTasks() { return totalTasks; }
+
+    private final int completed;
+    public final int getCompleted() { return completed; }
+
+    private final int totalWork;
+    /** The total work of the current task, or {@link ProgressMonitor#UNKNOWN} */
+    public final int getTotalWork() { return totalWork; }
+
+    private final boolean taskEnded;
+    /** Whether the current task has ended */
+    public final boolean isTaskEnded() { return taskEnded; }
+
+    ProgressEvent(String title, int taskNumber, int totalTasks, int completed, int totalWork, boolean taskEnded) {
+        this.title = title;
+        this.taskNumber = taskNumber;
+        this.totalTasks = totalTasks;
+        this.completed = completed;
+        this.totalWork = totalWork;
+        this.taskEnded = taskEnded;
+    }
+
+    /**
+     * @return the completed fraction of the current task, or -1 if its total work is unknown (i.e. not positive;
+     *         {@link ProgressMonitor#UNKNOWN} is 0) and the task hasn't ended. Can be passed directly to
+     *         {@link javafx.scene.control.ProgressIndicator#setProgress(double)}.
+     */
+    public double getProgress() {
+        if (totalWork <= 0) {
+            return taskEnded ? 1 : -1;
+        }
+        return Math.min(1, (double) completed / totalWork);
+    }
+
+    @Override
+    public String toString() {
+        String tasks = totalTasks == 0 ? String.valueOf(taskNumber) : taskNumber + "/" + totalTasks;
+        String work = totalWork <= 0 ? String.valueOf(completed) : completed + "/" + totalWork;
+        return "[" + tasks + "] " + title + ": " + work + (taskEnded ? " (done)" : "");
+    }
+}
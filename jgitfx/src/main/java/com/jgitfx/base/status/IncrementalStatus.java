@@ -0,0 +1,292 @@
+package com.jgitfx.base.status;
+
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+
+/**
+ * IncrementalStatus keeps a {@link Status} of a repository up-to-date without walking the entire working tree
+ * every time the status is requested.
+ *
+ * <p>A recursive {@link WatchService} records which paths have changed since the last snapshot was taken.
+ * When {@link #call()} is called, only those "dirty" paths are re-examined (via a {@link StatusCommand} limited to
+ * them) and merged into the previous {@link StatusSnapshot}. A full working-tree walk is only done when:</p>
+ * <ul>
+ *     <li>{@link #call()} is called for the first time,</li>
+ *     <li>the watcher overflows (too many events happened before they could be processed),</li>
+ *     <li>the index, {@code HEAD}, or the commit {@code HEAD} resolves to changes (e.g. after a commit, a soft
+ *         reset, or a branch being moved), since any of these can change the status of every file,</li>
+ *     <li>a {@code .gitignore} file or {@code .git/info/exclude} changes, since either can change which files are
+ *         ignored anywhere below it, or</li>
+ *     <li>more than {@link #getMaxDirtyPaths()} paths changed, in which case a single walk is cheaper than
+ *         filtering by that many paths.</li>
+ * </ul>
+ *
+ * <p>Since the watcher thread keeps file handles open, {@link #close()} should be called when the status is
+ * no longer needed (e.g. when the repository is closed).</p>
+ */
+public class IncrementalStatus implements AutoCloseable {
+
+    private final Git git;
+    private final Path workTree;
+    private final Path gitDir;
+    private final Path indexFile;
+    private final Path infoDir;
+
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Thread watchThread;
+
+    // guards dirtyPaths and fullScanNeeded, which are written by the watch thread
+    private final Object lock = new Object();
+    private Set<String> dirtyPaths = new HashSet<>();
+    private boolean fullScanNeeded = true;
+
+    // only accessed within call()
+    private StatusSnapshot snapshot;
+    /** the commit HEAD resolved to when the snapshot's full scan started */
+    private ObjectId snapshotHead;
+
+    private volatile int maxDirtyPaths = 1024;
+    public final int getMaxDirtyPaths() { return maxDirtyPaths; }
+    public final void setMaxDirtyPaths(int value) { maxDirtyPaths = value; }
+
+    private volatile Optional<Supplier<? extends WorkingTreeIterator>> workingTreeIterators = Optional.empty();
+    /**
+     * Sets the supplier of the {@link WorkingTreeIterator} used by each status walk, e.g.
+     * {@code () -> new ParallelHashingTreeIterator(repo)}. When none is set, JGit's default iterator is used.
+     */
+    public final void setWorkingTreeIterators(Supplier<? extends WorkingTreeIterator> supplier) {
+        workingTreeIterators = Optional.ofNullable(supplier);
+    }
+
+    /**
+     * Starts watching the working tree of the given repository.
+     * @param git the git repository; it must have a working tree
+     * @throws IOException if the watcher could not be created or the working tree could not be walked
+     */
+    public IncrementalStatus(Git git) throws IOException {
+        this.git = git;
+        Repository repo = git.getRepository();
+        workTree = repo.getWorkTree().toPath().toAbsolutePath().normalize();
+        gitDir = repo.getDirectory().toPath().toAbsolutePath().normalize();
+        indexFile = repo.getIndexFile().toPath().toAbsolutePath().normalize();
+        infoDir = gitDir.resolve("info");
+
+        watcher = workTree.getFileSystem().newWatchService();
+        registerRecursively(workTree);
+        if (!gitDir.startsWith(workTree)) {
+            register(gitDir);
+        }
+        if (Files.isDirectory(infoDir)) {
+            register(infoDir);
+        }
+
+        watchThread = new Thread(this::processEvents, "jgitfx-status-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Returns the status of the repository, re-examining only the paths that changed since the previous call.
+     * @return the status of the repository
+     * @throws GitAPIException
+     */
+    public synchronized Status call() throws GitAPIException {
+        // a commit or a moved branch changes no watched file, but HEAD then resolves to another commit
+        ObjectId head = resolveHead();
+        Set<String> paths;
+        boolean fullScan;
+        synchronized (lock) {
+            fullScan = fullScanNeeded || snapshot == null || !Objects.equals(head, snapshotHead)
+                    || dirtyPaths.size() > maxDirtyPaths;
+            fullScanNeeded = false;
+            paths = dirtyPaths;
+            dirtyPaths = new HashSet<>();
+        }
+
+        try {
+            if (fullScan) {
+                snapshot = StatusSnapshot.of(GitMetrics.record(GitOperation.STATUS, newStatusCommand()::call));
+                snapshotHead = head;
+            } else if (!paths.isEmpty()) {
+                StatusCommand status = newStatusCommand();
+                paths.forEach(status::addPath);
+                snapshot = snapshot.update(paths, GitMetrics.record(GitOperation.STATUS, paths.size(), status::call));
+            }
+        } catch (GitAPIException | RuntimeException e) {
+            // the dirty paths were consumed, so the next call can't trust the snapshot
+            requestFullScan();
+            throw e;
+        }
+        return snapshot.toStatus(git.getRepository());
+    }
+
+    /**
+     * Forces the next {@link #call()} to walk the entire working tree.
+     */
+    public final void requestFullScan() {
+        synchronized (lock) {
+            fullScanNeeded = true;
+        }
+    }
+
+    /**
+     * Stops watching the working tree.
+     */
+    @Override
+    public void close() {
+        watchThread.interrupt();
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private ObjectId resolveHead() {
+        try {
+            return git.getRepository().resolve(Constants.HEAD);
+        } catch (IOException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        }
+    }
+
+    private StatusCommand newStatusCommand() {
+        StatusCommand status = git.status();
+        workingTreeIterators.ifPresent(supplier -> status.setWorkingTreeIt(supplier.get()));
+        return status;
+    }
+
+    private void register(Path dir) throws IOException {
+        WatchKey key = dir.register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirs.put(key, dir);
+    }
+
+    private void registerRecursively(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                // only the git dir itself (for index and HEAD) and its info dir are watched, not its objects or
+                // refs: a moved ref is noticed by resolving HEAD in call()
+                return dir.equals(gitDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchedDirs.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handleEvent(dir, event);
+                }
+            }
+
+            if (!key.reset()) {
+                // directory was deleted; its parent's watcher reports the deletion itself
+                watchedDirs.remove(key);
+            }
+        }
+    }
+
+    private void handleEvent(Path dir, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            requestFullScan();
+            return;
+        }
+
+        Path child = dir.resolve((Path) event.context());
+        String name = child.getFileName().toString();
+        if (dir.equals(gitDir)) {
+            if (child.equals(indexFile) || name.equals(Constants.HEAD)) {
+                requestFullScan();
+            } else if (name.equals(infoDir.getFileName().toString()) && Files.isDirectory(infoDir)
+                    && !watchedDirs.containsValue(infoDir)) {
+                try {
+                    register(infoDir);
+                } catch (IOException e) {
+                    // changes to info/exclude would go unnoticed
+                }
+                requestFullScan();
+            }
+            return;
+        }
+        if (dir.equals(infoDir)) {
+            if (name.equals("exclude")) {
+                requestFullScan();
+            }
+            return;
+        }
+        if (child.startsWith(gitDir)) {
+            return;
+        }
+        if (name.equals(Constants.DOT_GIT_IGNORE)) {
+            // an ignore rule can change the status of any file below it
+            requestFullScan();
+        }
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                registerRecursively(child);
+            } catch (IOException e) {
+                // files in this directory would go unnoticed
+                requestFullScan();
+            }
+        }
+
+        String relativePath = workTree.relativize(child).toString().replace(File.separatorChar, '/');
+        synchronized (lock) {
+            dirtyPaths.add(relativePath);
+        }
+    }
+}
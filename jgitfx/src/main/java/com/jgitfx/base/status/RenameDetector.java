@@ -0,0 +1,510 @@
+package com.jgitfx.base.status;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.diff.SimilarityIndex;
+import org.eclipse.jgit.diff.SimilarityIndex.TableFullException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+/**
+ * RenameDetector pairs the files that a {@link Status} lists as leaving the index ({@link Status#getMissing()
+ * missing} or {@link Status#getRemoved() removed} files) with the files it lists as {@link Status#getAdded() added},
+ * so that a moved file can be displayed as one rename rather than as a removed and an added file.
+ *
+ * <p>The cost of detection is bounded in two ways:</p>
+ * <ol>
+ *     <li>Files with the same blob id are paired first (preferring files with the same name), in time linear in
+ *         the number of files. This alone collapses a moved directory whose files were not edited, no matter how
+ *         many files it holds.</li>
+ *     <li>The files that are left are paired by the similarity of their content (see {@link SimilarityIndex}).
+ *         Since every such source is compared with every such target, this is only done if neither side has
+ *         more than {@link #getCandidateLimit()} files; otherwise, only the exact renames are reported. The
+ *         comparisons are spread over an {@link Executor}, and pairs whose sizes alone rule out a score of
+ *         {@link #getMinimumScore()} are skipped.</li>
+ * </ol>
+ *
+ * <p>Scores are cached by the blob ids of the compared files, so detecting the renames of a refreshed status only
+ * compares the files whose content changed since.</p>
+ */
+public class RenameDetector {
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "jgitfx-rename");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** Runs {@link #detectAsync(Status)}; separate from the comparisons' pool, as a detection waits for them */
+    private static final Executor DETECT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jgitfx-rename-detect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Marks a blob whose similarity index could not be built, so it is not tried again */
+    private static final Object UNSCORABLE = new Object();
+
+    private final Git git;
+
+    private volatile int candidateLimit = 400;
+    /**
+     * The maximum number of sources and of targets that are compared by similarity, once the exact renames were
+     * paired. Defaults to 400.
+     */
+    public final int getCandidateLimit() { return candidateLimit; }
+    public final void setCandidateLimit(int value) { candidateLimit = value; }
+
+    private volatile int minimumScore = 60;
+    /** The similarity score (0 to 100) that two files need to be considered a rename. Defaults to 60. */
+    public final int getMinimumScore() { return minimumScore; }
+    public final void setMinimumScore(int value) {
+        if (value < 0 || value > 100) {
+            throw new IllegalArgumentException("Score must be between 0 and 100: " + value);
+        }
+        minimumScore = value;
+    }
+
+    private volatile Executor executor = DEFAULT_EXECUTOR;
+    /** Sets the executor on which files are compared. Defaults to a pool with one thread per core. */
+    public final void setExecutor(Executor executor) { this.executor = executor; }
+
+    private final ScoreCache scoreCache = new ScoreCache(100_000);
+
+    public RenameDetector(Git git) {
+        this.git = git;
+    }
+
+    /**
+     * Detects the renames in the given status of this detector's repository.
+     * @return the renames, exact renames first; a path is part of at most one rename
+     * @throws IOException if the index, {@code HEAD} or a blob could not be read
+     */
+    public List<Rename> detect(Status status) throws IOException {
+        Set<String> added = status.getAdded();
+        if (added.isEmpty() || (status.getMissing().isEmpty() && status.getRemoved().isEmpty())) {
+            return Collections.emptyList();
+        }
+
+        Repository repo = git.getRepository();
+        DirCache index = repo.readDirCache();
+        List<FileEntry> sources = new ArrayList<>();
+        for (String path : status.getMissing()) {
+            // a file that is both added and missing is still displayed as added
+            if (!added.contains(path)) {
+                addEntry(sources, path, index.getEntry(path));
+            }
+        }
+        readRemoved(repo, status.getRemoved(), sources);
+        List<FileEntry> targets = new ArrayList<>(added.size());
+        for (String path : added) {
+            addEntry(targets, path, index.getEntry(path));
+        }
+
+        List<Rename> renames = new ArrayList<>();
+        pairExactRenames(sources, targets, renames);
+
+        List<FileEntry> restSources = unpaired(sources);
+        List<FileEntry> restTargets = unpaired(targets);
+        if (restSources.isEmpty() || restTargets.isEmpty()
+                || restSources.size() > candidateLimit || restTargets.size() > candidateLimit) {
+            return renames;
+        }
+
+        // the best scores are paired first
+        List<Candidate> candidates = scoreCandidates(repo, restSources, restTargets);
+        candidates.sort((a, b) -> Integer.compare(b.score, a.score));
+        for (Candidate candidate : candidates) {
+            if (!candidate.source.paired && !candidate.target.paired) {
+                candidate.source.paired = true;
+                candidate.target.paired = true;
+                renames.add(new Rename(candidate.source.path, candidate.target.path, candidate.score));
+            }
+        }
+        return renames;
+    }
+
+    /**
+     * Same as {@link #detect(Status)}, but on a background thread, e.g. so that the JavaFX Application Thread is
+     * not blocked while files are read and compared.
+     * @return a future completed with the renames, or exceptionally with the {@link IOException} of
+     *         {@link #detect(Status)}
+     */
+    public CompletableFuture<List<Rename>> detectAsync(Status status) {
+        CompletableFuture<List<Rename>> result = new CompletableFuture<>();
+        DETECT_EXECUTOR.execute(() -> {
+            try {
+                result.complete(detect(status));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Keeps the renames (e.g. those detected in an earlier status) that the given status still allows: the new path
+     * is added, and the old one is missing or removed. Cheap enough to display renames right away while
+     * {@link #detectAsync(Status)} finds the current ones.
+     */
+    public static List<Rename> stillApplying(List<Rename> renames, Status status) {
+        Set<String> added = status.getAdded();
+        Set<String> missing = status.getMissing();
+        Set<String> removed = status.getRemoved();
+        List<Rename> applying = new ArrayList<>(renames.size());
+        for (Rename rename : renames) {
+            String oldPath = rename.getOldPath();
+            if (added.contains(rename.getNewPath()) && !added.contains(oldPath)
+                    && (missing.contains(oldPath) || removed.contains(oldPath))) {
+                applying.add(rename);
+            }
+        }
+        return applying;
+    }
+
+    /**
+     * Forgets all cached scores.
+     */
+    public void clearCache() {
+        scoreCache.clear();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private static void addEntry(List<FileEntry> entries, String path, DirCacheEntry entry) {
+        if (entry != null && entry.getFileMode().getObjectType() == Constants.OBJ_BLOB) {
+            entries.add(new FileEntry(path, entry.getObjectId()));
+        }
+    }
+
+    /** Removed files are no longer in the index, so their blob ids are read from {@code HEAD} */
+    private static void readRemoved(Repository repo, Set<String> removed, List<FileEntry> sources)
+            throws IOException {
+        if (removed.isEmpty()) {
+            return;
+        }
+        ObjectId headTree = repo.resolve(Constants.HEAD + "^{tree}");
+        if (headTree == null) {
+            return;
+        }
+        try (TreeWalk walk = new TreeWalk(repo)) {
+            walk.addTree(headTree);
+            walk.setRecursive(true);
+            walk.setFilter(PathFilterGroup.createFromStrings(removed));
+            while (walk.next()) {
+                if (walk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB) {
+                    sources.add(new FileEntry(walk.getPathString(), walk.getObjectId(0)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Pairs sources and targets with the same blob id: first those that also have the same file name, then any.
+     * Entries that were paired through one map are skipped when they are polled from the other.
+     */
+    private static void pairExactRenames(List<FileEntry> sources, List<FileEntry> targets, List<Rename> renames) {
+        Map<ObjectId, ArrayDeque<FileEntry>> byId = new HashMap<>();
+        Map<String, ArrayDeque<FileEntry>> byIdAndName = new HashMap<>();
+        for (FileEntry target : targets) {
+            byId.computeIfAbsent(target.id, k -> new ArrayDeque<>(1)).add(target);
+            byIdAndName.computeIfAbsent(target.idAndName(), k -> new ArrayDeque<>(1)).add(target);
+        }
+
+        for (FileEntry source : sources) {
+            FileEntry target = pollUnpaired(byIdAndName.get(source.idAndName()));
+            if (target != null) {
+                pair(source, target, renames);
+            }
+        }
+        for (FileEntry source : sources) {
+            if (!source.paired) {
+                FileEntry target = pollUnpaired(byId.get(source.id));
+                if (target != null) {
+                    pair(source, target, renames);
+                }
+            }
+        }
+    }
+
+    private static FileEntry pollUnpaired(ArrayDeque<FileEntry> entries) {
+        if (entries != null) {
+            for (FileEntry entry = entries.poll(); entry != null; entry = entries.poll()) {
+                if (!entry.paired) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void pair(FileEntry source, FileEntry target, List<Rename> renames) {
+        source.paired = true;
+        target.paired = true;
+        renames.add(new Rename(source.path, target.path, 100));
+    }
+
+    private static List<FileEntry> unpaired(List<FileEntry> entries) {
+        List<FileEntry> unpaired = new ArrayList<>();
+        for (FileEntry entry : entries) {
+            if (!entry.paired) {
+                unpaired.add(entry);
+            }
+        }
+        return unpaired;
+    }
+
+    /**
+     * Compares every source with every target, one task per source, and returns the pairs that score at least
+     * {@link #getMinimumScore()}. The similarity index of each blob is only built once per call.
+     */
+    private List<Candidate> scoreCandidates(Repository repo, List<FileEntry> sources, List<FileEntry> targets)
+            throws IOException {
+        int minScore = minimumScore;
+        Map<ObjectId, Object> indexes = new ConcurrentHashMap<>();
+        CompletionService<List<Candidate>> service = new ExecutorCompletionService<>(executor);
+        List<Future<List<Candidate>>> futures = new ArrayList<>(sources.size());
+        for (FileEntry source : sources) {
+            futures.add(service.submit(() -> {
+                try (ObjectReader reader = repo.newObjectReader()) {
+                    return scoreSource(reader, source, targets, indexes, minScore);
+                }
+            }));
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                candidates.addAll(service.take().get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while detecting renames", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        return candidates;
+    }
+
+    private List<Candidate> scoreSource(ObjectReader reader, FileEntry source, List<FileEntry> targets,
+                                        Map<ObjectId, Object> indexes, int minScore) throws IOException {
+        List<Candidate> candidates = new ArrayList<>();
+        long sourceSize = source.size(reader);
+        SimilarityIndex sourceIndex = null;
+        for (FileEntry target : targets) {
+            if (maxScore(sourceSize, target.size(reader)) < minScore) {
+                continue;
+            }
+
+            int score = scoreCache.get(source.id, target.id);
+            if (score < 0) {
+                if (sourceIndex == null) {
+                    sourceIndex = indexOf(source.id, reader, indexes);
+                }
+                SimilarityIndex targetIndex = indexOf(target.id, reader, indexes);
+                score = sourceIndex == null || targetIndex == null ? 0 : sourceIndex.score(targetIndex, 100);
+                scoreCache.put(source.id, target.id, score);
+            }
+            if (score >= minScore) {
+                candidates.add(new Candidate(source, target, score));
+            }
+        }
+        return candidates;
+    }
+
+    /** @return the index of the blob, or null if it has too many distinct lines to be indexed */
+    private static SimilarityIndex indexOf(ObjectId id, ObjectReader reader, Map<ObjectId, Object> indexes)
+            throws IOException {
+        Object index = indexes.get(id);
+        if (index == null) {
+            try {
+                index = SimilarityIndex.create(reader.open(id, Constants.OBJ_BLOB));
+            } catch (TableFullException e) {
+                index = UNSCORABLE;
+            }
+            indexes.putIfAbsent(id, index);
+        }
+        return index == UNSCORABLE ? null : (SimilarityIndex) index;
+    }
+
+    /** The best score two files of the given sizes can reach */
+    private static int maxScore(long sizeA, long sizeB) {
+        long max = Math.max(sizeA, sizeB);
+        return max == 0 ? 100 : (int) (Math.min(sizeA, sizeB) * 100 / max);
+    }
+
+    /**
+     * A file that was renamed.
+     */
+    public static final class Rename {
+
+        private final String oldPath;
+        /** The repository-relative path the file was removed from */
+        public String getOldPath() { return oldPath; }
+
+        private final String newPath;
+        /** The repository-relative path the file was added as */
+        public String getNewPath() { return newPath; }
+
+        private final int score;
+        /** How similar the old and new content are, from 0 to 100; 100 if the content is the same */
+        public int getScore() { return score; }
+
+        public Rename(String oldPath, String newPath, int score) {
+            this.oldPath = oldPath;
+            this.newPath = newPath;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return "Rename(old: [" + oldPath + "], new: [" + newPath + "], score: [" + score + "])";
+        }
+
+        @Override
+        public int hashCode() {
+            return (oldPath.hashCode() * 31 + newPath.hashCode()) * 31 + score;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Rename)) {
+                return false;
+            }
+            Rename other = (Rename) obj;
+            return oldPath.equals(other.oldPath) && newPath.equals(other.newPath) && score == other.score;
+        }
+    }
+
+    private static final class FileEntry {
+
+        private final String path;
+        private final ObjectId id;
+        private boolean paired = false;
+        /** read when the entry is first compared; -1 until then */
+        private volatile long size = -1;
+
+        private FileEntry(String path, ObjectId id) {
+            this.path = path;
+            this.id = id;
+        }
+
+        private String idAndName() {
+            return id.name() + path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        private long size(ObjectReader reader) throws IOException {
+            long s = size;
+            if (s < 0) {
+                s = reader.getObjectSize(id, Constants.OBJ_BLOB);
+                size = s;
+            }
+            return s;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final FileEntry source;
+        private final FileEntry target;
+        private final int score;
+
+        private Candidate(FileEntry source, FileEntry target, int score) {
+            this.source = source;
+            this.target = target;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The scores of the most recently compared pairs of blobs, evicting the least recently used pair once full.
+     */
+    private static final class ScoreCache {
+
+        private final Map<PairKey, Integer> scores;
+
+        private ScoreCache(int capacity) {
+            scores = new LinkedHashMap<PairKey, Integer>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PairKey, Integer> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /** @return the cached score, or -1 if there is none */
+        private synchronized int get(AnyObjectId source, AnyObjectId target) {
+            Integer score = scores.get(new PairKey(source, target));
+            return score == null ? -1 : score;
+        }
+
+        private synchronized void put(AnyObjectId source, AnyObjectId target, int score) {
+            scores.put(new PairKey(source, target), score);
+        }
+
+        private synchronized void clear() {
+            scores.clear();
+        }
+    }
+
+    private static final class PairKey {
+
+        private final AnyObjectId source;
+        private final AnyObjectId target;
+
+        private PairKey(AnyObjectId source, AnyObjectId target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public int hashCode() {
+            return source.hashCode() * 31 + target.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PairKey)) {
+                return false;
+            }
+            PairKey other = (PairKey) obj;
+            return source.equals(other.source) && target.equals(other.target);
+        }
+    }
+}
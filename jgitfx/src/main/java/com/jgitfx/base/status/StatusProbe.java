@@ -0,0 +1,169 @@
+package com.jgitfx.base.status;
+
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.Task;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.reactfx.util.FxTimer;
+import org.reactfx.value.Val;
+
+/**
+ * Runs a {@link org.eclipse.jgit.api.StatusCommand} on a background thread and hands its result back
+ * on the JavaFX Application Thread, so that scanning a large working tree does not freeze the UI.
+ *
+ * <p>Only one scan runs at a time: calling {@link #scan(Consumer, Consumer)} while a scan is in progress
+ * does not start a second one, so repeated clicks on a button or menu item are merged into the in-flight scan.
+ * A scan can be cancelled via {@link #cancel()}, in which case neither callback is called.</p>
+ *
+ * <p>All public methods must be called on the JavaFX Application Thread.</p>
+ */
+public class StatusProbe {
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jgitfx-status-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** How long a scan must run before {@link #showScanningAlert()} actually shows its alert */
+    private static final Duration ALERT_DELAY = Duration.ofMillis(250);
+
+    private final Val<Git> git;
+
+    private Executor executor = DEFAULT_EXECUTOR;
+    public final void setExecutor(Executor executor) { this.executor = executor; }
+
+    private IncrementalStatus incrementalStatus;
+    /**
+     * Sets the {@link IncrementalStatus} to use instead of walking the entire working tree on every scan.
+     */
+    public final void setIncrementalStatus(IncrementalStatus status) { incrementalStatus = status; }
+
+    private final ReadOnlyBooleanWrapper scanning = new ReadOnlyBooleanWrapper(false);
+    public final boolean isScanning() { return scanning.get(); }
+    public final ReadOnlyBooleanProperty scanningProperty() { return scanning.getReadOnlyProperty(); }
+
+    private Task<Status> currentScan;
+
+    public StatusProbe(Val<Git> git) {
+        this.git = git;
+    }
+
+    /**
+     * Starts a new scan unless one is already in progress.
+     * @param onSucceeded called on the JavaFX Application Thread with the result of the scan
+     * @param onFailed called on the JavaFX Application Thread if the scan throws a {@link GitAPIException}
+     * @return true if a new scan was started; false if the call was merged into the scan that is in progress
+     */
+    public final boolean scan(Consumer<Status> onSucceeded, Consumer<GitAPIException> onFailed) {
+        if (currentScan != null) {
+            return false;
+        }
+
+        Task<Status> task = new ScanTask(git.getOrThrow(), incrementalStatus);
+        task.setOnSucceeded(e -> {
+            finish();
+            onSucceeded.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finish();
+            Throwable exception = task.getException();
+            if (exception instanceof GitAPIException) {
+                onFailed.accept((GitAPIException) exception);
+            } else {
+                exception.printStackTrace();
+            }
+        });
+        task.setOnCancelled(e -> finish());
+
+        currentScan = task;
+        scanning.set(true);
+        executor.execute(task);
+        return true;
+    }
+
+    /**
+     * Cancels the scan that is in progress, if any.
+     */
+    public final void cancel() {
+        if (currentScan != null) {
+            currentScan.cancel();
+        }
+    }
+
+    /**
+     * Shows an information alert with a "Cancel" button while the current scan runs. To prevent the alert from
+     * flashing on the screen, it is only shown if the scan has not finished after a short delay. Closing the
+     * alert cancels the scan.
+     */
+    public final void showScanningAlert() {
+        Task<Status> scan = currentScan;
+        if (scan == null) {
+            return;
+        }
+
+        FxTimer.runLater(ALERT_DELAY, () -> {
+            if (currentScan != scan) {
+                // already finished
+                return;
+            }
+
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, "Scanning for changes...", ButtonType.CANCEL);
+            alert.setHeaderText(null);
+            alert.setOnHidden(e -> {
+                if (currentScan == scan) {
+                    cancel();
+                }
+            });
+            scan.runningProperty().addListener((obs, wasRunning, isRunning) -> {
+                if (!isRunning) {
+                    alert.close();
+                }
+            });
+            alert.show();
+        });
+    }
+
+    private void finish() {
+        currentScan = null;
+        scanning.set(false);
+    }
+
+    private static final class ScanTask extends Task<Status> {
+
+        private final Git git;
+        private final IncrementalStatus incrementalStatus;
+
+        private ScanTask(Git git, IncrementalStatus incrementalStatus) {
+            this.git = git;
+            this.incrementalStatus = incrementalStatus;
+        }
+
+        @Override
+        protected Status call() throws GitAPIException {
+            if (incrementalStatus != null) {
+                return incrementalStatus.call();
+            }
+            return GitMetrics.record(GitOperation.STATUS, () -> git.status()
+                    // lets the working tree walk stop early when the task is cancelled
+                    .setProgressMonitor(new EmptyProgressMonitor() {
+                        @Override
+                        public boolean isCancelled() {
+                            return ScanTask.this.isCancelled();
+                        }
+                    })
+                    .call());
+        }
+    }
+}
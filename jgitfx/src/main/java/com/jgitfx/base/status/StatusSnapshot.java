@@ -0,0 +1,157 @@
+package com.jgitfx.base.status;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.IndexDiff.StageState;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * An immutable copy of the path sets stored in a {@link Status}. Unlike {@link Status}, a snapshot can be
+ * updated for a handful of paths (see {@link #update(Collection, Status)}) without re-examining the rest of the
+ * working tree, and can be turned back into a {@link Status} via {@link #toStatus(Repository)}.
+ *
+ * <p>Paths are stored in sorted sets, so that all paths under a given directory can be replaced in
+ * {@code O(log n + k)} time.</p>
+ */
+public final class StatusSnapshot {
+
+    private final NavigableSet<String> added;
+    private final NavigableSet<String> changed;
+    private final NavigableSet<String> removed;
+    private final NavigableSet<String> missing;
+    private final NavigableSet<String> modified;
+    private final NavigableSet<String> untracked;
+    private final NavigableSet<String> untrackedFolders;
+    private final NavigableSet<String> conflicting;
+    private final NavigableSet<String> ignoredNotInIndex;
+    private final NavigableMap<String, StageState> conflictingStageStates;
+
+    private StatusSnapshot(Status status) {
+        added               = new TreeSet<>(status.getAdded());
+        changed             = new TreeSet<>(status.getChanged());
+        removed             = new TreeSet<>(status.getRemoved());
+        missing             = new TreeSet<>(status.getMissing());
+        modified            = new TreeSet<>(status.getModified());
+        untracked           = new TreeSet<>(status.getUntracked());
+        untrackedFolders    = new TreeSet<>(status.getUntrackedFolders());
+        conflicting         = new TreeSet<>(status.getConflicting());
+        ignoredNotInIndex   = new TreeSet<>(status.getIgnoredNotInIndex());
+        conflictingStageStates = new TreeMap<>(status.getConflictingStageState());
+    }
+
+    private StatusSnapshot(StatusSnapshot other) {
+        added               = new TreeSet<>(other.added);
+        changed             = new TreeSet<>(other.changed);
+        removed             = new TreeSet<>(other.removed);
+        missing             = new TreeSet<>(other.missing);
+        modified            = new TreeSet<>(other.modified);
+        untracked           = new TreeSet<>(other.untracked);
+        untrackedFolders    = new TreeSet<>(other.untrackedFolders);
+        conflicting         = new TreeSet<>(other.conflicting);
+        ignoredNotInIndex   = new TreeSet<>(other.ignoredNotInIndex);
+        conflictingStageStates = new TreeMap<>(other.conflictingStageStates);
+    }
+
+    /**
+     * Creates a snapshot from the result of a full (unfiltered) {@link org.eclipse.jgit.api.StatusCommand}.
+     */
+    public static StatusSnapshot of(Status status) {
+        return new StatusSnapshot(status);
+    }
+
+    /**
+     * Returns a new snapshot in which every path equal to or under one of the {@code dirtyPaths} has been
+     * replaced by what {@code partialStatus} reports for it.
+     *
+     * @param dirtyPaths the repository-relative paths (with / as separator) that were re-examined
+     * @param partialStatus the result of a {@link org.eclipse.jgit.api.StatusCommand} that was limited to
+     *                      {@code dirtyPaths} via {@link org.eclipse.jgit.api.StatusCommand#addPath(String)}
+     * @return the updated snapshot; this snapshot is left unchanged
+     */
+    public StatusSnapshot update(Collection<String> dirtyPaths, Status partialStatus) {
+        StatusSnapshot next = new StatusSnapshot(this);
+        for (String path : dirtyPaths) {
+            next.forEachSet(set -> removeUnder(set, path));
+            next.conflictingStageStates.remove(path);
+            next.conflictingStageStates.subMap(path + "/", path + "0").clear();
+        }
+
+        next.added              .addAll(partialStatus.getAdded());
+        next.changed            .addAll(partialStatus.getChanged());
+        next.removed            .addAll(partialStatus.getRemoved());
+        next.missing            .addAll(partialStatus.getMissing());
+        next.modified           .addAll(partialStatus.getModified());
+        next.untracked          .addAll(partialStatus.getUntracked());
+        next.untrackedFolders   .addAll(partialStatus.getUntrackedFolders());
+        next.conflicting        .addAll(partialStatus.getConflicting());
+        next.ignoredNotInIndex  .addAll(partialStatus.getIgnoredNotInIndex());
+        next.conflictingStageStates.putAll(partialStatus.getConflictingStageState());
+        return next;
+    }
+
+    /**
+     * @return a {@link Status} whose getters return this snapshot's paths
+     */
+    public Status toStatus(Repository repository) {
+        try {
+            return new Status(new SnapshotIndexDiff(repository));
+        } catch (IOException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        }
+    }
+
+    private void forEachSet(Consumer<NavigableSet<String>> action) {
+        action.accept(added);
+        action.accept(changed);
+        action.accept(removed);
+        action.accept(missing);
+        action.accept(modified);
+        action.accept(untracked);
+        action.accept(untrackedFolders);
+        action.accept(conflicting);
+        action.accept(ignoredNotInIndex);
+    }
+
+    /**
+     * Removes the path and, if it is a directory, all paths under it. Since '0' is the character after '/',
+     * the range ["path/", "path0") contains exactly the descendants of the path.
+     */
+    private static void removeUnder(NavigableSet<String> set, String path) {
+        set.remove(path);
+        set.subSet(path + "/", path + "0").clear();
+    }
+
+    /**
+     * An {@link IndexDiff} that never walks anything and simply hands out the snapshot's paths, so that
+     * {@link Status} can be constructed from a snapshot.
+     */
+    private final class SnapshotIndexDiff extends IndexDiff {
+
+        SnapshotIndexDiff(Repository repository) throws IOException {
+            // a null tree id means no RevWalk is done
+            super(repository, (ObjectId) null, null);
+        }
+
+        @Override public Set<String> getAdded() { return added; }
+        @Override public Set<String> getChanged() { return changed; }
+        @Override public Set<String> getRemoved() { return removed; }
+        @Override public Set<String> getMissing() { return missing; }
+        @Override public Set<String> getModified() { return modified; }
+        @Override public Set<String> getUntracked() { return untracked; }
+        @Override public Set<String> getUntrackedFolders() { return untrackedFolders; }
+        @Override public Set<String> getConflicting() { return conflicting; }
+        @Override public Set<String> getIgnoredNotInIndex() { return ignoredNotInIndex; }
+        @Override public Map<String, StageState> getConflictingStageStates() { return conflictingStageStates; }
+    }
+}
@@ -0,0 +1,57 @@
+package com.jgitfx.base.workspace;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * The outcome of a {@link WorkspaceRun} for one repository of a {@link Workspace}.
+ * @param <T> the type of the operation's result, e.g. {@link org.eclipse.jgit.api.Status}
+ */
+public final class RepositoryResult<T> {
+
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        /** the operation took longer than the workspace's timeout */
+        TIMED_OUT,
+        /** the run was cancelled before the operation finished (or started) */
+        CANCELLED
+    }
+
+    private final File directory;
+    /** The ".git" directory of the repository */
+    public final File getDirectory() { return directory; }
+
+    private final Outcome outcome;
+    public final Outcome getOutcome() { return outcome; }
+
+    private final T value;
+    /** The operation's result if it {@link Outcome#SUCCEEDED succeeded}; otherwise null */
+    public final T getValue() { return value; }
+
+    private final Throwable failure;
+    /** What the operation threw if it {@link Outcome#FAILED failed}; otherwise null */
+    public final Throwable getFailure() { return failure; }
+
+    private final Duration duration;
+    /** How long the operation ran before it finished, failed, timed out or was cancelled */
+    public final Duration getDuration() { return duration; }
+
+    RepositoryResult(File directory, Outcome outcome, T value, Throwable failure, Duration duration) {
+        this.directory = directory;
+        this.outcome = outcome;
+        this.value = value;
+        this.failure = failure;
+        this.duration = duration;
+    }
+
+    public boolean isSucceeded() {
+        return outcome == Outcome.SUCCEEDED;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryResult(" + directory + ": " + outcome + " after " + duration.toMillis() + "ms"
+                + (failure != null ? ", " + failure : "") + ")";
+    }
+}
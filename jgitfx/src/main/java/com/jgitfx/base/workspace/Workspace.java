@@ -0,0 +1,279 @@
+package com.jgitfx.base.workspace;
+
+import com.jgitfx.base.GitHelper;
+import com.jgitfx.base.RepositoryHandleCache;
+import com.jgitfx.base.metrics.GitMetrics;
+import com.jgitfx.base.metrics.GitOperation;
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.TagOpt;
+
+/**
+ * Holds many repositories and runs an operation (status, fetch, pull, or any other {@link RepositoryCall}) on all of
+ * them at once, streaming each repository's result as it finishes (see {@link WorkspaceRun}).
+ *
+ * <p>Repositories are opened via {@link GitHelper#openRepo(File)}, so they share {@link RepositoryHandleCache}'s
+ * instances with the rest of the application. The workspace keeps a handle to each of its repositories, and every
+ * operation opens its own handle for as long as it runs.</p>
+ *
+ * <p>Operations that only read the disk (e.g. status) run on a pool of {@link #setLocalConcurrency(int)
+ * localConcurrency} threads, which defaults to one per core; lower it if the repositories are on a slow disk.
+ * Operations that talk to remotes (fetch and pull) mostly wait on the network, and run on a separate pool of
+ * {@link #setRemoteConcurrency(int) remoteConcurrency} threads. If an operation runs for longer than the
+ * {@link #setTimeout(Duration) timeout} on a repository, its result is reported as timed out and its progress
+ * monitor is cancelled, which JGit checks regularly to stop; until it does, it keeps its thread. Fetch and pull
+ * also pass the timeout to their transport, so a remote that stops responding doesn't keep the thread forever.</p>
+ */
+public class Workspace implements AutoCloseable {
+
+    /**
+     * An operation to run on one repository.
+     * @param <T> the type of its result
+     */
+    @FunctionalInterface
+    public interface RepositoryCall<T> {
+        /**
+         * @param monitor reports that the operation should stop because it timed out or was cancelled
+         */
+        T call(Git git, ProgressMonitor monitor) throws GitAPIException;
+    }
+
+    private static final ScheduledExecutorService TIMEOUT_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "jgitfx-workspace-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // guarded by this
+    private final Map<File, Git> repositories = new LinkedHashMap<>();
+    private boolean closed = false;
+
+    private final ThreadPoolExecutor localExecutor = newExecutor("jgitfx-workspace-local",
+            Runtime.getRuntime().availableProcessors());
+    private final ThreadPoolExecutor remoteExecutor = newExecutor("jgitfx-workspace-remote", 8);
+
+    private volatile Duration timeout = Duration.ofMinutes(2);
+    public final Duration getTimeout() { return timeout; }
+    /** Sets how long an operation may run on one repository. Defaults to 2 minutes. */
+    public final void setTimeout(Duration timeout) { this.timeout = timeout; }
+
+    public final int getLocalConcurrency() { return localExecutor.getMaximumPoolSize(); }
+    /** Sets how many repositories are read from disk at the same time. Defaults to the number of cores. */
+    public final void setLocalConcurrency(int threads) { setPoolSize(localExecutor, threads); }
+
+    public final int getRemoteConcurrency() { return remoteExecutor.getMaximumPoolSize(); }
+    /** Sets how many repositories talk to their remotes at the same time. Defaults to 8. */
+    public final void setRemoteConcurrency(int threads) { setPoolSize(remoteExecutor, threads); }
+
+    /**
+     * Adds a repository to the workspace, unless it is already part of it.
+     * @param gitMetaDirectory the ".git" directory of the repository
+     * @return the repository's ".git" directory, as listed by {@link #getRepositories()}
+     * @throws GitAPIException
+     * @throws org.eclipse.jgit.api.errors.JGitInternalException if the directory is not a Git repository or could
+     *                                                            not be read
+     */
+    public File add(File gitMetaDirectory) throws GitAPIException {
+        Git git = GitHelper.openRepo(gitMetaDirectory);
+        File directory = git.getRepository().getDirectory();
+        synchronized (this) {
+            if (closed) {
+                git.close();
+                throw new IllegalStateException("The workspace has been closed");
+            }
+            if (repositories.putIfAbsent(directory, git) != null) {
+                git.close();
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Removes a repository from the workspace. Operations that are running on it are not affected.
+     * @return true if the repository was part of the workspace
+     */
+    public boolean remove(File gitMetaDirectory) {
+        Git git;
+        synchronized (this) {
+            git = repositories.remove(gitMetaDirectory);
+        }
+        if (git != null) {
+            git.close();
+        }
+        return git != null;
+    }
+
+    /**
+     * @return the ".git" directories of the workspace's repositories, in the order they were added
+     */
+    public synchronized List<File> getRepositories() {
+        return new ArrayList<>(repositories.keySet());
+    }
+
+    /**
+     * Computes the status of every repository.
+     */
+    public WorkspaceRun<Status> status() {
+        return runLocally((git, monitor) -> GitMetrics.record(GitOperation.STATUS, () -> git.status()
+                .setProgressMonitor(monitor)
+                .call()));
+    }
+
+    /**
+     * Fetches all content from every repository's "origin" remote, like {@link GitHelper#fetch(Git)}.
+     */
+    public WorkspaceRun<FetchResult> fetch() {
+        int transportTimeout = transportTimeout();
+        return runRemotely((git, monitor) -> GitHelper.fetch(git, Constants.DEFAULT_REMOTE_NAME,
+                Collections.emptyList(), TagOpt.AUTO_FOLLOW, monitor, transportTimeout));
+    }
+
+    /**
+     * Pulls into every repository's checked-out branch, like {@link GitHelper#pullWithMerge(Git)}.
+     */
+    public WorkspaceRun<PullResult> pull() {
+        int transportTimeout = transportTimeout();
+        return runRemotely((git, monitor) -> GitHelper.pullWithMerge(git, MergeStrategy.RESOLVE, null, null,
+                monitor, transportTimeout));
+    }
+
+    /**
+     * Runs an operation that only works with the local repositories on every repository, on the pool of
+     * {@link #getLocalConcurrency() localConcurrency} threads.
+     */
+    public <T> WorkspaceRun<T> runLocally(RepositoryCall<T> call) {
+        return run(localExecutor, call);
+    }
+
+    /**
+     * Runs an operation that talks to remotes on every repository, on the pool of
+     * {@link #getRemoteConcurrency() remoteConcurrency} threads.
+     */
+    public <T> WorkspaceRun<T> runRemotely(RepositoryCall<T> call) {
+        return run(remoteExecutor, call);
+    }
+
+    /**
+     * Removes all repositories and stops the workspace's threads once the operations that are running are done.
+     */
+    @Override
+    public void close() {
+        List<Git> handles;
+        synchronized (this) {
+            closed = true;
+            handles = new ArrayList<>(repositories.values());
+            repositories.clear();
+        }
+        handles.forEach(Git::close);
+        localExecutor.shutdown();
+        remoteExecutor.shutdown();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    /**
+     * The {@link #setTimeout(Duration) timeout} in whole seconds, for the transport of fetch and pull. Cancelling
+     * the monitor doesn't interrupt a read from a remote that stopped responding, but the transport's timeout does.
+     */
+    private int transportTimeout() {
+        long seconds = (timeout.toMillis() + 999) / 1000;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void setPoolSize(ThreadPoolExecutor executor, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        }
+        // the core size must never exceed the maximum size
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    private <T> WorkspaceRun<T> run(ThreadPoolExecutor executor, RepositoryCall<T> call) {
+        List<File> directories;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The workspace has been closed");
+            }
+            directories = new ArrayList<>(repositories.keySet());
+        }
+        WorkspaceRun<T> run = new WorkspaceRun<>(directories);
+        for (File directory : directories) {
+            executor.execute(() -> runOn(run, directory, call));
+        }
+        return run;
+    }
+
+    private <T> void runOn(WorkspaceRun<T> run, File directory, RepositoryCall<T> call) {
+        long start = System.nanoTime();
+        if (run.isCancelled()) {
+            run.finish(result(directory, RepositoryResult.Outcome.CANCELLED, null, null, start));
+            return;
+        }
+
+        ScheduledFuture<?> timer = TIMEOUT_EXECUTOR.schedule(
+                () -> run.finish(result(directory, RepositoryResult.Outcome.TIMED_OUT, null, null, start)),
+                timeout.toMillis(), TimeUnit.MILLISECONDS);
+        ProgressMonitor monitor = new EmptyProgressMonitor() {
+            @Override
+            public boolean isCancelled() {
+                return run.isCancelled() || run.isFinished(directory);
+            }
+        };
+        try (Git git = GitHelper.openRepo(directory)) {
+            T value = call.call(git, monitor);
+            run.finish(result(directory, RepositoryResult.Outcome.SUCCEEDED, value, null, start));
+        } catch (Exception e) {
+            RepositoryResult.Outcome outcome = run.isCancelled()
+                    ? RepositoryResult.Outcome.CANCELLED
+                    : RepositoryResult.Outcome.FAILED;
+            run.finish(result(directory, outcome, null, e, start));
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    private static <T> RepositoryResult<T> result(File directory, RepositoryResult.Outcome outcome, T value,
+                                                  Throwable failure, long start) {
+        return new RepositoryResult<>(directory, outcome, value, failure, Duration.ofNanos(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,95 @@
+package com.jgitfx.base.workspace;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
+import org.reactfx.EventSource;
+import org.reactfx.EventStream;
+
+/**
+ * One operation (e.g. a status, fetch or pull) running on all repositories of a {@link Workspace}.
+ *
+ * <p>Each repository's {@link RepositoryResult} is emitted by {@link #results()} on the JavaFX Application Thread
+ * as soon as that repository is done, so a dashboard can fill in while the others are still running. Results that
+ * are emitted before a subscriber subscribes are not replayed to it, so subscribe on the JavaFX Application Thread
+ * right after starting the run (or use {@link #getCompletion()}).</p>
+ *
+ * @param <T> the type of the operation's result
+ */
+public final class WorkspaceRun<T> {
+
+    private final List<File> directories;
+    private final Map<File, RepositoryResult<T>> finished = new ConcurrentHashMap<>();
+    private final AtomicInteger emitted = new AtomicInteger();
+
+    private final EventSource<RepositoryResult<T>> results = new EventSource<>();
+    /** The result of each repository, in the order in which they finish; emitted on the JavaFX Application Thread */
+    public final EventStream<RepositoryResult<T>> results() { return results; }
+
+    private final CompletableFuture<List<RepositoryResult<T>>> completion = new CompletableFuture<>();
+    /**
+     * Completes on the JavaFX Application Thread, after the last result has been emitted, with the results of all
+     * repositories in the order of {@link Workspace#getRepositories()}.
+     */
+    public final CompletableFuture<List<RepositoryResult<T>>> getCompletion() { return completion; }
+
+    private volatile boolean cancelled = false;
+    public final boolean isCancelled() { return cancelled; }
+
+    WorkspaceRun(List<File> directories) {
+        this.directories = directories;
+        if (directories.isEmpty()) {
+            Platform.runLater(() -> completion.complete(new ArrayList<>()));
+        }
+    }
+
+    /**
+     * @return the number of repositories the operation runs on
+     */
+    public int getTotal() {
+        return directories.size();
+    }
+
+    /**
+     * @return the number of repositories that are done
+     */
+    public int getFinished() {
+        return finished.size();
+    }
+
+    /**
+     * Cancels the operation on every repository on which it hasn't finished yet. Repositories on which it hasn't
+     * started are not started; running operations are asked to stop through their progress monitors.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Records a repository's result, unless it already has one (e.g. because it timed out), and emits it.
+     * @return true if the result was recorded
+     */
+    boolean finish(RepositoryResult<T> result) {
+        if (finished.putIfAbsent(result.getDirectory(), result) != null) {
+            return false;
+        }
+        Platform.runLater(() -> {
+            results.push(result);
+            if (emitted.incrementAndGet() == directories.size()) {
+                List<RepositoryResult<T>> all = new ArrayList<>(directories.size());
+                directories.forEach(directory -> all.add(finished.get(directory)));
+                completion.complete(all);
+            }
+        });
+        return true;
+    }
+
+    boolean isFinished(File directory) {
+        return finished.containsKey(directory);
+    }
+}
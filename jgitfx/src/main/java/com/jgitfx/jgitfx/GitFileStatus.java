@@ -11,5 +11,7 @@ public enum GitFileStatus {
     /** Tracked files that have been modified */
     MODIFIED,
     /** Tracked files that have been deleted */
-    REMOVED
+    REMOVED,
+    /** Files that were added in place of a deleted file with the same or similar content */
+    RENAMED
 }
@@ -0,0 +1,196 @@
+package com.jgitfx.jgitfx;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * GitPath is a compact, immutable path of names separated by {@code /}, as used by git for repository-relative
+ * paths. It is meant to replace {@link Path} when many paths are held in memory at once (e.g. the hundreds of
+ * thousands of changed files a {@link com.jgitfx.jgitfx.fileviewers.SelectableFileViewer} may display).
+ *
+ * <p>A path is stored as its last name and a pointer to its parent path, so paths that are resolved against the
+ * same parent share that parent instead of copying it. Names are interned, so equal names are the same
+ * {@link String} instance, and the hash code is computed once when the path is created. As a result,
+ * {@link #getParent()}, {@link #getName(int)}, {@link #getFileName()}, {@link #startsWith(GitPath)},
+ * {@link #endsWith(GitPath)}, {@link #hashCode()} and {@link #equals(Object)} never allocate, and
+ * {@link #resolve(String)} only allocates the resulting path.</p>
+ */
+public final class GitPath {
+
+    /** The empty path, against which all other paths are resolved */
+    public static final GitPath EMPTY = new GitPath();
+
+    private final GitPath parent;
+    private final String name;
+    private final int nameCount;
+    private final int hash;
+
+    private GitPath() {
+        parent = null;
+        name = null;
+        nameCount = 0;
+        hash = 1;
+    }
+
+    private GitPath(GitPath parent, String name) {
+        this.parent = parent;
+        this.name = name;
+        this.nameCount = parent.nameCount + 1;
+        this.hash = 31 * parent.hash + name.hashCode();
+    }
+
+    /**
+     * Parses a repository-relative path such as {@code a/b/file.txt}. Empty names (e.g. from a leading,
+     * trailing or doubled {@code /}) are skipped.
+     */
+    public static GitPath of(String path) {
+        GitPath result = EMPTY;
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = length;
+            }
+            if (end > start) {
+                result = result.resolve(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * @return a path whose parent is this path and whose last name is the given name
+     * @throws IllegalArgumentException if the name is empty or contains a {@code /}
+     */
+    public GitPath resolve(String name) {
+        if (name.isEmpty() || name.indexOf('/') != -1) {
+            throw new IllegalArgumentException("Not a single path name: " + name);
+        }
+        return new GitPath(this, name.intern());
+    }
+
+    /**
+     * @return this path followed by all the names of {@code other}
+     */
+    public GitPath resolve(GitPath other) {
+        if (other.nameCount == 0) {
+            return this;
+        }
+        if (nameCount == 0) {
+            return other;
+        }
+        return new GitPath(resolve(other.parent), other.name);
+    }
+
+    /**
+     * @return the parent of this path, or null if this path is {@link #EMPTY}
+     */
+    public GitPath getParent() { return parent; }
+
+    /**
+     * @return the last name of this path, or null if this path is {@link #EMPTY}
+     */
+    public String getFileName() { return name; }
+
+    public int getNameCount() { return nameCount; }
+
+    public boolean isEmpty() { return nameCount == 0; }
+
+    /**
+     * @param index the index of the name, where 0 is the name closest to the root
+     * @return the name at the given index
+     * @throws IllegalArgumentException if the index is negative or not less than {@link #getNameCount()}
+     */
+    public String getName(int index) {
+        if (index < 0 || index >= nameCount) {
+            throw new IllegalArgumentException("Index " + index + " is out of bounds for " + nameCount + " names");
+        }
+        return ancestor(nameCount - index - 1).name;
+    }
+
+    public boolean startsWith(GitPath other) {
+        return other.nameCount <= nameCount && ancestor(nameCount - other.nameCount).equals(other);
+    }
+
+    public boolean endsWith(GitPath other) {
+        if (other.nameCount > nameCount) {
+            return false;
+        }
+        GitPath path = this;
+        GitPath otherPath = other;
+        while (otherPath.nameCount > 0) {
+            // names are interned
+            if (path.name != otherPath.name) {
+                return false;
+            }
+            path = path.parent;
+            otherPath = otherPath.parent;
+        }
+        return true;
+    }
+
+    /**
+     * @return the equivalent {@link Path}; note that this allocates a new {@link Path} on every call
+     */
+    public Path toPath() {
+        return Paths.get(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof GitPath))
+            return false;
+        GitPath path = this;
+        GitPath other = (GitPath) obj;
+        if (path.hash != other.hash || path.nameCount != other.nameCount) {
+            return false;
+        }
+        // stop as soon as both paths share the same parent
+        while (path != other) {
+            if (path.name != other.name) {
+                return false;
+            }
+            path = path.parent;
+            other = other.parent;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (nameCount == 1) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    private void appendTo(StringBuilder sb) {
+        if (nameCount == 0) {
+            return;
+        }
+        if (nameCount > 1) {
+            parent.appendTo(sb);
+            sb.append('/');
+        }
+        sb.append(name);
+    }
+
+    private GitPath ancestor(int levelsUp) {
+        GitPath path = this;
+        for (int i = 0; i < levelsUp; i++) {
+            path = path.parent;
+        }
+        return path;
+    }
+}
@@ -1,51 +1,102 @@
 package com.jgitfx.jgitfx;
 
-import java.nio.file.Path;
 import java.util.Objects;
 
 /**
- * ModifiedPath is a wrapper class that holds a {@link Path} and its {@link GitFileStatus}. Most methods within
+ * ModifiedPath is a wrapper class that holds a {@link GitPath} and its {@link GitFileStatus}. Most methods within
  * the class are convenience methods for accessing or somehow using its {@code path}.
  */
 public class ModifiedPath {
 
-    private final Path path;
-    public final Path getPath() { return path; }
+    private final GitPath path;
+    public final GitPath getPath() { return path; }
 
     private final GitFileStatus status;
     public final GitFileStatus getStatus() { return status; }
 
-    public ModifiedPath(Path path, GitFileStatus status) {
+    private final String renamedFrom;
+    /**
+     * @return the repository-relative path the file was renamed from, or null if its status is not
+     *         {@link GitFileStatus#RENAMED}
+     */
+    public final String getRenamedFrom() { return renamedFrom; }
+
+    public ModifiedPath(GitPath path, GitFileStatus status) {
+        this(path, status, null);
+    }
+
+    private final StatusCounts counts;
+    /**
+     * @return how many files below the directory have which status, or null if this is not the path of a
+     *         directory created via {@link #directory(GitPath, StatusCounts)}
+     */
+    public final StatusCounts getCounts() { return counts; }
+
+    /** computed on first use */
+    private String displayText;
+
+    public ModifiedPath(GitPath path, GitFileStatus status, String renamedFrom) {
+        this(path, status, renamedFrom, null);
+    }
+
+    private ModifiedPath(GitPath path, GitFileStatus status, String renamedFrom, StatusCounts counts) {
         this.path = path;
         this.status = status;
+        this.renamedFrom = renamedFrom;
+        this.counts = counts;
+    }
+
+    /**
+     * @return the {@link GitFileStatus#UNCHANGED} path of a directory whose files have the given statuses
+     */
+    public static ModifiedPath directory(GitPath path, StatusCounts counts) {
+        return new ModifiedPath(path, GitFileStatus.UNCHANGED, null, counts);
     }
 
     public ModifiedPath resolve(ModifiedPath other) {
-        return new ModifiedPath(path.resolve(other.getPath()), other.status);
+        return new ModifiedPath(path.resolve(other.getPath()), other.status, other.renamedFrom, other.counts);
+    }
+
+    /**
+     * @return the text displayed for this path, e.g. {@code "a/b"}, {@code "a/b (from c/b)"} for a rename or
+     *         {@code "a/b  +1 ~2"} for a directory. It is computed once and then reused.
+     */
+    public String getDisplayText() {
+        String text = displayText;
+        if (text == null) {
+            text = path.toString();
+            if (renamedFrom != null) {
+                text = text + " (from " + renamedFrom + ")";
+            } else if (counts != null && counts.getTotal() != 0) {
+                text = text + "  " + counts.getText();
+            }
+            displayText = text;
+        }
+        return text;
     }
 
-    public ModifiedPath getName(int nameIndex) {
-        return new ModifiedPath(path.getName(nameIndex), nameIndex == getNameCount() - 1 ? status : GitFileStatus.UNCHANGED);
+    public String getName(int nameIndex) {
+        return path.getName(nameIndex);
     }
 
     public int getNameCount() {
         return path.getNameCount();
     }
 
-    public Path getLastName() {
-        return path.getName(getNameCount());
+    public String getLastName() {
+        return path.getFileName();
     }
 
-    public boolean lastNameMatches(ModifiedPath other) { return getLastName().equals(other.getLastName()); }
+    public boolean lastNameMatches(ModifiedPath other) { return Objects.equals(getLastName(), other.getLastName()); }
 
     public boolean endsWith(ModifiedPath other) { return path.endsWith(other.getPath()); }
 
+    /**
+     * Only depends on the path, so that a file keeps its hash code when its status changes.
+     */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (path == null ? 0 : path.hashCode()) + (status == null ? 0 : status.hashCode());
-        return result;
+        return path == null ? 0 : path.hashCode();
     }
 
     @Override
@@ -58,11 +109,15 @@ public class ModifiedPath {
             return false;
         ModifiedPath other = (ModifiedPath) obj;
         return Objects.equals(path, other.getPath()) &&
-                Objects.equals(status, other.getStatus());
+                Objects.equals(status, other.getStatus()) &&
+                Objects.equals(renamedFrom, other.getRenamedFrom()) &&
+                Objects.equals(counts, other.getCounts());
     }
 
     @Override
     public String toString() {
-        return "ModifiedPath(path: [" + path.toString() + "], status: [" + status.toString() + "])";
+        return "ModifiedPath(path: [" + path.toString() + "], status: [" + status.toString() + "]"
+                + (renamedFrom == null ? "" : ", renamedFrom: [" + renamedFrom + "]")
+                + (counts == null ? "" : ", counts: [" + counts.getText() + "]") + ")";
     }
 }
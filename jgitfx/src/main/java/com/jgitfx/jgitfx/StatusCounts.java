@@ -0,0 +1,96 @@
+package com.jgitfx.jgitfx;
+
+/**
+ * An immutable summary of how many files below a directory have each {@link GitFileStatus}. Its text, e.g.
+ * {@code "+12 ~40 -3"}, lists the added, modified, removed and renamed files, leaving out statuses no file has.
+ */
+public final class StatusCounts {
+
+    public static final StatusCounts EMPTY = new StatusCounts(0, 0, 0, 0);
+
+    private final int added;
+    public int getAdded() { return added; }
+
+    private final int modified;
+    public int getModified() { return modified; }
+
+    private final int removed;
+    public int getRemoved() { return removed; }
+
+    private final int renamed;
+    public int getRenamed() { return renamed; }
+
+    /** computed on first use */
+    private String text;
+
+    public StatusCounts(int added, int modified, int removed, int renamed) {
+        this.added = added;
+        this.modified = modified;
+        this.removed = removed;
+        this.renamed = renamed;
+    }
+
+    public int getTotal() {
+        return added + modified + removed + renamed;
+    }
+
+    /**
+     * @return the number of files with the given status; 0 for {@link GitFileStatus#UNCHANGED}
+     */
+    public int get(GitFileStatus status) {
+        switch (status) {
+            case ADDED:     return added;
+            case MODIFIED:  return modified;
+            case REMOVED:   return removed;
+            case RENAMED:   return renamed;
+            default:        return 0;
+        }
+    }
+
+    /**
+     * @return the counts as displayed in a directory's row, e.g. {@code "+12 ~40 -3 R2"}
+     */
+    public String getText() {
+        String t = text;
+        if (t == null) {
+            StringBuilder sb = new StringBuilder();
+            append(sb, '+', added);
+            append(sb, '~', modified);
+            append(sb, '-', removed);
+            append(sb, 'R', renamed);
+            t = sb.toString();
+            text = t;
+        }
+        return t;
+    }
+
+    private static void append(StringBuilder sb, char symbol, int count) {
+        if (count != 0) {
+            if (sb.length() != 0) {
+                sb.append(' ');
+            }
+            sb.append(symbol).append(count);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return ((added * 31 + modified) * 31 + removed) * 31 + renamed;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof StatusCounts))
+            return false;
+        StatusCounts other = (StatusCounts) obj;
+        return added == other.added && modified == other.modified
+                && removed == other.removed && renamed == other.renamed;
+    }
+
+    @Override
+    public String toString() {
+        return "StatusCounts(" + getText() + ")";
+    }
+}
@@ -12,7 +12,8 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.reactfx.value.Val;
 
 /**
- * A dialog for marking which files to add (stage) and what the commit message is before committing them.
+ * A dialog for marking which files to add (stage) and what the commit message is before committing them. The
+ * files are added and committed in the background while the dialog shows the progress.
  */
 public class CommitDialog extends CommitDialogBase<CommitResult, CommitDialogPane> {
 
@@ -23,13 +24,9 @@ public class CommitDialog extends CommitDialogBase<CommitResult, CommitDialogPan
 
         ButtonType commitButton = new ButtonType("Commit...", ButtonBar.ButtonData.YES);
         setDialogPane(new CommitDialogPane(git, new SelectableFileViewer(firstStatus), commitButton));
-        setResultConverter(buttonType -> {
-            if (buttonType.equals(commitButton)) {
-                return addAndCommitSelectedFiles();
-            } else {
-                return null;
-            }
-        });
+        // the commit button's result is set once the background commit completes
+        setResultConverter(buttonType -> null);
+        commitInBackgroundOn(commitButton);
     }
 
     @Override
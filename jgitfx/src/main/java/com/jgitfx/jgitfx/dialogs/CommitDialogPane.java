@@ -1,22 +1,29 @@
 package com.jgitfx.jgitfx.dialogs;
 
 import com.jgitfx.base.dialogs.CommitDialogPaneBase;
-import com.jgitfx.jgitfx.fileviewers.SelectableFileViewer;
+import com.jgitfx.base.progress.FxProgressMonitor;
+import com.jgitfx.base.status.RenameDetector.Rename;
+import com.jgitfx.jgitfx.fileviewers.FileSelecter;
+import java.util.Collections;
 import java.util.List;
 import javafx.beans.binding.Bindings;
 import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.reactfx.Subscription;
 import org.reactfx.value.Val;
 
 /**
@@ -25,8 +32,9 @@ import org.reactfx.value.Val;
 public class CommitDialogPane extends CommitDialogPaneBase {
 
     // GUI components
-    private final SelectableFileViewer fileViewer;
-    public List<String> getSelectedFiles() { return fileViewer.getSelectedFiles(); }
+    private final Node fileViewer;
+    private final FileSelecter fileSelecter;
+    public List<String> getSelectedFiles() { return fileSelecter.getSelectedFiles(); }
 
     private final TextArea messageArea = new TextArea();
     public String getCommitMessage() { return messageArea.getText(); }
@@ -44,14 +52,26 @@ public class CommitDialogPane extends CommitDialogPaneBase {
     private final BorderPane borderPane = new BorderPane();
     private final SplitPane splitter = new SplitPane();
 
-    public CommitDialogPane(Val<Git> git, SelectableFileViewer fileViewer, ButtonType commitButton) {
+    // shown while committing in the background
+    private final ProgressBar commitProgress = new ProgressBar();
+    private final Label commitProgressLabel = new Label();
+    private final HBox commitProgressBox = new HBox(5, commitProgress, commitProgressLabel);
+    private Subscription commitProgressSubscription = Subscription.EMPTY;
+
+    /**
+     * @param fileViewer displays the changed files and lets the user select them, e.g. a
+     *                   {@link com.jgitfx.jgitfx.fileviewers.SelectableFileViewer} or, for very large change sets, a
+     *                   {@link com.jgitfx.jgitfx.fileviewers.FilteredFileList}
+     */
+    public <F extends Node & FileSelecter> CommitDialogPane(Val<Git> git, F fileViewer, ButtonType commitButton) {
         super(git);
         this.fileViewer = fileViewer;
+        this.fileSelecter = fileViewer;
 
         getButtonTypes().addAll(commitButton, ButtonType.CANCEL);
         Button button = (Button) lookupButton(commitButton);
         // commit button is disabled when there are no selected files
-        button.disableProperty().bind(Bindings.not(fileViewer.hasSelectedFilesProperty()));
+        button.disableProperty().bind(Bindings.not(fileSelecter.hasSelectedFilesProperty()));
 
         splitter.setOrientation(Orientation.VERTICAL);
         splitter.getItems().addAll(
@@ -74,10 +94,37 @@ public class CommitDialogPane extends CommitDialogPaneBase {
     }
 
     public void displayFileViewer(Status status) {
+        displayFileViewer(status, Collections.emptyList());
+    }
+
+    @Override
+    public void displayFileViewer(Status status, List<Rename> renames) {
         if (!splitter.getItems().contains(fileViewer)) {
             splitter.getItems().set(0, fileViewer);
         }
-        fileViewer.refreshTree(status);
+        fileSelecter.refreshTree(status, renames);
+    }
+
+    @Override
+    protected void displayCommitInProgress(FxProgressMonitor monitor) {
+        splitter.setDisable(true);
+        amendCheckBox.setDisable(true);
+        commitProgress.setProgress(-1);
+        commitProgressLabel.setText("Adding files...");
+        commitProgressSubscription = monitor.events().subscribe(e -> {
+            commitProgress.setProgress(e.getProgress());
+            commitProgressLabel.setText(e.getTitle());
+        });
+        borderPane.setBottom(commitProgressBox);
+    }
+
+    @Override
+    protected void displayCommitFinished() {
+        commitProgressSubscription.unsubscribe();
+        commitProgressSubscription = Subscription.EMPTY;
+        borderPane.setBottom(null);
+        splitter.setDisable(false);
+        amendCheckBox.setDisable(false);
     }
 
     public void displayPlaceHolder() {
@@ -1,8 +1,11 @@
 package com.jgitfx.jgitfx.dialogs;
 
 import com.jgitfx.base.dialogs.RevertChangesDialogPaneBase;
-import com.jgitfx.jgitfx.fileviewers.SelectableFileViewer;
+import com.jgitfx.base.status.RenameDetector.Rename;
+import com.jgitfx.jgitfx.fileviewers.FileSelecter;
+import java.util.Collections;
 import java.util.List;
+import javafx.scene.Node;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.layout.StackPane;
@@ -17,15 +20,22 @@ import org.reactfx.value.Val;
 public class RevertChangesDialogPane extends RevertChangesDialogPaneBase {
 
     // GUI components
-    private final SelectableFileViewer fileViewer;
-    public List<String> getSelectedFiles() {return fileViewer.getSelectedFiles(); }
+    private final Node fileViewer;
+    private final FileSelecter fileSelecter;
+    public List<String> getSelectedFiles() {return fileSelecter.getSelectedFiles(); }
 
     // layout containers
     private final VBox vbox = new VBox();
 
-    public RevertChangesDialogPane(Val<Git> git, SelectableFileViewer fileViewer, ButtonType revertButtonType) {
+    /**
+     * @param fileViewer any {@link FileSelecter} node, such as a
+     *                   {@link com.jgitfx.jgitfx.fileviewers.SelectableFileViewer}
+     */
+    public <F extends Node & FileSelecter> RevertChangesDialogPane(Val<Git> git, F fileViewer,
+                                                                   ButtonType revertButtonType) {
         super(git);
         this.fileViewer = fileViewer;
+        this.fileSelecter = fileViewer;
 
         vbox.getChildren().addAll(
                 new Label("Revert selected files back to previous commit"),
@@ -35,10 +45,15 @@ public class RevertChangesDialogPane extends RevertChangesDialogPaneBase {
     }
 
     protected void displayFileViewer(Status status) {
+        displayFileViewer(status, Collections.emptyList());
+    }
+
+    @Override
+    protected void displayFileViewer(Status status, List<Rename> renames) {
         if (!vbox.getChildren().contains(fileViewer)) {
             vbox.getChildren().set(1, fileViewer);
         }
-        fileViewer.refreshTree(status);
+        fileSelecter.refreshTree(status, renames);
     }
 
     protected void displayPlaceholder() {
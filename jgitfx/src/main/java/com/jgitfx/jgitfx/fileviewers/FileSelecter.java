@@ -1,5 +1,6 @@
 package com.jgitfx.jgitfx.fileviewers;
 
+import com.jgitfx.base.status.RenameDetector.Rename;
 import javafx.beans.value.ObservableBooleanValue;
 import org.eclipse.jgit.api.Status;
 
@@ -23,9 +24,29 @@ public interface FileSelecter {
      */
     void refreshTree(Status status);
 
+    /**
+     * Like {@link #refreshTree(Status)}, but displays each of the given renames as one
+     * {@link com.jgitfx.jgitfx.GitFileStatus#RENAMED} file in place of its old and new path. Selecting it selects
+     * both paths. Defaults to ignoring the renames.
+     * @param renames the renames in {@code status}, e.g. those found by
+     *                {@link com.jgitfx.base.status.RenameDetector}
+     */
+    default void refreshTree(Status status, List<Rename> renames) { refreshTree(status); }
+
     /**
      * @return the files that were selected and on which the user wants some action to be applied
      */
     List<String> getSelectedFiles();
 
+    /**
+     * @return the number of files that were selected
+     */
+    default int getSelectedFileCount() { return getSelectedFiles().size(); }
+
+    /**
+     * Gives access to the selected files without copying them, for callers that only iterate over them once.
+     * @return a view of the selected files that must not be iterated while the selection changes
+     */
+    default Iterable<String> selectedFiles() { return getSelectedFiles(); }
+
 }
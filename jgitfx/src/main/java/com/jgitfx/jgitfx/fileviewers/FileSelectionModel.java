@@ -0,0 +1,141 @@
+package com.jgitfx.jgitfx.fileviewers;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * The selection of a {@link FileSelecter}: a dense table that maps an index to the path of a file, plus a
+ * {@link BitSet} of the indices that are selected.
+ *
+ * <p>Selecting or deselecting a file and asking whether any file is selected or how many are take constant time.
+ * {@link #selectedPaths()} iterates over the selected paths without copying them. The indices of removed files
+ * are reused by files that are added later, so the table stays as large as the most files it held at once.</p>
+ *
+ * <p>Only the control that owns a selection model changes it, so that the model stays in sync with what the
+ * control displays; others can only query it. Like the controls that use it, a selection model must only be used on
+ * the JavaFX Application Thread.</p>
+ */
+public final class FileSelectionModel {
+
+    private final List<String> paths = new ArrayList<>();
+
+    /** the indices of {@link #paths} that hold a file */
+    private final BitSet used = new BitSet();
+    private final BitSet selected = new BitSet();
+    /** no index below this one is free */
+    private int firstFree = 0;
+
+    private int fileCount = 0;
+    public final int getFileCount() { return fileCount; }
+
+    private int selectedCount = 0;
+    public final int getSelectedCount() { return selectedCount; }
+
+    private final ReadOnlyBooleanWrapper hasSelectedFiles = new ReadOnlyBooleanWrapper(false);
+    public final boolean hasSelectedFiles() { return selectedCount != 0; }
+    public final ReadOnlyBooleanProperty hasSelectedFilesProperty() { return hasSelectedFiles.getReadOnlyProperty(); }
+
+    private final Iterable<String> selectedPaths = () -> new SelectedPathIterator();
+
+    /**
+     * Adds a file to the model.
+     * @return the index of the file, which stays the same until the file is {@link #remove(int) removed}
+     */
+    int add(String path, boolean select) {
+        int index = used.nextClearBit(firstFree);
+        firstFree = index + 1;
+        if (index == paths.size()) {
+            paths.add(path);
+        } else {
+            paths.set(index, path);
+        }
+        used.set(index);
+        fileCount++;
+        setSelected(index, select);
+        return index;
+    }
+
+    void remove(int index) {
+        checkIndex(index);
+        setSelected(index, false);
+        used.clear(index);
+        paths.set(index, null);
+        firstFree = Math.min(firstFree, index);
+        fileCount--;
+    }
+
+    public String getPath(int index) {
+        checkIndex(index);
+        return paths.get(index);
+    }
+
+    public boolean isSelected(int index) {
+        return selected.get(index);
+    }
+
+    void setSelected(int index, boolean select) {
+        checkIndex(index);
+        if (selected.get(index) == select) {
+            return;
+        }
+        selected.set(index, select);
+        selectedCount += select ? 1 : -1;
+        hasSelectedFiles.set(selectedCount != 0);
+    }
+
+    /**
+     * @return a view of the selected paths, in the order of their indices. It reflects later changes to the
+     *         selection and must not be iterated while the selection changes.
+     */
+    public Iterable<String> selectedPaths() {
+        return selectedPaths;
+    }
+
+    public void forEachSelectedPath(Consumer<? super String> action) {
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            action.accept(paths.get(i));
+        }
+    }
+
+    /**
+     * @return a new list of the selected paths, in the order of their indices
+     */
+    public List<String> getSelectedPaths() {
+        List<String> list = new ArrayList<>(selectedCount);
+        forEachSelectedPath(list::add);
+        return list;
+    }
+
+    private void checkIndex(int index) {
+        if (!used.get(index)) {
+            throw new IndexOutOfBoundsException("No file at index " + index);
+        }
+    }
+
+    private final class SelectedPathIterator implements Iterator<String> {
+
+        private int next = selected.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public String next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            String path = paths.get(next);
+            next = selected.nextSetBit(next + 1);
+            return path;
+        }
+    }
+}
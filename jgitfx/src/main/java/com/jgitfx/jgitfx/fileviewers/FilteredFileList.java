@@ -0,0 +1,319 @@
+package com.jgitfx.jgitfx.fileviewers;
+
+import com.jgitfx.base.status.RenameDetector.Rename;
+import com.jgitfx.jgitfx.GitFileStatus;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.collections.FXCollections;
+import javafx.css.PseudoClass;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import org.eclipse.jgit.api.Status;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FilteredFileList displays the files that have been added, removed, or changed since the previous commit as a flat
+ * list of paths and allows the user to select the files on which the user wants some action done. Unlike
+ * {@link SelectableFileViewer}, it is meant for change sets too large to browse as a tree.
+ *
+ * <p>Only the rows that are visible are ever created. Typing in the filter box shows only the files whose path
+ * contains the typed text (ignoring case); see {@link PathFilterIndex} for how matches are found without checking
+ * every path. The check box next to the filter box selects or deselects all files that match the filter.</p>
+ *
+ * <p>The cells can be styled like those of {@link SelectableFileViewer}:</p>
+ * <pre>
+ *     {@code
+ *     .git-file-status-list-cell:added { -fx-text-fill: green; }
+ *     .git-file-status-list-cell:modified { -fx-text-fill: blue; }
+ *     .git-file-status-list-cell:removed { -fx-text-fill: gray; }
+ *     .git-file-status-list-cell:renamed { -fx-text-fill: purple; }
+ *     }
+ * </pre>
+ */
+public class FilteredFileList extends VBox implements FileSelecter {
+
+    /** The pseudo class of each {@link GitFileStatus}, by its ordinal */
+    private static final PseudoClass[] PSEUDO_CLASSES = new PseudoClass[GitFileStatus.values().length];
+    static {
+        for (GitFileStatus s : GitFileStatus.values()) {
+            PSEUDO_CLASSES[s.ordinal()] = PseudoClass.getPseudoClass(s.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private final TextField filterField = new TextField();
+    public final String getFilter() { return filterField.getText(); }
+    public final void setFilter(String filter) { filterField.setText(filter); }
+
+    private final CheckBox selectMatchesBox = new CheckBox();
+
+    /** Its items are the indices of the matching files in {@link #selection} */
+    private final ListView<Integer> view = new ListView<>();
+
+    private final FileSelectionModel selection = new FileSelectionModel();
+    private final PathFilterIndex filterIndex = new PathFilterIndex();
+
+    /** The index of each changed file in {@link #selection}, by its repository-relative path */
+    private final Map<String, Integer> changedFiles = new HashMap<>();
+
+    /** The status of each changed file, by its index in {@link #selection} */
+    private final List<GitFileStatus> statuses = new ArrayList<>();
+
+    /**
+     * The index in {@link #selection} of each renamed file's old path, by the index of the file. The old paths are
+     * selected along with their files, but are not displayed on their own.
+     */
+    private final Map<Integer, Integer> oldPathIndices = new HashMap<>();
+
+    private BitSet matches = new BitSet();
+
+    /* *************** *
+     * Constructor     *
+     * *************** */
+
+    public FilteredFileList(Status status) {
+        super();
+        getStyleClass().add("filtered-file-list");
+        view.getStyleClass().add("filtered-file-list-view");
+        filterField.setPromptText("Filter");
+        filterField.textProperty().addListener((obs, oldFilter, newFilter) -> applyFilter());
+        selectMatchesBox.setSelected(true);
+        selectMatchesBox.setOnAction(ae -> selectMatches(selectMatchesBox.isSelected()));
+        view.setCellFactory(listView -> new FileCell());
+
+        HBox filterBar = new HBox(selectMatchesBox, filterField);
+        HBox.setHgrow(filterField, Priority.ALWAYS);
+        VBox.setVgrow(view, Priority.ALWAYS);
+        getChildren().addAll(filterBar, view);
+
+        refreshTree(status);
+    }
+
+    /* *************** *
+     * Public Methods  *
+     * *************** */
+
+    public final boolean hasSelectedFiles() { return selection.hasSelectedFiles(); }
+    public final ReadOnlyBooleanProperty hasSelectedFilesProperty() { return selection.hasSelectedFilesProperty(); }
+
+    /**
+     * @return a new list of the files that were selected, including those that don't match the filter.
+     */
+    public final List<String> getSelectedFiles() { return selection.getSelectedPaths(); }
+
+    @Override
+    public final int getSelectedFileCount() { return selection.getSelectedCount(); }
+
+    @Override
+    public final Iterable<String> selectedFiles() { return selection.selectedPaths(); }
+
+    /**
+     * Updates the list to the files of the given status. Files that are still changed keep their selection;
+     * new files are selected.
+     */
+    public void refreshTree(Status status) {
+        refreshTree(status, Collections.emptyList());
+    }
+
+    @Override
+    public void refreshTree(Status status, List<Rename> renames) {
+        Set<String> added = status.getAdded();
+        Set<String> changed = status.getChanged();
+        Set<String> missing = status.getMissing();
+
+        Map<String, String> renamedFrom = new HashMap<>();
+        Set<String> oldPaths = new HashSet<>();
+        for (Rename rename : renames) {
+            renamedFrom.put(rename.getNewPath(), rename.getOldPath());
+            oldPaths.add(rename.getOldPath());
+        }
+
+        // remove files that are no longer changed
+        Iterator<Map.Entry<String, Integer>> iterator = changedFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> entry = iterator.next();
+            String path = entry.getKey();
+            if (!added.contains(path) && !changed.contains(path) && !missing.contains(path)
+                    || oldPaths.contains(path)) {
+                int index = entry.getValue();
+                setRenamedFrom(index, null);
+                filterIndex.remove(index);
+                selection.remove(index);
+                statuses.set(index, null);
+                iterator.remove();
+            }
+        }
+
+        // add new files and update the ones whose status changed; a file listed twice keeps its first status
+        for (String path : added) {
+            String oldPath = renamedFrom.get(path);
+            putFile(path, oldPath == null ? GitFileStatus.ADDED : GitFileStatus.RENAMED, oldPath);
+        }
+        for (String path : changed) {
+            if (!added.contains(path) && !oldPaths.contains(path)) {
+                putFile(path, GitFileStatus.MODIFIED, null);
+            }
+        }
+        for (String path : missing) {
+            if (!added.contains(path) && !changed.contains(path) && !oldPaths.contains(path)) {
+                putFile(path, GitFileStatus.REMOVED, null);
+            }
+        }
+
+        applyFilter();
+    }
+
+    /* *************** *
+     * Private Methods *
+     * *************** */
+
+    private void putFile(String path, GitFileStatus fileStatus, String oldPath) {
+        Integer index = changedFiles.get(path);
+        if (index == null) {
+            index = selection.add(path, true);
+            changedFiles.put(path, index);
+            while (statuses.size() <= index) {
+                statuses.add(null);
+            }
+            filterIndex.add(index, path);
+        }
+        statuses.set(index, fileStatus);
+        setRenamedFrom(index, oldPath);
+    }
+
+    private void setRenamedFrom(int index, String oldPath) {
+        Integer oldPathIndex = oldPathIndices.get(index);
+        if (oldPathIndex != null && !selection.getPath(oldPathIndex).equals(oldPath)) {
+            selection.remove(oldPathIndex);
+            oldPathIndices.remove(index);
+            oldPathIndex = null;
+        }
+        if (oldPathIndex == null && oldPath != null) {
+            oldPathIndices.put(index, selection.add(oldPath, selection.isSelected(index)));
+        }
+    }
+
+    private void setSelected(int index, boolean selected) {
+        selection.setSelected(index, selected);
+        Integer oldPathIndex = oldPathIndices.get(index);
+        if (oldPathIndex != null) {
+            selection.setSelected(oldPathIndex, selected);
+        }
+    }
+
+    private void applyFilter() {
+        String filter = filterField.getText();
+        matches = filterIndex.matches(filter == null ? "" : filter);
+        view.setItems(FXCollections.observableList(new MatchList(matches)));
+    }
+
+    private void selectMatches(boolean selected) {
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            setSelected(i, selected);
+        }
+        // the visible cells have to show the new state
+        view.refresh();
+    }
+
+    /**
+     * The indices of the matching files as a list, read directly from the set of matches. Looking up an element
+     * counts the set bits up to it, starting from the previously looked up element, so the sequential lookups of
+     * the visible rows are cheap and the list never has to be copied.
+     */
+    private static final class MatchList extends AbstractList<Integer> {
+
+        private final long[] words;
+        private final int size;
+
+        // the position of the previous lookup
+        private int lastWord = 0;
+        private int bitsBeforeLastWord = 0;
+
+        private MatchList(BitSet matches) {
+            this.words = matches.toLongArray();
+            this.size = matches.cardinality();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (index < bitsBeforeLastWord) {
+                lastWord = 0;
+                bitsBeforeLastWord = 0;
+            }
+            int word = lastWord;
+            int bitsBefore = bitsBeforeLastWord;
+            int count = Long.bitCount(words[word]);
+            while (bitsBefore + count <= index) {
+                bitsBefore += count;
+                word++;
+                count = Long.bitCount(words[word]);
+            }
+            lastWord = word;
+            bitsBeforeLastWord = bitsBefore;
+
+            // find the (index - bitsBefore)-th set bit of the word
+            long bits = words[word];
+            for (int i = index - bitsBefore; i > 0; i--) {
+                bits &= bits - 1;
+            }
+            return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        }
+    }
+
+    private final class FileCell extends ListCell<Integer> {
+
+        private final CheckBox checkBox = new CheckBox();
+
+        private FileCell() {
+            getStyleClass().add("git-file-status-list-cell");
+            checkBox.setOnAction(ae -> {
+                Integer index = getItem();
+                if (index != null) {
+                    setSelected(index, checkBox.isSelected());
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(Integer index, boolean empty) {
+            super.updateItem(index, empty);
+            GitFileStatus fileStatus = empty || index == null ? null : statuses.get(index);
+            for (GitFileStatus s : GitFileStatus.values()) {
+                pseudoClassStateChanged(PSEUDO_CLASSES[s.ordinal()], s == fileStatus);
+            }
+            if (fileStatus == null) {
+                setText(null);
+                setGraphic(null);
+            } else {
+                Integer oldPathIndex = oldPathIndices.get(index);
+                setText(oldPathIndex == null
+                        ? selection.getPath(index)
+                        : selection.getPath(index) + " (from " + selection.getPath(oldPathIndex) + ")");
+                checkBox.setSelected(selection.isSelected(index));
+                setGraphic(checkBox);
+            }
+        }
+    }
+}
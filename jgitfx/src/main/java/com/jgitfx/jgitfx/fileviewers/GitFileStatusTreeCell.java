@@ -1,22 +1,24 @@
 package com.jgitfx.jgitfx.fileviewers;
 
+import com.jgitfx.jgitfx.GitFileStatus;
 import com.jgitfx.jgitfx.ModifiedPath;
-import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.css.PseudoClass;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.CheckBoxTreeItem;
 import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
-import javafx.scene.control.cell.CheckBoxTreeCell;
 import javafx.util.Callback;
 import javafx.util.StringConverter;
 
+import java.util.Locale;
+
 /**
  * The CSS-styleable TreeCellFactory used in {@link SelectableFileViewer}.
  *
  * <p>{@link com.jgitfx.jgitfx.GitFileStatus} is used to determine the state of a file. Thus, there are currently
- * four ways the text's color can be styled:</p>
+ * five ways the text's color can be styled:</p>
  * <pre>
  *     {@code
  *     .git-file-status-tree-cell:unchanged {
@@ -35,10 +37,21 @@ import javafx.util.StringConverter;
  *          // tracked files that have been deleted
  *         -fx-text-fill: gray;
  *     }
+ *     .git-file-status-tree-cell:renamed {
+ *          // files that were moved from another path, which is displayed after their name
+ *         -fx-text-fill: purple;
+ *     }
  *     }
  * </pre>
+ *
+ * <p>A directory's row is followed by how many files below it have which status (see
+ * {@link com.jgitfx.jgitfx.StatusCounts}), e.g. {@code "src/main  +12 ~40 -3"}.</p>
+ *
+ * <p>Cells are updated every time the view scrolls, so updating one does not allocate: the displayed text is
+ * cached by {@link ModifiedPath#getDisplayText()}, only the pseudo classes of the previous and the new status are
+ * switched, and the check box follows its {@link CheckBoxTreeItem} through listeners that every update reuses.</p>
  */
-public class GitFileStatusTreeCell extends CheckBoxTreeCell<ModifiedPath> {
+public class GitFileStatusTreeCell extends TreeCell<ModifiedPath> {
 
     public static Callback<TreeView<ModifiedPath>, TreeCell<ModifiedPath>> forTreeView() {
         return (treeView) -> new GitFileStatusTreeCell();
@@ -47,7 +60,7 @@ public class GitFileStatusTreeCell extends CheckBoxTreeCell<ModifiedPath> {
     public final static StringConverter<TreeItem<ModifiedPath>> CONVERTER = new StringConverter<TreeItem<ModifiedPath>>() {
         @Override
         public String toString(TreeItem<ModifiedPath> object) {
-            return object.getValue().getPath().toString();
+            return object.getValue().getDisplayText();
         }
 
         @Override
@@ -56,68 +69,81 @@ public class GitFileStatusTreeCell extends CheckBoxTreeCell<ModifiedPath> {
         }
     };
 
-    private static PseudoClass UNCHANGED = PseudoClass.getPseudoClass("unchanged");
-    private static PseudoClass ADDED = PseudoClass.getPseudoClass("added");
-    private static PseudoClass MODIFIED = PseudoClass.getPseudoClass("modified");
-    private static PseudoClass REMOVED = PseudoClass.getPseudoClass("removed");
+    /** The pseudo class of each {@link GitFileStatus}, by its ordinal */
+    private static final PseudoClass[] PSEUDO_CLASSES = new PseudoClass[GitFileStatus.values().length];
+    static {
+        for (GitFileStatus s : GitFileStatus.values()) {
+            PSEUDO_CLASSES[s.ordinal()] = PseudoClass.getPseudoClass(s.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private final CheckBox checkBox = new CheckBox();
+
+    /** the status whose pseudo class is set, or null if none is */
+    private GitFileStatus shownStatus;
 
-    private final BooleanProperty unchanged;
-    private final BooleanProperty added;
-    private final BooleanProperty modified;
-    private final BooleanProperty removed;
+    /** the item whose check state the check box displays */
+    private CheckBoxTreeItem<ModifiedPath> boundItem;
+
+    private final ChangeListener<Boolean> selectedListener = (obs, wasSelected, isSelected) ->
+            checkBox.setSelected(isSelected);
+    private final ChangeListener<Boolean> indeterminateListener = (obs, wasIndeterminate, isIndeterminate) ->
+            checkBox.setIndeterminate(isIndeterminate);
 
     public GitFileStatusTreeCell() {
-        super(
-                treeItem -> ((CheckBoxTreeItem<ModifiedPath>) treeItem).selectedProperty(),
-                CONVERTER
-        );
-
-        getStyleClass().add("git-file-status-tree-cell");
-
-        // set up pseudo style classes
-        unchanged   = new SimpleBooleanProperty(false);
-        added       = new SimpleBooleanProperty(false);
-        modified    = new SimpleBooleanProperty(false);
-        removed     = new SimpleBooleanProperty(false);
-
-        unchanged   .addListener(c -> pseudoClassStateChanged(UNCHANGED,    unchanged.get()));
-        added       .addListener(c -> pseudoClassStateChanged(ADDED,        added.get()));
-        modified    .addListener(c -> pseudoClassStateChanged(MODIFIED,     modified.get()));
-        removed     .addListener(c -> pseudoClassStateChanged(REMOVED,      removed.get()));
+        getStyleClass().addAll("check-box-tree-cell", "git-file-status-tree-cell");
+        checkBox.setOnAction(ae -> {
+            if (boundItem != null) {
+                // same order as the check box itself, which was bound bidirectionally by CheckBoxTreeCell
+                boundItem.setSelected(checkBox.isSelected());
+                boundItem.setIndeterminate(checkBox.isIndeterminate());
+            }
+        });
     }
 
     @Override
     public void updateItem(ModifiedPath item, boolean empty) {
         super.updateItem(item, empty);
-        if (!empty && item != null) {
-            switch (item.getStatus()) {
-                case ADDED:
-                    falsifyProperties(unchanged, modified, removed);
-                    added.set(true);
-                    break;
-                case MODIFIED:
-                    falsifyProperties(added, unchanged, removed);
-                    modified.set(true);
-                    break;
-                case UNCHANGED:
-                    falsifyProperties(added, modified, removed);
-                    unchanged.set(true);
-                    break;
-                case REMOVED:
-                    falsifyProperties(added, unchanged, modified);
-                    removed.set(true);
-                    break;
-                default:
-                    throw new AssertionError("Unreachable code");
+        boolean hasItem = !empty && item != null;
+
+        GitFileStatus status = hasItem ? item.getStatus() : null;
+        if (status != shownStatus) {
+            if (shownStatus != null) {
+                pseudoClassStateChanged(PSEUDO_CLASSES[shownStatus.ordinal()], false);
+            }
+            if (status != null) {
+                pseudoClassStateChanged(PSEUDO_CLASSES[status.ordinal()], true);
             }
+            shownStatus = status;
         }
 
-    }
+        TreeItem<ModifiedPath> treeItem = hasItem ? getTreeItem() : null;
+        bind(treeItem instanceof CheckBoxTreeItem ? (CheckBoxTreeItem<ModifiedPath>) treeItem : null);
 
-    private void falsifyProperties(BooleanProperty first, BooleanProperty second, BooleanProperty third) {
-        first.set(false);
-        second.set(false);
-        third.set(false);
+        if (hasItem) {
+            setText(item.getDisplayText());
+            setGraphic(checkBox);
+        } else {
+            setText(null);
+            setGraphic(null);
+        }
     }
 
+    private void bind(CheckBoxTreeItem<ModifiedPath> item) {
+        if (item != boundItem) {
+            if (boundItem != null) {
+                boundItem.selectedProperty().removeListener(selectedListener);
+                boundItem.indeterminateProperty().removeListener(indeterminateListener);
+            }
+            boundItem = item;
+            if (item != null) {
+                item.selectedProperty().addListener(selectedListener);
+                item.indeterminateProperty().addListener(indeterminateListener);
+            }
+        }
+        if (item != null) {
+            checkBox.setSelected(item.isSelected());
+            checkBox.setIndeterminate(item.isIndeterminate());
+        }
+    }
 }
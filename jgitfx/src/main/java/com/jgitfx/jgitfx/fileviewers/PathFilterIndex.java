@@ -0,0 +1,151 @@
+package com.jgitfx.jgitfx.fileviewers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An index over a set of paths, identified by their index in a {@link FileSelectionModel}, that finds the paths
+ * containing a query (ignoring case).
+ *
+ * <p>For every character and every pair of adjacent characters, the index keeps a {@link BitSet} of the paths that
+ * contain it. Queries of one or two characters are answered by a single bit set. A longer query's candidates are
+ * the intersection of the bit sets of its character pairs, which only then have to be checked with a substring
+ * search (on a lower-case copy of the path, which for most paths is the path itself).
+ * The results of recent queries are kept and updated as paths are added and removed. Since a query that contains
+ * a previous query can only match paths the previous one matched, typing a filter one character at a time only
+ * checks the paths that still match; deleting a character returns the kept result.</p>
+ */
+final class PathFilterIndex {
+
+    /** How many query results are kept */
+    private static final int CACHE_SIZE = 32;
+
+    /** the lower-case paths, by their index */
+    private final List<String> paths = new ArrayList<>();
+
+    private final BitSet all = new BitSet();
+    /** keyed by a single character, or by two adjacent characters packed into an int by {@link #pair} */
+    private final Map<Integer, BitSet> pathsByGram = new HashMap<>();
+
+    /** the most recent query first */
+    private final Deque<Result> cache = new ArrayDeque<>();
+
+    void add(int index, String path) {
+        path = path.toLowerCase(Locale.ROOT);
+        while (paths.size() <= index) {
+            paths.add(null);
+        }
+        paths.set(index, path);
+        all.set(index);
+        for (int i = 0; i < path.length(); i++) {
+            pathsByGram.computeIfAbsent(gram(path, i), g -> new BitSet()).set(index);
+            if (i > 0) {
+                pathsByGram.computeIfAbsent(pair(path, i - 1), g -> new BitSet()).set(index);
+            }
+        }
+        for (Result result : cache) {
+            if (path.contains(result.query)) {
+                result.matches.set(index);
+            }
+        }
+    }
+
+    void remove(int index) {
+        String path = paths.set(index, null);
+        all.clear(index);
+        for (int i = 0; i < path.length(); i++) {
+            pathsByGram.get(gram(path, i)).clear(index);
+            if (i > 0) {
+                pathsByGram.get(pair(path, i - 1)).clear(index);
+            }
+        }
+        for (Result result : cache) {
+            result.matches.clear(index);
+        }
+    }
+
+    /**
+     * @return the indices of the paths that contain the query, ignoring case. The returned set is owned by the
+     *         index and must not be modified; it only stays valid until the next call of this method.
+     */
+    BitSet matches(String query) {
+        if (query.isEmpty()) {
+            return all;
+        }
+        query = query.toLowerCase(Locale.ROOT);
+
+        Result base = null;
+        Iterator<Result> iterator = cache.iterator();
+        while (iterator.hasNext()) {
+            Result result = iterator.next();
+            if (result.query.equals(query)) {
+                // move to the front
+                iterator.remove();
+                cache.addFirst(result);
+                return result.matches;
+            }
+            if (query.contains(result.query)
+                    && (base == null || result.query.length() > base.query.length())) {
+                base = result;
+            }
+        }
+
+        BitSet matches = base == null ? (BitSet) all.clone() : (BitSet) base.matches.clone();
+        if (query.length() == 1) {
+            and(matches, gram(query, 0));
+        }
+        for (int i = 0; i + 1 < query.length() && !matches.isEmpty(); i++) {
+            and(matches, pair(query, i));
+        }
+        if (query.length() > 2) {
+            // the candidates contain every character of the query, but maybe not in that order
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                if (!paths.get(i).contains(query)) {
+                    matches.clear(i);
+                }
+            }
+        }
+
+        cache.addFirst(new Result(query, matches));
+        if (cache.size() > CACHE_SIZE) {
+            cache.removeLast();
+        }
+        return matches;
+    }
+
+    private void and(BitSet matches, int gram) {
+        BitSet bits = pathsByGram.get(gram);
+        if (bits == null) {
+            matches.clear();
+        } else {
+            matches.and(bits);
+        }
+    }
+
+    private static int gram(String string, int index) {
+        return string.charAt(index);
+    }
+
+    /** Packs the characters at index and index + 1; unlike a single character, a pair never fits in 16 bits */
+    private static int pair(String string, int index) {
+        return ((string.charAt(index) + 1) << 16) | string.charAt(index + 1);
+    }
+
+    private static final class Result {
+
+        private final String query;
+        private final BitSet matches;
+
+        private Result(String query, BitSet matches) {
+            this.query = query;
+            this.matches = matches;
+        }
+    }
+}
@@ -1,20 +1,30 @@
 package com.jgitfx.jgitfx.fileviewers;
 
+import com.jgitfx.base.status.RenameDetector.Rename;
 import com.jgitfx.jgitfx.GitFileStatus;
+import com.jgitfx.jgitfx.GitPath;
 import com.jgitfx.jgitfx.ModifiedPath;
-import javafx.beans.binding.BooleanBinding;
-import javafx.beans.property.BooleanProperty;
+import com.jgitfx.jgitfx.StatusCounts;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.scene.control.CheckBoxTreeItem;
+import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.layout.Region;
 import org.eclipse.jgit.api.Status;
-import org.reactfx.util.Tuple2;
-import org.reactfx.util.Tuples;
 
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * SelectableFileViewer displays the files that have been added, removed, or changed since the previous commit and
@@ -31,28 +41,102 @@ import java.util.List;
  *     }
  * </pre>
  *
+ * <p>{@link #refreshTree(Status)} only patches the rows affected by the difference between the new and the
+ * previous {@link Status}: the items of files that are still changed are kept, so their check boxes and the
+ * expansion state of their directories survive a refresh.</p>
+ *
+ * <p>{@link #refreshTree(Status, List)} displays a rename as the file's new path, followed by its old one. Since
+ * the old path is part of the change, it is selected along with the new one.</p>
+ *
  * <h2>Usages</h2>
  * <ul>
  *     <li>To determine if the user has selected any files at all, use {@link #hasSelectedFilesProperty()}</li>
- *     <li>When ready to apply some action on the selected files, get those files via {@link #getSelectedFiles()}</li>
+ *     <li>When ready to apply some action on the selected files, get those files via {@link #getSelectedFiles()}
+ *         or iterate over them via {@link #selectedFiles()}</li>
  * </ul>
+ *
+ * <p>Which files are selected is tracked by a {@link FileSelectionModel}, so the selection can be queried
+ * without visiting the tree. The check box of a directory is derived from the number of files below it and how many
+ * of those are selected, which every node of the tree keeps track of.</p>
+ *
+ * <p>Every node also counts the files below it by their {@link GitFileStatus}. The counts are kept up-to-date as
+ * files are added, removed or change status during a refresh, so a directory's row displays its summary (see
+ * {@link ModifiedPath#getCounts()}) without visiting the files below it.</p>
+ *
+ * <p>A lazy viewer (see {@link #SelectableFileViewer(Status, boolean)}) displays its directories collapsed and
+ * only creates the items of a directory's children once that directory is first expanded, so the number of items
+ * depends on what the user has looked at rather than on the number of changed files.</p>
  */
 public class SelectableFileViewer extends Region implements FileSelecter {
 
+    /** The number of changed files above which {@link #SelectableFileViewer(Status)} creates a lazy viewer */
+    public static final int LAZY_THRESHOLD = 1000;
+
     private final TreeView<ModifiedPath> view = new TreeView<>();
-    private final CheckBoxTreeItem<ModifiedPath> root = new CheckBoxTreeItem<>();
 
-    private List<ModifiedPath> changedFiles;
-    private List<Tuple2<ModifiedPath, BooleanProperty>> fileSelectionStates;
+    /** The trie of the changed files' path names; its nodes hold the items that are displayed */
+    private final TrieNode trie = new TrieNode(null, null);
+
+    /** The trie nodes of the changed files, by their repository-relative path */
+    private final Map<String, TrieNode> changedFiles = new HashMap<>();
+
+    private final FileSelectionModel selection = new FileSelectionModel();
+    /** The selected files, which can be queried here but only changed through the viewer's check boxes */
+    public final FileSelectionModel getSelectionModel() { return selection; }
+
+    private final boolean lazy;
+    /** Whether the children of a directory are only created once the directory is first expanded */
+    public final boolean isLazy() { return lazy; }
+
+    /** true while the viewer updates check boxes itself, so those updates aren't taken for the user's */
+    private boolean updatingCheckBoxes = false;
+
+    /** Shared by all items: applies the user's (de)selection of a file or directory */
+    private final ChangeListener<Boolean> checkBoxListener = (obs, wasSelected, isSelected) -> {
+        if (!updatingCheckBoxes) {
+            Object item = ((ReadOnlyProperty<?>) obs).getBean();
+            if (item instanceof FileItem) {
+                selectFile(((FileItem) item).node, isSelected);
+            } else {
+                selectDirectory(((DirectoryItem) item).head, isSelected);
+            }
+        }
+    };
+
+    /** Shared by all directory items of a lazy viewer: creates the children of a directory when it is expanded */
+    private final ChangeListener<Boolean> expansionListener = (obs, wasExpanded, isExpanded) -> {
+        DirectoryItem item = (DirectoryItem) ((ReadOnlyProperty<?>) obs).getBean();
+        if (isExpanded && item.getChildren().isEmpty() && item.head.directoryItem == item) {
+            syncRow(item.head);
+        }
+    };
+
+    private final DirectoryItem root;
 
     /* *************** *
-     * Constructor     *
+     * Constructors    *
      * *************** */
 
+    /**
+     * Creates a viewer that is lazy if the status lists more than {@link #LAZY_THRESHOLD} changed files.
+     */
     public SelectableFileViewer(Status status) {
+        this(status, status.getAdded().size() + status.getChanged().size() + status.getMissing().size()
+                > LAZY_THRESHOLD);
+    }
+
+    /**
+     * @param lazy if true, directories are displayed collapsed and their children are only created once they are
+     *             first expanded; otherwise, the entire tree is created and expanded up front
+     */
+    public SelectableFileViewer(Status status, boolean lazy) {
         super();
+        this.lazy = lazy;
         getStyleClass().add("selectable-file-viewer");
         view.getStyleClass().add("selectable-file-tree-view");
+        root = newDirectoryItem(trie);
+        root.setExpanded(true);
+        trie.directoryItem = root;
         view.setRoot(root);
         view.setShowRoot(false);
         view.setCellFactory(GitFileStatusTreeCell.forTreeView());
@@ -66,132 +150,543 @@ public class SelectableFileViewer extends Region implements FileSelecter {
      * Public Methods  *
      * *************** */
 
-    public final boolean hasSelectedFiles() { return root.isIndeterminate() || root.isSelected(); }
-    public final BooleanBinding hasSelectedFilesProperty() {
-        return root.indeterminateProperty().or(root.selectedProperty());
-    }
+    public final boolean hasSelectedFiles() { return selection.hasSelectedFiles(); }
+    public final ReadOnlyBooleanProperty hasSelectedFilesProperty() { return selection.hasSelectedFilesProperty(); }
 
     /**
-     * @return the list of files that were selected.
+     * @return a new list of the files that were selected.
      */
-    public final List<String> getSelectedFiles() {
-        return Arrays.asList(
-                fileSelectionStates.stream()
-                // only get the paths that are checked
-                .filter(v -> v.get2().get())
-                // get the relative path as a String
-                .map(v -> v.get1().getPath().toString())
-                .toArray(String[]::new)
-        );
-    }
+    public final List<String> getSelectedFiles() { return selection.getSelectedPaths(); }
+
+    @Override
+    public final int getSelectedFileCount() { return selection.getSelectedCount(); }
+
+    @Override
+    public final Iterable<String> selectedFiles() { return selection.selectedPaths(); }
 
     public void refreshTree(Status status) {
-        int totalSize = status.getAdded().size() + status.getChanged().size() + status.getMissing().size();
+        refreshTree(status, Collections.emptyList());
+    }
+
+    @Override
+    public void refreshTree(Status status, List<Rename> renames) {
+        Set<String> added = status.getAdded();
+        Set<String> changed = status.getChanged();
+        Set<String> missing = status.getMissing();
 
-        changedFiles = new ArrayList<>(totalSize);
-        // TODO: this probably doesn't account for files that were moved / renamed
-        status.getAdded()  .forEach(file -> changedFiles.add(new ModifiedPath(Paths.get(file), GitFileStatus.ADDED)));
-        status.getChanged().forEach(file -> changedFiles.add(new ModifiedPath(Paths.get(file), GitFileStatus.MODIFIED)));
-        status.getMissing().forEach(file -> changedFiles.add(new ModifiedPath(Paths.get(file), GitFileStatus.REMOVED)));
+        // the old path of each renamed file, by its new path; the old paths are not displayed on their own
+        Map<String, String> renamedFrom = new HashMap<>();
+        Set<String> oldPaths = new HashSet<>();
+        for (Rename rename : renames) {
+            renamedFrom.put(rename.getNewPath(), rename.getOldPath());
+            oldPaths.add(rename.getOldPath());
+        }
+
+        // the nodes whose children or file changed
+        Set<TrieNode> touched = new LinkedHashSet<>();
+        // the files whose status changed, which only changes the counts of their ancestors
+        Set<TrieNode> recounted = new LinkedHashSet<>();
+
+        // remove files that are no longer changed
+        Iterator<Map.Entry<String, TrieNode>> iterator = changedFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, TrieNode> entry = iterator.next();
+            String path = entry.getKey();
+            if (!added.contains(path) && !changed.contains(path) && !missing.contains(path)
+                    || oldPaths.contains(path)) {
+                removeFile(entry.getValue(), touched);
+                iterator.remove();
+            }
+        }
 
-        fileSelectionStates = new ArrayList<>(totalSize);
+        // add new files and update the ones whose status changed; a file listed twice keeps its first status
+        for (String path : added) {
+            String oldPath = renamedFrom.get(path);
+            putFile(path, oldPath == null ? GitFileStatus.ADDED : GitFileStatus.RENAMED, oldPath, touched, recounted);
+        }
+        for (String path : changed) {
+            if (!added.contains(path) && !oldPaths.contains(path)) {
+                putFile(path, GitFileStatus.MODIFIED, null, touched, recounted);
+            }
+        }
+        for (String path : missing) {
+            if (!added.contains(path) && !changed.contains(path) && !oldPaths.contains(path)) {
+                putFile(path, GitFileStatus.REMOVED, null, touched, recounted);
+            }
+        }
 
-        buildRoot();
+        if (!touched.isEmpty() || !recounted.isEmpty()) {
+            patchRows(touched, recounted);
+        }
     }
 
     /* *************** *
      * Private Methods *
      * *************** */
 
-    private void buildRoot() {
-        root.getChildren().clear();
+    private void putFile(String path, GitFileStatus fileStatus, String oldPath,
+                         Set<TrieNode> touched, Set<TrieNode> recounted) {
+        TrieNode node = changedFiles.get(path);
+        if (node == null) {
+            node = insertFile(path, fileStatus, touched);
+            changedFiles.put(path, node);
+            setRenamedFrom(node, oldPath);
+        } else if (node.status != fileStatus || !Objects.equals(node.renamedFrom, oldPath)) {
+            if (node.status != fileStatus) {
+                addToCounts(node, node.status, -1, 0);
+                addToCounts(node, fileStatus, 1, 0);
+                recounted.add(node);
+            }
+            node.status = fileStatus;
+            setRenamedFrom(node, oldPath);
+            if (node.fileItem != null) {
+                node.fileItem.setValue(new ModifiedPath(node.fileItem.getValue().getPath(), fileStatus, oldPath));
+            }
+        }
+    }
 
-        for (ModifiedPath firstLevelPath : getNamesAtIndex(0)) {
-            CheckBoxTreeItem<ModifiedPath> firstLevelItem = new CheckBoxTreeItem<>(firstLevelPath);
-            if (changedFiles.contains(firstLevelPath)) {
-                fileSelectionStates.add(Tuples.t(firstLevelPath, firstLevelItem.selectedProperty()));
-            } else {
-                buildTreeRecursively(firstLevelPath, firstLevelItem, 1);
+    /** Tracks the old path of a renamed file in the selection model, selected like the file itself */
+    private void setRenamedFrom(TrieNode node, String oldPath) {
+        if (node.oldPathIndex != -1) {
+            selection.remove(node.oldPathIndex);
+            node.oldPathIndex = -1;
+        }
+        node.renamedFrom = oldPath;
+        if (oldPath != null) {
+            node.oldPathIndex = selection.add(oldPath, selection.isSelected(node.fileIndex));
+        }
+    }
+
+    private void setFileSelected(TrieNode node, boolean selected) {
+        selection.setSelected(node.fileIndex, selected);
+        if (node.oldPathIndex != -1) {
+            selection.setSelected(node.oldPathIndex, selected);
+        }
+    }
+
+    private TrieNode insertFile(String path, GitFileStatus fileStatus, Set<TrieNode> touched) {
+        TrieNode node = trie;
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end > start) {
+                String name = path.substring(start, end);
+                TrieNode child = node.children.get(name);
+                if (child == null) {
+                    child = new TrieNode(name, node);
+                    node.addChild(child);
+                    touched.add(node);
+                }
+                node = child;
             }
-            selectAndExpandTreeItem(firstLevelItem);
-            root.getChildren().add(firstLevelItem);
+            start = end + 1;
+        }
+
+        // the item is only created once its row is displayed
+        node.status = fileStatus;
+        node.fileIndex = selection.add(path, true);
+        addToCounts(node, fileStatus, 1, 1);
+        // the file is displayed in its parent's row; its own row only changes if it is also a directory
+        touched.add(node.parent);
+        if (!node.children.isEmpty()) {
+            touched.add(node);
         }
+        return node;
     }
 
+    private void removeFile(TrieNode node, Set<TrieNode> touched) {
+        addToCounts(node, node.status, -1, selection.isSelected(node.fileIndex) ? -1 : 0);
+        setRenamedFrom(node, null);
+        selection.remove(node.fileIndex);
+        if (node.fileItem != null) {
+            node.fileItem.selectedProperty().removeListener(checkBoxListener);
+        }
+        node.fileIndex = -1;
+        node.status = null;
+        node.fileItem = null;
+        touched.add(node);
+
+        // prune directories that no longer hold any changed files
+        while (node != trie && node.status == null && node.children.isEmpty()) {
+            node.parent.children.remove(node.name);
+            node.directoryItem = null;
+            node.removed = true;
+            node = node.parent;
+            touched.add(node);
+        }
+        touched.add(node.parent == null ? trie : node.parent);
+    }
 
-    // TODO Refactor this method into smaller methods
     /**
-     * Builds a Tree of {@link CheckBoxTreeItem}s and consolidates any shared directories into one item.
+     * Adds the given numbers to the counts of the node and all its ancestors
+     * @param status the status of the added or removed files; may be null if {@code files} is 0
+     */
+    private static void addToCounts(TrieNode node, GitFileStatus status, int files, int selectedFiles) {
+        for (TrieNode n = node; n != null; n = n.parent) {
+            n.fileCount += files;
+            n.selectedCount += selectedFiles;
+            if (files != 0) {
+                n.addStatusCount(status, files);
+            }
+        }
+    }
+
+    /**
+     * Updates the rows that contain the touched nodes: their consolidated directory names and their children.
+     * Directory rows are only split or merged where the touched nodes require it, and the items of nodes that
+     * were not touched are reused, so the cost of this method depends on the number of touched nodes (and the
+     * number of children of their directories), not on the size of the tree.
      *
-     * @param currentPath the {@link ModifiedPath} that goes from the firstLevelChild to one level above nameIndex
-     * @param parent the {@link CheckBoxTreeItem} whose children to build
-     * @param nameIndex the index of names within the {@link java.nio.file.Path} objects used to identify
-     *                  directories that should be consolidated onto a single row.
+     * @param recounted files whose status changed, whose rows don't change but whose ancestors' summaries do
      */
-    private void buildTreeRecursively(ModifiedPath currentPath, CheckBoxTreeItem<ModifiedPath> parent, int nameIndex) {
-        boolean consolidatingDirectories = true;
-        while (consolidatingDirectories) {
-            ModifiedPath[] parentToLeafNames = getNamesAtIndex(nameIndex);
-            if (parentToLeafNames == null) {
-                return;
-            } else {
-                if (parentToLeafNames.length == 1) {
-                    // either need to consolidate directories or just add one leaf
-
-                    currentPath = currentPath.resolve(parentToLeafNames[0]);
-                    if (changedFiles.contains(currentPath)) {
-                        // leaf, so exit loop
-                        consolidatingDirectories = false;
-
-                        // add item as a child
-                        CheckBoxTreeItem<ModifiedPath> child = new CheckBoxTreeItem<>(parentToLeafNames[0]);
-                        selectAndExpandTreeItem(child);
-                        parent.getChildren().add(child);
-
-                        // add its selected property
-                        fileSelectionStates.add(Tuples.t(currentPath, child.selectedProperty()));
-                    } else {
-                        // single directory as child, so consolidate the two values into one item
-                        // and continue loop
-                        parent.setValue(currentPath);
-
-                        // update the index to get the next level's names
-                        nameIndex++;
-                    }
-                } else {
-                    // multiple items found (leaf or directories) so exit loop
-                    consolidatingDirectories = false;
-
-                    for (ModifiedPath path : parentToLeafNames) {
-                        ModifiedPath extendedPath = currentPath.resolve(path);
-
-                        CheckBoxTreeItem<ModifiedPath> child = new CheckBoxTreeItem<>(path);
-                        if (changedFiles.contains(extendedPath)) {
-                            fileSelectionStates.add(Tuples.t(extendedPath, child.selectedProperty()));
-                        } else {
-                            buildTreeRecursively(extendedPath, child, nameIndex + 1);
-                        }
-                        selectAndExpandTreeItem(child);
-                        parent.getChildren().add(child);
-                    }
+    private void patchRows(Set<TrieNode> touched, Set<TrieNode> recounted) {
+        Set<TrieNode> rowHeads = new LinkedHashSet<>();
+        for (TrieNode node : touched) {
+            if (!node.removed) {
+                rowHeads.add(rowHeadOf(node));
+            }
+        }
+
+        for (TrieNode head : rowHeads) {
+            syncRow(head);
+        }
+
+        // the counts of the touched nodes' ancestors changed, so their check boxes and summaries may have to
+        // change, too
+        Set<TrieNode> updated = new HashSet<>();
+        for (TrieNode node : touched) {
+            for (TrieNode n = node; n != null && updated.add(n); n = n.parent) {
+                updateCheckState(n);
+                updateSummary(n);
+            }
+        }
+        for (TrieNode node : recounted) {
+            for (TrieNode n = node.parent; n != null && updated.add(n); n = n.parent) {
+                updateSummary(n);
+            }
+        }
+    }
+
+    /**
+     * @return the node whose directory item displays the given node: the first node, going upwards, that
+     *         is not consolidated into its parent's row.
+     */
+    private TrieNode rowHeadOf(TrieNode node) {
+        while (isConsolidatedIntoParent(node)) {
+            node = node.parent;
+        }
+        return node;
+    }
+
+    private boolean isConsolidatedIntoParent(TrieNode node) {
+        return node != trie && node.parent != trie
+                && node.status == null
+                && node.parent.children.size() == 1;
+    }
+
+    /**
+     * Makes the directory item of the given row head match the trie: sets its (consolidated) name and its children.
+     * Nodes under the row that head their own row but don't have an item yet get one. In a lazy viewer, the
+     * children of a directory item that has never been expanded are left for {@link #expansionListener} to create.
+     *
+     * @param head a node that is not consolidated into its parent's row
+     */
+    private void syncRow(TrieNode head) {
+        if (head != trie && head.children.isEmpty()) {
+            // only a file now; its parent's row will drop the directory item
+            head.directoryItem = null;
+            return;
+        }
+
+        // consolidate chains of directories that only hold a single directory
+        TrieNode bottom = head;
+        GitPath consolidatedPath = head == trie ? null : GitPath.EMPTY.resolve(head.name);
+        while (bottom != trie && bottom.children.size() == 1) {
+            TrieNode onlyChild = bottom.children.values().iterator().next();
+            if (onlyChild.status != null) {
+                // leaf, so stop consolidating
+                break;
+            }
+            onlyChild.directoryItem = null;
+            consolidatedPath = consolidatedPath.resolve(onlyChild.name);
+            bottom = onlyChild;
+        }
+
+        DirectoryItem item = head.directoryItem;
+        if (item == null) {
+            item = newDirectoryItem(head);
+            head.directoryItem = item;
+        }
+        if (head != trie) {
+            ModifiedPath value = item.getValue();
+            if (value == null || !value.getPath().equals(consolidatedPath)) {
+                item.setValue(ModifiedPath.directory(consolidatedPath, countsBelow(head)));
+            }
+        }
+
+        if (lazy && !item.isExpanded() && item.getChildren().isEmpty()) {
+            // never displayed, so there is nothing to patch
+            return;
+        }
+
+        List<TreeItem<ModifiedPath>> children = new ArrayList<>(bottom.children.size());
+        for (TrieNode child : bottom.children.values()) {
+            if (child.status != null) {
+                children.add(fileItemOf(child));
+            }
+            if (!child.children.isEmpty()) {
+                if (child.directoryItem == null) {
+                    syncRow(child);
                 }
+                children.add(child.directoryItem);
             }
         }
+        if (!sameItems(item.getChildren(), children)) {
+            // set the children in one call, so that the view only updates once
+            item.getChildren().setAll(children);
+        }
     }
 
-    private void selectAndExpandTreeItem(CheckBoxTreeItem<ModifiedPath> item) {
-        item.setSelected(true);
-        item.setExpanded(true);
+    private static boolean sameItems(List<TreeItem<ModifiedPath>> current, List<TreeItem<ModifiedPath>> expected) {
+        if (current.size() != expected.size()) {
+            return false;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i) != expected.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * All items are independent: rather than letting CheckBoxTreeItem push a new state up and down the items
+     * that happen to exist, the viewer applies it to the selection model and the counts and then updates the
+     * items from those.
+     */
+
+    private FileItem fileItemOf(TrieNode node) {
+        if (node.fileItem == null) {
+            FileItem item = new FileItem(node);
+            item.setValue(new ModifiedPath(GitPath.EMPTY.resolve(node.name), node.status, node.renamedFrom));
+            item.setIndependent(true);
+            item.setSelected(selection.isSelected(node.fileIndex));
+            item.selectedProperty().addListener(checkBoxListener);
+            node.fileItem = item;
+        }
+        return node.fileItem;
+    }
+
+    private DirectoryItem newDirectoryItem(TrieNode head) {
+        DirectoryItem item = new DirectoryItem(head);
+        item.setIndependent(true);
+        item.setExpanded(!lazy);
+        setCheckState(item, selectedBelow(head), filesBelow(head));
+        item.selectedProperty().addListener(checkBoxListener);
+        if (lazy) {
+            item.expandedProperty().addListener(expansionListener);
+        }
+        return item;
     }
 
-    private ModifiedPath[] getNamesAtIndex(int nameIndex) {
-        return changedFiles.stream()
-                // insure ModifiedFile#getName is given a valid index
-                .filter(v -> v.getNameCount() >= nameIndex)
-                // if a leaf is reached, status is file's status; otherwise, it's UNCHANGED
-                .map(v -> v.getName(nameIndex))
-                .distinct()
-                .toArray(ModifiedPath[]::new);
+    private void selectFile(TrieNode node, boolean selected) {
+        if (selection.isSelected(node.fileIndex) != selected) {
+            setFileSelected(node, selected);
+            addToCounts(node, null, 0, selected ? 1 : -1);
+        }
+        // the file is displayed in its parent's row
+        for (TrieNode n = node.parent; n != null; n = n.parent) {
+            updateCheckState(n);
+        }
+    }
+
+    private void selectDirectory(TrieNode head, boolean selected) {
+        int change = selectFilesBelow(head, selected);
+        addToCounts(head.parent, null, 0, change);
+        for (TrieNode n = head.parent; n != null; n = n.parent) {
+            updateCheckState(n);
+        }
+    }
+
+    /**
+     * (De)selects all files below the given node, updating the counts and items of the nodes on the way.
+     * @return the change in the number of selected files
+     */
+    private int selectFilesBelow(TrieNode node, boolean selected) {
+        int change = 0;
+        for (TrieNode child : node.children.values()) {
+            if (child.status != null && selection.isSelected(child.fileIndex) != selected) {
+                setFileSelected(child, selected);
+                child.selectedCount += selected ? 1 : -1;
+                change += selected ? 1 : -1;
+                if (child.fileItem != null) {
+                    updatingCheckBoxes = true;
+                    child.fileItem.setSelected(selected);
+                    updatingCheckBoxes = false;
+                }
+            }
+            change += selectFilesBelow(child, selected);
+        }
+        node.selectedCount += change;
+        updateCheckState(node);
+        return change;
+    }
+
+    /** Updates the check box of the given node's directory item, if it has one, from the node's counts */
+    private void updateCheckState(TrieNode node) {
+        if (node.directoryItem != null) {
+            setCheckState(node.directoryItem, selectedBelow(node), filesBelow(node));
+        }
+    }
+
+    /** Updates the summary of the given node's directory item, if it has one, from the node's counts */
+    private static void updateSummary(TrieNode node) {
+        if (node.directoryItem != null && node.directoryItem.getValue() != null) {
+            ModifiedPath value = node.directoryItem.getValue();
+            StatusCounts counts = countsBelow(node);
+            if (!counts.equals(value.getCounts())) {
+                node.directoryItem.setValue(ModifiedPath.directory(value.getPath(), counts));
+            }
+        }
+    }
+
+    /** The statuses of the files below the node, which are the ones displayed by its directory item */
+    private static StatusCounts countsBelow(TrieNode node) {
+        int added = node.addedCount;
+        int modified = node.modifiedCount;
+        int removed = node.removedCount;
+        int renamed = node.renamedCount;
+        if (node.status != null) {
+            switch (node.status) {
+                case ADDED:     added--;    break;
+                case MODIFIED:  modified--; break;
+                case REMOVED:   removed--;  break;
+                case RENAMED:   renamed--;  break;
+                default:                    break;
+            }
+        }
+        return new StatusCounts(added, modified, removed, renamed);
+    }
+
+    /** The number of files below the node, which are the ones displayed by its directory item */
+    private static int filesBelow(TrieNode node) {
+        return node.status == null ? node.fileCount : node.fileCount - 1;
+    }
+
+    private int selectedBelow(TrieNode node) {
+        return node.status == null || !selection.isSelected(node.fileIndex)
+                ? node.selectedCount
+                : node.selectedCount - 1;
+    }
+
+    /**
+     * Like {@link CheckBoxTreeItem} itself, a directory is selected when all files below it are selected and
+     * indeterminate when only some of them are.
+     */
+    private void setCheckState(CheckBoxTreeItem<ModifiedPath> item, int selectedFiles, int files) {
+        updatingCheckBoxes = true;
+        item.setSelected(files != 0 && selectedFiles == files);
+        item.setIndeterminate(selectedFiles != 0 && selectedFiles != files);
+        updatingCheckBoxes = false;
+    }
+
+    /** The item of a changed file */
+    private static final class FileItem extends CheckBoxTreeItem<ModifiedPath> {
+
+        private final TrieNode node;
+
+        private FileItem(TrieNode node) {
+            this.node = node;
+        }
+    }
+
+    /** The item of a (consolidated) directory, headed by the given node */
+    private static final class DirectoryItem extends CheckBoxTreeItem<ModifiedPath> {
+
+        private final TrieNode head;
+
+        private DirectoryItem(TrieNode head) {
+            this.head = head;
+        }
+
+        /** A directory always holds files, even if their items don't exist yet */
+        @Override
+        public boolean isLeaf() {
+            return false;
+        }
+    }
+
+    /**
+     * A node in a trie of path names. Each changed file is inserted once, so building the trie is linear in the
+     * total number of path names. Children are kept in insertion order so that files are displayed in the order
+     * in which they were listed.
+     */
+    private static final class TrieNode {
+
+        /**
+         * the name of this node relative to its parent, or null for the root. Only turned into a {@link GitPath}
+         * (which interns it) once the node is displayed.
+         */
+        private final String name;
+
+        private final TrieNode parent;
+
+        /** most nodes are files, so the map is only created once the first child is added */
+        private Map<String, TrieNode> children = Collections.emptyMap();
+
+        /** the status of the changed file ending at this node, or null if this node is only a directory */
+        private GitFileStatus status;
+
+        /** the index of the changed file ending at this node in the selection model, or -1 */
+        private int fileIndex = -1;
+
+        /** if the file was renamed, its old path and that path's index in the selection model; otherwise -1 */
+        private String renamedFrom;
+        private int oldPathIndex = -1;
+
+        /** the number of changed files in this node's subtree (including its own), and how many are selected */
+        private int fileCount = 0;
+        private int selectedCount = 0;
+
+        /** the number of changed files in this node's subtree (including its own) with each status */
+        private int addedCount = 0;
+        private int modifiedCount = 0;
+        private int removedCount = 0;
+        private int renamedCount = 0;
+
+        /** the item of the changed file ending at this node, or null if there is none or it isn't displayed yet */
+        private FileItem fileItem;
+
+        /** the item of the directory row this node heads, or null if it has no children or is consolidated */
+        private DirectoryItem directoryItem;
+
+        /** true once this node was pruned from the trie */
+        private boolean removed = false;
+
+        private TrieNode(String name, TrieNode parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        private void addStatusCount(GitFileStatus status, int files) {
+            switch (status) {
+                case ADDED:     addedCount += files;    break;
+                case MODIFIED:  modifiedCount += files; break;
+                case REMOVED:   removedCount += files;  break;
+                case RENAMED:   renamedCount += files;  break;
+                default:                                break;
+            }
+        }
+
+        private void addChild(TrieNode child) {
+            if (children.isEmpty()) {
+                children = new LinkedHashMap<>();
+            }
+            children.put(child.name, child);
+        }
     }
 
 }
@@ -0,0 +1,119 @@
+package com.jgitfx.base
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.api.errors.CanceledException
+import org.eclipse.jgit.api.errors.EmtpyCommitException
+import org.eclipse.jgit.lib.EmptyProgressMonitor
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.PersonIdent
+import org.eclipse.jgit.revwalk.RevCommit
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+import spock.lang.Title
+
+import java.nio.file.Files
+
+@Title("Spec for checking that AddAndCommitCommand stages and commits in one step, or changes nothing")
+@Stepwise
+class AddAndCommitCommandSpec extends Specification {
+
+    @Shared
+    File rootDir
+
+    @Shared
+    Git git
+
+    @Shared
+    PersonIdent author = new PersonIdent("Author", "author@example.com")
+
+    @Shared
+    RevCommit initialCommit
+
+    def setupSpec() {
+        rootDir = Files.createTempDirectory("AddAndCommitCommandSpec").toFile()
+        git = Git.init().setDirectory(rootDir).call()
+
+        new File(rootDir, "tracked.txt").text = "tracked"
+        git.add().addFilepattern("tracked.txt").call()
+        initialCommit = git.commit().setMessage("initial commit").setAuthor(author).setCommitter(author).call()
+    }
+
+    private AddAndCommitCommand newCommand() {
+        return new AddAndCommitCommand(git.repository).setAuthor(author).setCommitter(author)
+    }
+
+    private ObjectId head() {
+        return git.repository.resolve("HEAD")
+    }
+
+    def "New and modified files are staged and committed in one call"() {
+        given:
+        new File(rootDir, "tracked.txt").text = "changed"
+        new File(rootDir, "a/b").mkdirs()
+        new File(rootDir, "a/b/new.txt").text = "new"
+
+        when:
+        RevCommit commit = newCommand().addFilepattern(".").setMessage("second commit").call()
+
+        then: "HEAD points to the commit, whose parent is the previous one"
+        head() == commit
+        commit.fullMessage == "second commit"
+        commit.getParent(0) == initialCommit
+
+        and: "the index was written, so nothing is left to commit"
+        git.status().call().isClean()
+    }
+
+    def "A commit that changes nothing fails without changing HEAD"() {
+        given:
+        ObjectId before = head()
+
+        when:
+        newCommand().addFilepattern(".").setMessage("empty").setAllowEmpty(false).call()
+
+        then:
+        thrown(EmtpyCommitException)
+        head() == before
+        git.status().call().isClean()
+    }
+
+    def "Cancelling while adding writes neither the index nor a commit"() {
+        given:
+        ObjectId before = head()
+        new File(rootDir, "tracked.txt").text = "changed again"
+        def cancelled = new EmptyProgressMonitor() {
+            @Override
+            boolean isCancelled() {
+                return true
+            }
+        }
+
+        when:
+        newCommand().addFilepattern(".").setMessage("cancelled").setProgressMonitor(cancelled).call()
+
+        then: "the file is still only modified in the work tree"
+        thrown(CanceledException)
+        head() == before
+        git.status().call().modified == ["tracked.txt"] as Set
+        git.status().call().changed.isEmpty()
+    }
+
+    def "Amending replaces the last commit"() {
+        given:
+        RevCommit last = git.log().setMaxCount(1).call().iterator().next()
+
+        when:
+        RevCommit amended = newCommand().addFilepattern("tracked.txt").setMessage("amended").setAmend(true).call()
+
+        then:
+        head() == amended
+        amended.getParent(0) == last.getParent(0)
+        git.status().call().isClean()
+    }
+
+    def cleanupSpec() {
+        git.close()
+        rootDir.deleteDir()
+    }
+}
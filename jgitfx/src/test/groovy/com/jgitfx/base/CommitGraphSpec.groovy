@@ -0,0 +1,170 @@
+package com.jgitfx.base
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.api.ListBranchCommand
+import org.eclipse.jgit.lib.PersonIdent
+import org.eclipse.jgit.lib.Ref
+import org.eclipse.jgit.revwalk.RevCommit
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+import spock.lang.Title
+
+import java.nio.channels.FileChannel
+import java.nio.channels.FileLock
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+
+@Title("Spec for checking that CommitGraph answers ancestry queries like walking the history does")
+@Stepwise
+class CommitGraphSpec extends Specification {
+
+    @Shared
+    File rootDir
+
+    @Shared
+    Git git
+
+    @Shared
+    CommitGraph graph
+
+    @Shared
+    PersonIdent author = new PersonIdent("Author", "author@example.com")
+
+    // master: c1 - c2 - c3, side: c2 - s1
+    @Shared
+    RevCommit c1
+
+    @Shared
+    RevCommit c2
+
+    @Shared
+    RevCommit c3
+
+    @Shared
+    RevCommit s1
+
+    def setupSpec() {
+        rootDir = Files.createTempDirectory("CommitGraphSpec").toFile()
+        git = Git.init().setDirectory(rootDir).call()
+
+        c1 = commit("master.txt", "1")
+        c2 = commit("master.txt", "2")
+        c3 = commit("master.txt", "3")
+        git.checkout().setCreateBranch(true).setName("side").setStartPoint(c2).call()
+        s1 = commit("side.txt", "1")
+        git.checkout().setName("master").call()
+    }
+
+    private RevCommit commit(String path, String content) {
+        new File(rootDir, path).text = content
+        git.add().addFilepattern(path).call()
+        return git.commit().setMessage(path + " " + content).setAuthor(author).setCommitter(author).call()
+    }
+
+    private List<String> containing(RevCommit commit) {
+        return git.branchList().setListMode(ListBranchCommand.ListMode.ALL).setContains(commit.name()).call()
+                .collect { it.name }.sort()
+    }
+
+    def "Updating adds every commit a ref reaches, once"() {
+        when:
+        graph = CommitGraph.open(git.repository)
+
+        then:
+        graph.update(git.repository) == 4
+        graph.size() == 4
+        [c1, c2, c3, s1].every { graph.contains(it) }
+
+        and: "a commit's parents and generation are recorded"
+        graph.getParents(s1) == [c2.id]
+        graph.getGeneration(c3) == graph.getGeneration(c1) + 2
+        graph.getCommitTime(c1) == c1.commitTime
+
+        and: "nothing is added when no ref moved"
+        graph.update(git.repository) == 0
+    }
+
+    def "A commit is an ancestor of itself and of the commits that follow it"() {
+        expect:
+        graph.isAncestor(c1, s1)
+        graph.isAncestor(c2, c3)
+        graph.isAncestor(c3, c3)
+        !graph.isAncestor(c3, s1)
+        !graph.isAncestor(s1, c1)
+    }
+
+    def "The branches containing a commit are those found by walking each branch's history"() {
+        given:
+        List<Ref> branches = git.branchList().setListMode(ListBranchCommand.ListMode.ALL).call()
+
+        expect:
+        [c1, c2, c3, s1].every { commit ->
+            graph.filterContaining(commit, branches).collect { it.name }.sort() == containing(commit)
+        }
+        graph.filterContaining(c3, branches).collect { it.name } == ["refs/heads/master"]
+    }
+
+    def "The graph is read back from its file after being closed"() {
+        when:
+        graph.close()
+        graph = CommitGraph.open(git.repository)
+
+        then:
+        graph.size() == 4
+        [c1, c2, c3, s1].every { graph.contains(it) }
+        graph.update(git.repository) == 0
+    }
+
+    def "A commit made through GitHelper is added to the open graph"() {
+        given:
+        new File(rootDir, "master.txt").text = "4"
+        git.add().addFilepattern("master.txt").call()
+
+        when:
+        RevCommit c4 = GitHelper.commitFiles(git, false, "master.txt 4", author)
+
+        then:
+        graph.contains(c4)
+        graph.isAncestor(c3, c4)
+        GitHelper.getBranchesWithCommit(git, GitHelper.BranchType.LOCAL, c4.name()).collect { it.name } ==
+                ["refs/heads/master"]
+    }
+
+    def "No branch contains a commit that no ref reaches"() {
+        given: "a commit made on a detached HEAD that is then left"
+        git.checkout().setName(c3.name()).call()
+        RevCommit detached = commit("detached.txt", "1")
+        git.checkout().setName("master").call()
+
+        expect:
+        GitHelper.getBranchesWithCommit(git, GitHelper.BranchType.BOTH, detached.name()).isEmpty()
+        containing(detached).isEmpty()
+    }
+
+    def "GitHelper releases the graph file once it answered a query"() {
+        given:
+        graph.close()
+        graph = null
+
+        when:
+        GitHelper.getBranchesWithCommit(git, GitHelper.BranchType.LOCAL, c1.name())
+        GitHelper.isAncestor(git, c1.name(), c3.name())
+        FileChannel channel = FileChannel.open(
+                new File(git.repository.directory, "jgitfx/commit-graph").toPath(), StandardOpenOption.WRITE)
+        FileLock lock = channel.tryLock()
+
+        then: "nothing in this process holds the file locked"
+        lock != null
+
+        cleanup:
+        lock?.release()
+        channel?.close()
+    }
+
+    def cleanupSpec() {
+        graph?.close()
+        git.close()
+        rootDir.deleteDir()
+    }
+}
@@ -0,0 +1,151 @@
+package com.jgitfx.base
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.Repository
+import spock.lang.Specification
+import spock.lang.Title
+
+import java.nio.file.Files
+
+@Title("Spec for checking that ContentHashCache returns stored ids only for unchanged files")
+class ContentHashCacheSpec extends Specification {
+
+    File rootDir
+
+    Git git
+
+    Repository repo
+
+    def setup() {
+        rootDir = Files.createTempDirectory("ContentHashCacheSpec").toFile()
+        git = Git.init().setDirectory(rootDir).call()
+        repo = git.repository
+    }
+
+    /** Writes a file that was last modified long enough ago for its id to be cached */
+    private File oldFile(String path, String content) {
+        File file = new File(rootDir, path)
+        file.text = content
+        file.setLastModified(System.currentTimeMillis() - 10 * ContentHashCache.RACY_MILLIS)
+        return file
+    }
+
+    private static ObjectId id(int n) {
+        return ObjectId.fromString(String.format("%040x", n))
+    }
+
+    def "An id is returned for the file's metadata it was stored with, and survives reopening the cache"() {
+        given:
+        File file = oldFile("a.txt", "a")
+        ContentHashCache.FileStat stat = ContentHashCache.FileStat.of(file)
+
+        when:
+        ContentHashCache cache = ContentHashCache.open(repo)
+        cache.put("a.txt", file, stat, id(1))
+
+        then:
+        cache.get("a.txt", stat) == id(1)
+        cache.get("b.txt", stat) == null
+
+        when: "the cache is closed and opened again"
+        cache.close()
+        cache = ContentHashCache.open(repo)
+
+        then:
+        cache.size() == 1
+        cache.get("a.txt", stat) == id(1)
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "A changed file misses the cache"() {
+        given:
+        File file = oldFile("a.txt", "a")
+        ContentHashCache.FileStat stat = ContentHashCache.FileStat.of(file)
+        ContentHashCache cache = ContentHashCache.open(repo)
+        cache.put("a.txt", file, stat, id(1))
+
+        when:
+        oldFile("a.txt", "longer content")
+
+        then:
+        cache.get("a.txt", ContentHashCache.FileStat.of(file)) == null
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "The id of a racily clean file is not stored"() {
+        given:
+        File file = new File(rootDir, "a.txt")
+        file.text = "just written"
+        ContentHashCache.FileStat stat = ContentHashCache.FileStat.of(file)
+        ContentHashCache cache = ContentHashCache.open(repo)
+
+        when:
+        cache.put("a.txt", file, stat, id(1))
+
+        then:
+        cache.get("a.txt", stat) == null
+        cache.size() == 0
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "A full cache evicts its least recently used ids, even when it holds a single one"() {
+        given:
+        File file = oldFile("a.txt", "a")
+        ContentHashCache.FileStat stat = ContentHashCache.FileStat.of(file)
+        ContentHashCache cache = ContentHashCache.open(repo, maxEntries)
+
+        when:
+        for (int i = 0; i < 10; i++) {
+            cache.put("file" + i, file, stat, id(i + 1))
+        }
+
+        then:
+        cache.size() <= maxEntries
+        cache.get("file9", stat) == id(10)
+        cache.get("file0", stat) == null
+
+        cleanup:
+        cache?.close()
+
+        where:
+        maxEntries << [1, 2, 5]
+    }
+
+    def "The cache file starts small and grows with the number of ids"() {
+        given:
+        File file = oldFile("a.txt", "a")
+        ContentHashCache.FileStat stat = ContentHashCache.FileStat.of(file)
+        File cacheFile = new File(repo.directory, "jgitfx/content-hashes")
+
+        when:
+        ContentHashCache cache = ContentHashCache.open(repo)
+
+        then:
+        cacheFile.length() < 1024 * 1024
+
+        when:
+        for (int i = 0; i < 20_000; i++) {
+            cache.put("file" + i, file, stat, id(i + 1))
+        }
+
+        then: "every id is kept"
+        cache.size() == 20_000
+        (0..<20_000).every { cache.get("file" + it, stat) == id(it + 1) }
+        cacheFile.length() > 1024 * 1024
+
+        cleanup:
+        cache?.close()
+    }
+
+    def cleanup() {
+        git.close()
+        rootDir.deleteDir()
+    }
+}
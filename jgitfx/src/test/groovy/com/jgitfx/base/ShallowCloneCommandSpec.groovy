@@ -0,0 +1,172 @@
+package com.jgitfx.base
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.Repository
+import org.eclipse.jgit.revwalk.RevWalk
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Title
+
+import java.nio.file.Files
+
+@Title("Spec for checking that ShallowCloneCommand clones only the requested part of a local repository")
+class ShallowCloneCommandSpec extends Specification {
+
+    @Shared
+    File sourceDir
+
+    @Shared
+    String sourceUri
+
+    @Shared
+    ObjectId firstCommit
+
+    @Shared
+    ObjectId bigBlob
+
+    @Shared
+    ObjectId smallBlob
+
+    File cloneDir
+
+    def setupSpec() {
+        sourceDir = Files.createTempDirectory("ShallowCloneSource").toFile()
+        Git source = Git.init().setDirectory(sourceDir).call()
+
+        // five commits on master, the last of which adds a 64 KiB file
+        for (int i = 1; i <= 4; i++) {
+            new File(sourceDir, "small.txt").text = "version " + i
+            source.add().addFilepattern("small.txt").call()
+            ObjectId commit = source.commit().setMessage("commit " + i).call()
+            if (i == 1) {
+                firstCommit = commit
+            }
+        }
+        new File(sourceDir, "big.bin").bytes = new byte[64 * 1024]
+        source.add().addFilepattern("big.bin").call()
+        source.commit().setMessage("add big file").call()
+        bigBlob = source.repository.resolve("HEAD:big.bin")
+        smallBlob = source.repository.resolve("HEAD:small.txt")
+
+        // a second branch with one more commit
+        source.branchCreate().setName("feature").call()
+        source.checkout().setName("feature").call()
+        new File(sourceDir, "feature.txt").text = "feature"
+        source.add().addFilepattern("feature.txt").call()
+        source.commit().setMessage("feature commit").call()
+        source.checkout().setName("master").call()
+        source.close()
+
+        sourceUri = sourceDir.toURI().toString()
+    }
+
+    def setup() {
+        cloneDir = Files.createTempDirectory("ShallowClone").toFile()
+    }
+
+    /** Counts the commits reachable from the ref, looking up (not parsing) the tip so shallow commits are honored */
+    private static int countCommits(Repository repo, String ref) {
+        RevWalk walk = new RevWalk(repo)
+        try {
+            walk.markStart(walk.lookupCommit(repo.resolve(ref)))
+            int count = 0
+            while (walk.next() != null) {
+                count++
+            }
+            return count
+        } finally {
+            walk.close()
+        }
+    }
+
+    def "A clone without options clones everything"() {
+        when:
+        Git git = new ShallowCloneCommand().setURI(sourceUri).setDirectory(cloneDir).call()
+
+        then:
+        countCommits(git.repository, "refs/remotes/origin/master") == 5
+        git.repository.resolve("refs/remotes/origin/feature") != null
+        !new File(git.repository.directory, "shallow").exists()
+
+        cleanup:
+        git?.close()
+    }
+
+    def "A clone with a depth only holds that many commits of each branch"() {
+        when:
+        Git git = new ShallowCloneCommand().setURI(sourceUri).setDirectory(cloneDir).setDepth(2).call()
+
+        then: "history is cut off at the given depth"
+        countCommits(git.repository, "refs/remotes/origin/master") == 2
+        // the parent of feature's second commit is kept for master, so it is walked too
+        countCommits(git.repository, "refs/remotes/origin/feature") == 3
+
+        and: "the commit where it was cut off is recorded as shallow"
+        new File(git.repository.directory, "shallow").readLines().size() == 1
+
+        and: "the older commits' objects are gone"
+        !git.repository.hasObject(firstCommit)
+
+        cleanup:
+        git?.close()
+    }
+
+    def "A single-branch clone only fetches that branch"() {
+        when:
+        Git git = GitHelper.cloneRepo(sourceUri, cloneDir, "origin", "feature", true, 0, -1, false, null)
+
+        then: "only the branch is tracked and fetched"
+        git.repository.resolve("refs/remotes/origin/feature") != null
+        git.repository.resolve("refs/remotes/origin/master") == null
+        git.repository.config.getStringList("remote", "origin", "fetch") as List ==
+                ["+refs/heads/feature:refs/remotes/origin/feature"]
+
+        and: "the branch is checked out with its whole history"
+        git.repository.branch == "feature"
+        countCommits(git.repository, "HEAD") == 6
+
+        cleanup:
+        git?.close()
+    }
+
+    def "A no-checkout clone leaves the work tree empty"() {
+        when:
+        Git git = new ShallowCloneCommand().setURI(sourceUri).setDirectory(cloneDir).setNoCheckout(true).call()
+
+        then:
+        cloneDir.list() as List == [".git"]
+        git.repository.resolve("refs/remotes/origin/master") != null
+
+        cleanup:
+        git?.close()
+    }
+
+    def "A clone with a blob limit leaves out larger blobs but still checks them out"() {
+        when:
+        Git git = new ShallowCloneCommand().setURI(sourceUri).setDirectory(cloneDir).setBlobLimit(1024).call()
+
+        then: "the large blob is not in the repository, but the small one is"
+        !git.repository.hasObject(bigBlob)
+        git.repository.hasObject(smallBlob)
+
+        and: "the work tree is complete"
+        new File(cloneDir, "big.bin").length() == 64 * 1024
+
+        and: "the clone is marked as a partial clone of the remote"
+        git.repository.config.getString("extensions", null, "partialClone") == "origin"
+        git.repository.config.getBoolean("remote", "origin", "promisor", false)
+        new File(git.repository.objectDatabase.directory, "pack").list().any { it.endsWith(".promisor") }
+
+        cleanup:
+        git?.close()
+    }
+
+    def cleanup() {
+        cloneDir.deleteDir()
+    }
+
+    def cleanupSpec() {
+        sourceDir.deleteDir()
+    }
+}
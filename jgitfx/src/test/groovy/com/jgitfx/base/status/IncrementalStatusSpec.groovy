@@ -0,0 +1,126 @@
+package com.jgitfx.base.status
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.api.ResetCommand
+import org.eclipse.jgit.api.Status
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+import spock.lang.Title
+
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+
+@Title("Spec for checking that IncrementalStatus matches a full StatusCommand")
+@Stepwise
+class IncrementalStatusSpec extends Specification {
+
+    @Shared
+    File rootDir
+
+    @Shared
+    Git git
+
+    @Shared
+    IncrementalStatus incrementalStatus
+
+    def setupSpec() {
+        rootDir = Files.createTempDirectory("IncrementalStatusSpec").toFile()
+        git = Git.init().setDirectory(rootDir).call()
+
+        new File(rootDir, "a/b").mkdirs()
+        new File(rootDir, "a/b/file1.txt").text = "file1"
+        new File(rootDir, "file2.txt").text = "file2"
+        git.add().addFilepattern(".").call()
+        git.commit().setMessage("initial commit").call()
+
+        incrementalStatus = new IncrementalStatus(git)
+    }
+
+    /**
+     * Gets the status until it meets the condition, giving the watcher thread up to 30 seconds to process the file
+     * system's events; the caller then checks the last status, so a timeout fails with the actual values.
+     */
+    private Status statusWhen(Closure<Boolean> condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30)
+        Status status = incrementalStatus.call()
+        while (!condition(status) && System.nanoTime() < deadline) {
+            Thread.sleep(50)
+            status = incrementalStatus.call()
+        }
+        return status
+    }
+
+    def "First call does a full scan of a clean repository"() {
+        expect:
+        incrementalStatus.call().isClean()
+    }
+
+    def "Modified, new, and deleted files are picked up"() {
+        when: "files are changed"
+        new File(rootDir, "a/b/file1.txt").text = "changed"
+        new File(rootDir, "c/d").mkdirs()
+        new File(rootDir, "c/d/file3.txt").text = "file3"
+        new File(rootDir, "file2.txt").delete()
+
+        and: "status is requested"
+        Status full = git.status().call()
+        Status status = statusWhen {
+            it.modified == full.modified && it.untracked == full.untracked && it.missing == full.missing
+        }
+
+        then: "it matches the status of a full scan"
+        status.modified == full.modified
+        status.untracked == full.untracked
+        status.missing == full.missing
+        status.hasUncommittedChanges()
+    }
+
+    def "Changing the index is picked up"() {
+        when: "a new file is staged"
+        git.add().addFilepattern("c").call()
+        Status status = statusWhen { it.added == ["c/d/file3.txt"] as Set }
+
+        then: "it is listed as added"
+        status.added == ["c/d/file3.txt"] as Set
+    }
+
+    def "Committing is picked up, although only a ref under refs/heads changes"() {
+        when: "the staged file is committed"
+        git.commit().setMessage("add file3").call()
+        Status status = statusWhen { it.added.isEmpty() }
+
+        then: "it is no longer listed as added"
+        status.added.isEmpty()
+        status.modified == git.status().call().modified
+    }
+
+    def "Moving the branch with a soft reset is picked up"() {
+        when: "the commit is undone, keeping the index"
+        git.reset().setMode(ResetCommand.ResetType.SOFT).setRef("HEAD~1").call()
+        Status status = statusWhen { it.added == ["c/d/file3.txt"] as Set }
+
+        then: "the file is listed as added again"
+        status.added == ["c/d/file3.txt"] as Set
+    }
+
+    def "Changing a .gitignore file is picked up for the files it ignores"() {
+        given: "an untracked log file"
+        new File(rootDir, "a/b/debug.log").text = "log"
+        assert statusWhen { it.untracked.contains("a/b/debug.log") }.untracked.contains("a/b/debug.log")
+
+        when: "log files are ignored"
+        new File(rootDir, ".gitignore").text = "*.log\n"
+        Status status = statusWhen { !it.untracked.contains("a/b/debug.log") }
+
+        then: "the log file is no longer untracked"
+        !status.untracked.contains("a/b/debug.log")
+        status.untracked == git.status().call().untracked
+    }
+
+    def cleanupSpec() {
+        incrementalStatus.close()
+        git.close()
+        rootDir.deleteDir()
+    }
+}